@@ -0,0 +1,205 @@
+package ru.linachan.memorymanager.benchmarks;
+
+import ru.linachan.memorymanager.MMProcess;
+import ru.linachan.memorymanager.MMRegion;
+import ru.linachan.memorymanager.backend.MMBackend;
+import ru.linachan.memorymanager.backend.MMProcessHandle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Synthetic process whose memory is a set of heap or memory-mapped buffers, one region per buffer
+public class MMBufferBackend implements MMBackend, MMProcessHandle {
+
+    public static final long BASE_ADDRESS = 0x10000000L;
+    public static final int SEGMENT_SIZE = 256 * 1024 * 1024;
+
+    private static final long SEGMENT_STRIDE = 2L * SEGMENT_SIZE;
+
+    private final ByteBuffer[] segments;
+    private final Path mappedFile;
+
+    private MMBufferBackend(ByteBuffer[] segments, Path mappedFile) {
+        this.segments = segments;
+        this.mappedFile = mappedFile;
+    }
+
+    // Random contents, segments are spaced so that every region is followed by an unmapped gap
+    public static MMBufferBackend create(long size, boolean mapped, long seed) {
+        int segmentCount = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        ByteBuffer[] segments = new ByteBuffer[segmentCount];
+        Path mappedFile = null;
+
+        try {
+            FileChannel channel = null;
+
+            if (mapped) {
+                mappedFile = Files.createTempFile("mm-benchmark", ".bin");
+                mappedFile.toFile().deleteOnExit();
+                channel = FileChannel.open(mappedFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            Random random = new Random(seed);
+            byte[] fill = new byte[1024 * 1024];
+
+            for (int i = 0; i < segmentCount; i++) {
+                int segmentSize = (int) Math.min(SEGMENT_SIZE, size - (long) i * SEGMENT_SIZE);
+
+                segments[i] = mapped
+                    ? channel.map(FileChannel.MapMode.READ_WRITE, (long) i * SEGMENT_SIZE, segmentSize)
+                    : ByteBuffer.allocate(segmentSize);
+                segments[i].order(ByteOrder.nativeOrder());
+
+                for (int offset = 0; offset < segmentSize; offset += fill.length) {
+                    random.nextBytes(fill);
+                    segments[i].position(offset);
+                    segments[i].put(fill, 0, Math.min(fill.length, segmentSize - offset));
+                }
+
+                segments[i].clear();
+            }
+
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new MMBufferBackend(segments, mappedFile);
+    }
+
+    public MMProcess openProcess() {
+        MMProcess process = new MMProcess(this, "benchmark", 1);
+        process.openProcess(MMProcess.PROCESS_VM_READ | MMProcess.PROCESS_VM_WRITE);
+        return process;
+    }
+
+    // Writes pattern at evenly spaced, alignment-aligned offsets: countPerMB occurrences per megabyte
+    public void plant(byte[] pattern, long countPerMB, int alignment) {
+        if (countPerMB <= 0) {
+            return;
+        }
+
+        long spacing = Math.max(pattern.length, (1024 * 1024) / countPerMB);
+
+        for (ByteBuffer segment: segments) {
+            for (long offset = spacing / 2; offset + pattern.length <= segment.capacity(); offset += spacing) {
+                int position = (int) (offset & -alignment);
+
+                for (int i = 0; i < pattern.length; i++) {
+                    segment.put(position + i, pattern[i]);
+                }
+            }
+        }
+    }
+
+    public ByteBuffer getSegment(int index) {
+        return segments[index].duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    public long getSize() {
+        long size = 0;
+
+        for (ByteBuffer segment: segments) {
+            size += segment.capacity();
+        }
+
+        return size;
+    }
+
+    @Override
+    public Map<Integer, String> listProcesses() {
+        return Collections.singletonMap(1, "benchmark");
+    }
+
+    @Override
+    public String getProcessName(int processID) {
+        return processID == 1 ? "benchmark" : null;
+    }
+
+    @Override
+    public MMProcessHandle openProcess(int processID, int permissions) {
+        return this;
+    }
+
+    @Override
+    public List<MMRegion> queryRegions() {
+        List<MMRegion> regions = new ArrayList<>(segments.length);
+
+        for (int i = 0; i < segments.length; i++) {
+            regions.add(new MMRegion(BASE_ADDRESS + i * SEGMENT_STRIDE, segments[i].capacity(), MMRegion.READ | MMRegion.WRITE, ""));
+        }
+
+        return regions;
+    }
+
+    @Override
+    public int read(long address, ByteBuffer buffer) {
+        ByteBuffer segment = slice(address, buffer.remaining());
+
+        if (segment == null) {
+            return 0;
+        }
+
+        int length = segment.remaining();
+        buffer.put(segment);
+        return length;
+    }
+
+    @Override
+    public int write(long address, ByteBuffer buffer) {
+        ByteBuffer segment = slice(address, buffer.remaining());
+
+        if (segment == null) {
+            return 0;
+        }
+
+        int length = segment.remaining();
+        ByteBuffer source = buffer.duplicate();
+        source.limit(source.position() + length);
+        segment.put(source);
+        buffer.position(buffer.position() + length);
+        return length;
+    }
+
+    private ByteBuffer slice(long address, int length) {
+        long offset = address - BASE_ADDRESS;
+        int index = (int) (offset / SEGMENT_STRIDE);
+
+        if (offset < 0 || index >= segments.length || offset - index * SEGMENT_STRIDE >= segments[index].capacity()) {
+            return null;
+        }
+
+        int segmentOffset = (int) (offset - index * SEGMENT_STRIDE);
+        ByteBuffer segment = segments[index].duplicate();
+        segment.limit(segmentOffset + Math.min(length, segment.capacity() - segmentOffset));
+        segment.position(segmentOffset);
+        return segment;
+    }
+
+    @Override
+    public void terminate() {}
+
+    @Override
+    public void close() {
+        if (mappedFile != null) {
+            try {
+                Files.deleteIfExists(mappedFile);
+            } catch (IOException ignored) {
+                // Removed on exit at the latest
+            }
+        }
+    }
+}
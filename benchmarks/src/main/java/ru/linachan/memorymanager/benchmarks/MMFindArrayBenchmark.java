@@ -0,0 +1,60 @@
+package ru.linachan.memorymanager.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.linachan.memorymanager.utils.MMUtils;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MMFindArrayBenchmark {
+
+    @Param({"1", "16", "64"})
+    public int sizeMB;
+
+    @Param({"4", "16", "64"})
+    public int patternLength;
+
+    @Param({"0", "1", "100"})
+    public int matchesPerMB;
+
+    private byte[] pattern;
+    private byte[] memory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pattern = new byte[patternLength];
+        new Random(7).nextBytes(pattern);
+
+        MMBufferBackend backend = MMBufferBackend.create((long) sizeMB << 20, false, 42);
+        backend.plant(pattern, matchesPerMB, 1);
+
+        memory = new byte[sizeMB << 20];
+        ByteBuffer segment = backend.getSegment(0);
+        segment.get(memory);
+    }
+
+    @Benchmark
+    public List<Integer> findArray(MMThroughput throughput) {
+        throughput.scanned(memory.length);
+        return MMUtils.findArray(pattern, memory);
+    }
+}
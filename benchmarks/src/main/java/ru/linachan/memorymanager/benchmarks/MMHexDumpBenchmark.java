@@ -0,0 +1,144 @@
+package ru.linachan.memorymanager.benchmarks;
+
+import com.sun.jna.Memory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.linachan.memorymanager.MMProcess;
+import ru.linachan.memorymanager.utils.MMHexDumper;
+import ru.linachan.memorymanager.utils.MMUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MMHexDumpBenchmark {
+
+    @Param({"1", "16"})
+    public int sizeMB;
+
+    @Param({"16", "32"})
+    public int bytesPerLine;
+
+    @Param({"writer", "channel"})
+    public String output;
+
+    private MMBufferBackend backend;
+    private MMProcess process;
+    private long dumpSize;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        backend = MMBufferBackend.create((long) sizeMB << 20, false, 42);
+        process = backend.openProcess();
+        dumpSize = backend.getSize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        backend.close();
+    }
+
+    private MMHexDumper createDumper() {
+        return output.equals("channel")
+            ? new MMHexDumper(new NullChannel(), bytesPerLine)
+            : new MMHexDumper(new NullWriter(), bytesPerLine);
+    }
+
+    @Benchmark
+    public MMHexDumper formatBuffer(MMThroughput throughput) throws IOException {
+        MMHexDumper dumper = createDumper();
+        dumper.write(MMBufferBackend.BASE_ADDRESS, backend.getSegment(0));
+        dumper.flush();
+
+        throughput.scanned(dumpSize);
+        return dumper;
+    }
+
+    @Benchmark
+    public MMHexDumper dumpProcess(MMThroughput throughput) throws IOException {
+        MMHexDumper dumper = createDumper();
+        process.dumpMemory(MMBufferBackend.BASE_ADDRESS, dumpSize, dumper);
+
+        throughput.scanned(dumpSize);
+        return dumper;
+    }
+
+    static class NullWriter extends Writer {
+
+        @Override
+        public void write(char[] chars, int offset, int length) {}
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    static class NullChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    // Baseline: the original String-building dump over a native copy of the same bytes
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 3, time = 2)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class Legacy {
+
+        @Param({"1"})
+        public int sizeMB;
+
+        private Memory memory;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            MMBufferBackend backend = MMBufferBackend.create((long) sizeMB << 20, false, 42);
+            ByteBuffer segment = backend.getSegment(0);
+
+            memory = new Memory(segment.capacity());
+            memory.getByteBuffer(0, segment.capacity()).put(segment);
+        }
+
+        @Benchmark
+        public String dumpString(MMThroughput throughput) {
+            throughput.scanned(memory.size());
+            return MMUtils.dumpMemory(memory, memory.size(), MMBufferBackend.BASE_ADDRESS);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.linachan.memorymanager.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.linachan.memorymanager.MMReader;
+import ru.linachan.memorymanager.search.MMQuery;
+import ru.linachan.memorymanager.search.MMQueryScanner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MMQueryBenchmark {
+
+    @Param({"256"})
+    public int sizeMB;
+
+    // exact: an exact integer among the fields; range: only ranges, one of them selective; float: float leading
+    @Param({"exact", "range", "float"})
+    public String query;
+
+    @Param({"1", "4"})
+    public int alignment;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private MMBufferBackend backend;
+    private ForkJoinPool scanPool;
+    private MMReader reader;
+
+    private MMQueryScanner scanner;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ByteBuffer record = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+        record.putInt(0, 100);
+        record.putFloat(4, 1.5f);
+        record.putLong(8, MMBufferBackend.BASE_ADDRESS + 0x1000);
+
+        backend = MMBufferBackend.create((long) sizeMB << 20, false, 42);
+        backend.plant(record.array(), 10, 8);
+
+        String queryText;
+        switch (query) {
+            case "exact":
+                queryText = "+0:int 100, +4:float > 1, +8:ptr != 0";
+                break;
+            case "range":
+                queryText = "+0:int 90..110, +4:float >= 0, +8:ptr != 0";
+                break;
+            default:
+                queryText = "+4:float 1.4..1.6, +0:int > 0";
+                break;
+        }
+
+        scanPool = new ForkJoinPool(threads);
+        reader = new MMReader(backend.openProcess(), scanPool);
+        scanner = reader.compileQuery(MMQuery.parse(queryText), alignment);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scanPool.shutdown();
+        backend.close();
+    }
+
+    @Benchmark
+    public List<Long> findQuery(MMThroughput throughput) {
+        throughput.scanned(backend.getSize());
+        return reader.findQuery(scanner);
+    }
+}
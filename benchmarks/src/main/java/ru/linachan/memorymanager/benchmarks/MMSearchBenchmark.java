@@ -0,0 +1,92 @@
+package ru.linachan.memorymanager.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.linachan.memorymanager.MMReader;
+import ru.linachan.memorymanager.search.MMPattern;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MMSearchBenchmark {
+
+    @Param({"64", "1024"})
+    public int sizeMB;
+
+    @Param({"heap", "mapped"})
+    public String source;
+
+    @Param({"4", "16", "64"})
+    public int patternLength;
+
+    @Param({"0", "1", "100"})
+    public int matchesPerMB;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private MMBufferBackend backend;
+    private ForkJoinPool scanPool;
+    private MMReader reader;
+
+    private MMPattern pattern;
+    private MMPattern wildcardPattern;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] patternBytes = new byte[patternLength];
+        new Random(7).nextBytes(patternBytes);
+
+        backend = MMBufferBackend.create((long) sizeMB << 20, source.equals("mapped"), 42);
+        backend.plant(patternBytes, matchesPerMB, 1);
+
+        scanPool = new ForkJoinPool(threads);
+        reader = new MMReader(backend.openProcess(), scanPool);
+
+        pattern = MMPattern.of(patternBytes);
+
+        StringBuilder signature = new StringBuilder();
+        for (int i = 0; i < patternLength; i++) {
+            signature.append(i % 4 == 1 ? "??" : String.format("%02X", patternBytes[i])).append(' ');
+        }
+
+        wildcardPattern = MMPattern.parse(signature.toString().trim());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scanPool.shutdown();
+        backend.close();
+    }
+
+    @Benchmark
+    public List<Long> findBytes(MMThroughput throughput) {
+        throughput.scanned(backend.getSize());
+        return reader.findBytes(pattern);
+    }
+
+    @Benchmark
+    public List<Long> findSignature(MMThroughput throughput) {
+        throughput.scanned(backend.getSize());
+        return reader.findBytes(wildcardPattern);
+    }
+}
@@ -0,0 +1,86 @@
+package ru.linachan.memorymanager.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.linachan.memorymanager.MMReader;
+import ru.linachan.memorymanager.MMSignatureScan;
+import ru.linachan.memorymanager.search.MMPattern;
+import ru.linachan.memorymanager.search.MMSignatureSet;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MMSignatureBenchmark {
+
+    @Param({"256"})
+    public int sizeMB;
+
+    @Param({"10", "100", "1000"})
+    public int signatureCount;
+
+    // Share of signature bytes left as wildcards, in percent
+    @Param({"10", "40"})
+    public int wildcards;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private MMBufferBackend backend;
+    private ForkJoinPool scanPool;
+    private MMReader reader;
+
+    private MMSignatureSet signatures;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(7);
+
+        backend = MMBufferBackend.create((long) sizeMB << 20, false, 42);
+        signatures = new MMSignatureSet();
+
+        for (int i = 0; i < signatureCount; i++) {
+            byte[] signatureBytes = new byte[8 + random.nextInt(24)];
+            byte[] masks = new byte[signatureBytes.length];
+            random.nextBytes(signatureBytes);
+
+            for (int j = 0; j < masks.length; j++) {
+                masks[j] = j == 0 || random.nextInt(100) >= wildcards ? (byte) 0xFF : 0;
+            }
+
+            signatures.add(String.format("signature%d", i), MMPattern.of(signatureBytes, masks));
+        }
+
+        scanPool = new ForkJoinPool(threads);
+        reader = new MMReader(backend.openProcess(), scanPool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scanPool.shutdown();
+        backend.close();
+    }
+
+    @Benchmark
+    public MMSignatureScan findSignatures(MMThroughput throughput) {
+        throughput.scanned(backend.getSize());
+        return reader.findSignatures(signatures);
+    }
+}
@@ -0,0 +1,110 @@
+package ru.linachan.memorymanager.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.linachan.memorymanager.MMReader;
+import ru.linachan.memorymanager.search.MMPattern;
+import ru.linachan.memorymanager.search.MMStringEncoding;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MMStringBenchmark {
+
+    @Param({"64"})
+    public int sizeMB;
+
+    @Param({"8", "64"})
+    public int length;
+
+    @Param({"utf8", "utf16le"})
+    public String encoding;
+
+    @Param({"false", "true"})
+    public boolean ignoreCase;
+
+    private MMBufferBackend backend;
+    private ForkJoinPool scanPool;
+    private MMReader reader;
+
+    private MMStringEncoding stringEncoding;
+    private String value;
+    private long[] stringAddresses;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        value = builder.toString();
+
+        stringEncoding = MMStringEncoding.fromName(encoding);
+
+        byte[] valueBytes = stringEncoding.encode(value.toUpperCase());
+        byte[] planted = new byte[valueBytes.length + stringEncoding.getUnitSize()];
+        System.arraycopy(valueBytes, 0, planted, 0, valueBytes.length);
+
+        backend = MMBufferBackend.create((long) sizeMB << 20, false, 42);
+        backend.plant(planted, 10, stringEncoding.getUnitSize());
+
+        scanPool = new ForkJoinPool();
+        reader = new MMReader(backend.openProcess(), scanPool);
+
+        stringAddresses = reader.findString(value.toUpperCase(), stringEncoding, false).stream()
+            .mapToLong(Long::longValue)
+            .toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scanPool.shutdown();
+        backend.close();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return stringEncoding.encode(value);
+    }
+
+    @Benchmark
+    public MMPattern toPattern() {
+        return stringEncoding.toPattern(value, ignoreCase);
+    }
+
+    @Benchmark
+    public List<Long> findString(MMThroughput throughput) {
+        throughput.scanned(backend.getSize());
+        return reader.findString(ignoreCase ? value : value.toUpperCase(), stringEncoding, ignoreCase);
+    }
+
+    @Benchmark
+    public String[] readStrings() {
+        return reader.readStrings(stringAddresses, stringEncoding, MMReader.MAX_STRING_BYTES);
+    }
+
+    // strings(1)-style extraction over random contents, the worst case for run tracking
+    @Benchmark
+    public List<Long> findStrings(MMThroughput throughput) {
+        throughput.scanned(backend.getSize());
+        return reader.findStrings(stringEncoding, 4);
+    }
+}
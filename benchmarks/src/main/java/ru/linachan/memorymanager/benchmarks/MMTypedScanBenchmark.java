@@ -0,0 +1,92 @@
+package ru.linachan.memorymanager.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.linachan.memorymanager.MMReader;
+import ru.linachan.memorymanager.search.MMScanCondition;
+import ru.linachan.memorymanager.search.MMValueType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MMTypedScanBenchmark {
+
+    @Param({"256"})
+    public int sizeMB;
+
+    @Param({"heap", "mapped"})
+    public String source;
+
+    @Param({"int", "float", "double"})
+    public String type;
+
+    // 1 or the natural alignment of the type
+    @Param({"1", "natural"})
+    public String alignment;
+
+    @Param({"exact", "between"})
+    public String condition;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private MMBufferBackend backend;
+    private ForkJoinPool scanPool;
+    private MMReader reader;
+
+    private MMValueType valueType;
+    private MMScanCondition scanCondition;
+    private int scanAlignment;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        valueType = MMValueType.fromName(type);
+        scanAlignment = alignment.equals("natural") ? valueType.size() : 1;
+
+        long valueBits = valueType.parse("1234567");
+        ByteBuffer value = ByteBuffer.allocate(valueType.size()).order(ByteOrder.nativeOrder());
+        valueType.write(value, 0, valueBits);
+
+        backend = MMBufferBackend.create((long) sizeMB << 20, source.equals("mapped"), 42);
+        backend.plant(value.array(), 10, valueType.size());
+
+        scanCondition = condition.equals("exact")
+            ? MMScanCondition.exact(valueBits)
+            : MMScanCondition.between(valueType.parse("1234000"), valueType.parse("1235000"));
+
+        scanPool = new ForkJoinPool(threads);
+        reader = new MMReader(backend.openProcess(), scanPool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scanPool.shutdown();
+        backend.close();
+    }
+
+    @Benchmark
+    public List<Long> findValues(MMThroughput throughput) {
+        throughput.scanned(backend.getSize());
+        return reader.findValues(valueType, scanCondition, scanAlignment);
+    }
+}
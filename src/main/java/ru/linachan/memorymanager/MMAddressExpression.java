@@ -0,0 +1,270 @@
+package ru.linachan.memorymanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Address expressions such as [[game.exe+0x10]+0x20]-0x8: sums of numbers, module names and
+// dereferences in brackets. Module names that are not plain identifiers go in double quotes.
+public class MMAddressExpression {
+
+    abstract static class Node {
+
+        abstract int depth();
+
+        abstract void collect(List<Dereference> dereferences);
+    }
+
+    static class Constant extends Node {
+
+        final long value;
+
+        Constant(long value) {
+            this.value = value;
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+
+        @Override
+        void collect(List<Dereference> dereferences) {}
+    }
+
+    static class Module extends Node {
+
+        final String moduleName;
+
+        Module(String moduleName) {
+            this.moduleName = moduleName;
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+
+        @Override
+        void collect(List<Dereference> dereferences) {}
+    }
+
+    static class Dereference extends Node {
+
+        final Node address;
+        private final int depth;
+
+        Dereference(Node address) {
+            this.address = address;
+            this.depth = address.depth() + 1;
+        }
+
+        @Override
+        int depth() {
+            return depth;
+        }
+
+        @Override
+        void collect(List<Dereference> dereferences) {
+            address.collect(dereferences);
+            dereferences.add(this);
+        }
+    }
+
+    static class Sum extends Node {
+
+        final Node[] terms;
+        final boolean[] negated;
+        private final int depth;
+
+        Sum(Node[] terms, boolean[] negated) {
+            this.terms = terms;
+            this.negated = negated;
+
+            int maxDepth = 0;
+            for (Node term: terms) {
+                maxDepth = Math.max(maxDepth, term.depth());
+            }
+
+            this.depth = maxDepth;
+        }
+
+        @Override
+        int depth() {
+            return depth;
+        }
+
+        @Override
+        void collect(List<Dereference> dereferences) {
+            for (Node term: terms) {
+                term.collect(dereferences);
+            }
+        }
+    }
+
+    private final String expression;
+    private final Node root;
+
+    private int position = 0;
+
+    private MMAddressExpression(String expression) {
+        this.expression = expression;
+        this.root = parseSum();
+
+        skipSpaces();
+        if (position < expression.length()) {
+            throw error("Unexpected '%c'", expression.charAt(position));
+        }
+    }
+
+    public static MMAddressExpression parse(String expression) {
+        return new MMAddressExpression(expression);
+    }
+
+    Node getRoot() {
+        return root;
+    }
+
+    // Number of pointer reads on the longest chain
+    public int getDepth() {
+        return root.depth();
+    }
+
+    // Plain numbers resolve without touching the process
+    public boolean isConstant() {
+        return root instanceof Constant;
+    }
+
+    private Node parseSum() {
+        List<Node> terms = new ArrayList<>();
+        List<Boolean> negated = new ArrayList<>();
+
+        skipSpaces();
+        boolean negative = consume('-');
+        if (!negative) {
+            consume('+');
+        }
+
+        while (true) {
+            terms.add(parseTerm());
+            negated.add(negative);
+
+            skipSpaces();
+            if (consume('+')) {
+                negative = false;
+            } else if (consume('-')) {
+                negative = true;
+            } else {
+                break;
+            }
+        }
+
+        if (terms.size() == 1 && !negated.get(0)) {
+            return terms.get(0);
+        }
+
+        boolean[] negatedTerms = new boolean[negated.size()];
+        for (int i = 0; i < negatedTerms.length; i++) {
+            negatedTerms[i] = negated.get(i);
+        }
+
+        return new Sum(terms.toArray(new Node[0]), negatedTerms);
+    }
+
+    private Node parseTerm() {
+        skipSpaces();
+
+        if (position >= expression.length()) {
+            throw error("Unexpected end of expression");
+        }
+
+        char next = expression.charAt(position);
+
+        if (consume('[')) {
+            Node address = parseSum();
+
+            skipSpaces();
+            if (!consume(']')) {
+                throw error("Expected ']'");
+            }
+
+            return new Dereference(address);
+        } else if (next == '"') {
+            int end = expression.indexOf('"', position + 1);
+
+            if (end < 0) {
+                throw error("Unterminated module name");
+            }
+
+            String moduleName = expression.substring(position + 1, end);
+            position = end + 1;
+            return new Module(moduleName);
+        } else if (Character.isDigit(next)) {
+            int start = position;
+
+            while (position < expression.length() && Character.isLetterOrDigit(expression.charAt(position))) {
+                position++;
+            }
+
+            String number = expression.substring(start, position);
+
+            try {
+                return new Constant(number.startsWith("0x") || number.startsWith("0X")
+                    ? Long.parseUnsignedLong(number.substring(2), 16)
+                    : Long.parseLong(number));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '%s'", number);
+            }
+        } else if (isNameCharacter(next)) {
+            int start = position;
+
+            while (position < expression.length() && isNameCharacter(expression.charAt(position))) {
+                position++;
+            }
+
+            return new Module(expression.substring(start, position));
+        }
+
+        throw error("Unexpected '%c'", next);
+    }
+
+    private static boolean isNameCharacter(char character) {
+        return Character.isLetterOrDigit(character) || character == '_' || character == '.';
+    }
+
+    private boolean consume(char character) {
+        if (position < expression.length() && expression.charAt(position) == character) {
+            position++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void skipSpaces() {
+        while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String format, Object... args) {
+        return new IllegalArgumentException(String.format(
+            "%s at position %d of '%s'", String.format(format, args), position, expression
+        ));
+    }
+
+    // Quotes module names the parser would not read back as a single name
+    public static String formatModuleName(String moduleName) {
+        boolean plain = !moduleName.isEmpty() && !Character.isDigit(moduleName.charAt(0));
+
+        for (int i = 0; plain && i < moduleName.length(); i++) {
+            plain = isNameCharacter(moduleName.charAt(i));
+        }
+
+        return plain ? moduleName : '"' + moduleName + '"';
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,229 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.MMAddressExpression.Constant;
+import ru.linachan.memorymanager.MMAddressExpression.Dereference;
+import ru.linachan.memorymanager.MMAddressExpression.Module;
+import ru.linachan.memorymanager.MMAddressExpression.Node;
+import ru.linachan.memorymanager.MMAddressExpression.Sum;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// Resolves address expressions level by level: every pointer needed at one nesting depth, across all
+// expressions, is fetched with one batched read. Pointer values are cached for a short time so chains
+// sharing a prefix do not read it again.
+public class MMAddressResolver {
+
+    private static final int CACHE_CAPACITY = 4096;
+
+    private final MMProcess process;
+
+    private volatile int pointerSize = 8;
+    private volatile long cacheTTL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final LinkedHashMap<Long, long[]> pointerCache = new LinkedHashMap<Long, long[]>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    MMAddressResolver(MMProcess process) {
+        this.process = process;
+    }
+
+    public long resolve(String expression) {
+        return resolve(MMAddressExpression.parse(expression));
+    }
+
+    public long resolve(MMAddressExpression expression) {
+        Long address = resolve(Collections.singletonList(expression)).get(0);
+
+        if (address == null) {
+            throw new IllegalStateException(String.format("Unable to resolve %s", expression));
+        }
+
+        return address;
+    }
+
+    // Returns the address of every expression, null where a module is unknown or a pointer is unreadable
+    public List<Long> resolve(List<MMAddressExpression> expressions) {
+        List<Dereference> dereferences = new ArrayList<>();
+        for (MMAddressExpression expression: expressions) {
+            expression.getRoot().collect(dereferences);
+        }
+
+        dereferences.sort(Comparator.comparingInt(Dereference::depth));
+
+        Map<Dereference, Long> pointers = new IdentityHashMap<>();
+        Map<String, Long> moduleBases = getModuleBases(expressions);
+
+        int levelStart = 0;
+
+        while (levelStart < dereferences.size()) {
+            int levelEnd = levelStart;
+            while (levelEnd < dereferences.size() && dereferences.get(levelEnd).depth() == dereferences.get(levelStart).depth()) {
+                levelEnd++;
+            }
+
+            resolveLevel(dereferences.subList(levelStart, levelEnd), pointers, moduleBases);
+            levelStart = levelEnd;
+        }
+
+        List<Long> addresses = new ArrayList<>(expressions.size());
+        for (MMAddressExpression expression: expressions) {
+            addresses.add(evaluate(expression.getRoot(), pointers, moduleBases));
+        }
+
+        return addresses;
+    }
+
+    private void resolveLevel(List<Dereference> level, Map<Dereference, Long> pointers, Map<String, Long> moduleBases) {
+        long[] addresses = new long[level.size()];
+        Dereference[] pending = new Dereference[level.size()];
+        int pendingCount = 0;
+
+        long now = System.nanoTime();
+
+        synchronized (pointerCache) {
+            for (Dereference dereference: level) {
+                Long address = evaluate(dereference.address, pointers, moduleBases);
+
+                if (address == null) {
+                    continue;
+                }
+
+                long[] cached = pointerCache.get(address);
+
+                if (cached != null && now - cached[1] <= cacheTTL) {
+                    pointers.put(dereference, cached[0]);
+                } else {
+                    addresses[pendingCount] = address;
+                    pending[pendingCount++] = dereference;
+                }
+            }
+        }
+
+        if (pendingCount == 0) {
+            return;
+        }
+
+        int size = pointerSize;
+        long[] readAddresses = new long[pendingCount];
+        int[] lengths = new int[pendingCount];
+
+        for (int i = 0; i < pendingCount; i++) {
+            readAddresses[i] = addresses[i];
+            lengths[i] = size;
+        }
+
+        ByteBuffer values = ByteBuffer.allocate(pendingCount * size).order(ByteOrder.nativeOrder());
+        int[] bytesRead = process.readMemory(readAddresses, lengths, values);
+
+        synchronized (pointerCache) {
+            for (int i = 0; i < pendingCount; i++) {
+                if (bytesRead[i] < size) {
+                    continue;
+                }
+
+                long pointer = size == 8 ? values.getLong(i * size) : values.getInt(i * size) & 0xFFFFFFFFL;
+
+                pointers.put(pending[i], pointer);
+                pointerCache.put(readAddresses[i], new long[] { pointer, now });
+            }
+        }
+    }
+
+    private static Long evaluate(Node node, Map<Dereference, Long> pointers, Map<String, Long> moduleBases) {
+        if (node instanceof Constant) {
+            return ((Constant) node).value;
+        } else if (node instanceof Module) {
+            return moduleBases.get(((Module) node).moduleName);
+        } else if (node instanceof Dereference) {
+            return pointers.get(node);
+        }
+
+        Sum sum = (Sum) node;
+        long address = 0;
+
+        for (int i = 0; i < sum.terms.length; i++) {
+            Long term = evaluate(sum.terms[i], pointers, moduleBases);
+
+            if (term == null) {
+                return null;
+            }
+
+            address += sum.negated[i] ? -term : term;
+        }
+
+        return address;
+    }
+
+    private Map<String, Long> getModuleBases(List<MMAddressExpression> expressions) {
+        Map<String, Long> moduleBases = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        boolean constant = true;
+        for (MMAddressExpression expression: expressions) {
+            constant &= expression.isConstant();
+        }
+
+        if (!constant) {
+            MMRegionMap regionMap = process.getRegionMap();
+
+            for (int i = 0; i < regionMap.size(); i++) {
+                String moduleName = MMRegion.getModuleName(regionMap.getMappingName(i));
+
+                if (moduleName != null) {
+                    moduleBases.putIfAbsent(moduleName, regionMap.getBaseAddress(i));
+                }
+            }
+        }
+
+        return moduleBases;
+    }
+
+    public void invalidate() {
+        synchronized (pointerCache) {
+            pointerCache.clear();
+        }
+    }
+
+    public void invalidate(long address, long length) {
+        synchronized (pointerCache) {
+            if (length > CACHE_CAPACITY) {
+                pointerCache.clear();
+                return;
+            }
+
+            for (long pointerAddress = address - pointerSize + 1; pointerAddress < address + length; pointerAddress++) {
+                pointerCache.remove(pointerAddress);
+            }
+        }
+    }
+
+    public void setPointerSize(int pointerSize) {
+        if (pointerSize != 4 && pointerSize != 8) {
+            throw new IllegalArgumentException(String.format("Invalid pointer size: %d", pointerSize));
+        }
+
+        this.pointerSize = pointerSize;
+        invalidate();
+    }
+
+    public int getPointerSize() {
+        return pointerSize;
+    }
+
+    public void setCacheTTL(long ttl, TimeUnit unit) {
+        cacheTTL = unit.toNanos(ttl);
+    }
+}
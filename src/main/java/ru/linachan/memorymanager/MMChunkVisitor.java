@@ -0,0 +1,11 @@
+package ru.linachan.memorymanager;
+
+import java.nio.ByteBuffer;
+
+@FunctionalInterface
+public interface MMChunkVisitor {
+
+    // chunk holds the bytes read at chunkAddress between position 0 and its limit.
+    // Only matches starting before startLimit belong to this chunk, the rest is overlap with the next one.
+    void visit(long chunkAddress, ByteBuffer chunk, int startLimit);
+}
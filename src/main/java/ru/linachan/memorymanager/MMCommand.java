@@ -1,5 +1,17 @@
 package ru.linachan.memorymanager;
 
+import ru.linachan.memorymanager.backend.MMSnapshotHandle;
+import ru.linachan.memorymanager.search.MMPattern;
+import ru.linachan.memorymanager.search.MMQuery;
+import ru.linachan.memorymanager.search.MMQueryScanner;
+import ru.linachan.memorymanager.search.MMScanCondition;
+import ru.linachan.memorymanager.search.MMSignatureSet;
+import ru.linachan.memorymanager.search.MMStringEncoding;
+import ru.linachan.memorymanager.search.MMValueType;
+import ru.linachan.memorymanager.utils.MMHexDumper;
+import ru.linachan.memorymanager.utils.MMHistogram;
+import ru.linachan.memorymanager.utils.MMIntervalList;
+import ru.linachan.memorymanager.utils.MMResultStore;
 import ru.linachan.memorymanager.utils.MMUtils;
 import ru.linachan.yggdrasil.common.console.tables.Table;
 import ru.linachan.yggdrasil.plugin.YggdrasilPluginManager;
@@ -7,15 +19,43 @@ import ru.linachan.yggdrasil.shell.YggdrasilShellCommand;
 import ru.linachan.yggdrasil.shell.helpers.CommandAction;
 import ru.linachan.yggdrasil.shell.helpers.ShellCommand;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 
 @ShellCommand(command = "mm", description = "Manipulate process memory")
 public class MMCommand extends YggdrasilShellCommand {
 
+    private static final long SEARCH_POLL_INTERVAL = 250;
+    private static final int RESULT_PAGE_SIZE = 100;
+    private static final int EXPORT_PAGE_SIZE = 4096;
+
     private MMPlugin mmEngine;
+    private volatile MMSearch activeSearch = null;
+    private volatile MMMultiSearch activeMultiSearch = null;
 
     @Override
     protected void init() throws IOException {
@@ -26,6 +66,10 @@ public class MMCommand extends YggdrasilShellCommand {
     public void ps() throws IOException {
         Map<Integer, String> processList;
 
+        if (kwargs.containsKey("refresh")) {
+            mmEngine.getProcessTable().refresh();
+        }
+
         if (kwargs.containsKey("name")) {
             processList = MMUtils.processListToMap(mmEngine.getProcessesByName(kwargs.get("name")));
         } else {
@@ -38,43 +82,27 @@ public class MMCommand extends YggdrasilShellCommand {
     @CommandAction("Attach to process")
     public void attach() throws IOException {
         if (kwargs.containsKey("pid")) {
-            Optional<MMProcess> processOptional = mmEngine.getAllProcesses().stream()
-                    .filter(process -> String.valueOf(process.getProcessID()).equals(kwargs.get("pid")))
-                    .findFirst();
-
-            if (processOptional.isPresent()) {
-                if (mmEngine.isAttached()) {
-                    if (!console.readYesNo(String.format("MMPlugin is already attached to '%s'. Do you want to detach it?", mmEngine.getAttachedProcess().getProcessName()))) {
-                        console.writeLine("Canceled");
-                        return;
-                    }
-                }
-
-                MMProcess process = processOptional.get();
-                mmEngine.attachProcess(process);
+            MMProcess process = mmEngine.getProcess(Integer.parseInt(kwargs.get("pid")));
 
-                console.writeLine("Attached to '%s' at PID%d", process.getProcessName(), process.getProcessID());
+            if (process != null) {
+                attachSession(process);
+            } else {
+                console.writeLine("No process with PID%s", kwargs.get("pid"));
             }
         } else if (kwargs.containsKey("name")) {
             List<MMProcess> processes = mmEngine.getProcessesByName(kwargs.get("name"));
 
-            if (processes.size() > 1) {
-                console.writeLine("Multiple processes found. Provide --pid instead.");
+            if (processes.size() > 1 && !kwargs.containsKey("all")) {
+                console.writeLine("Multiple processes found. Provide --pid or --all instead.");
                 console.writeTable(new Table(
                     MMUtils.processListToMap(processes), "PID", "Process Name"
                 ));
-            } else if (processes.size() == 1) {
-                if (mmEngine.isAttached()) {
-                    if (!console.readYesNo(String.format("MMPlugin is already attached to '%s'. Do you want to detach it?", mmEngine.getAttachedProcess().getProcessName()))) {
-                        console.writeLine("Canceled");
-                        return;
-                    }
+            } else if (processes.isEmpty()) {
+                console.writeLine("No process named '%s'", kwargs.get("name"));
+            } else {
+                for (MMProcess process: processes) {
+                    attachSession(process);
                 }
-
-                MMProcess process = processes.get(0);
-                mmEngine.attachProcess(process);
-
-                console.writeLine("Attached to '%s' at PID%d", process.getProcessName(), process.getProcessID());
             }
         } else {
             if (mmEngine.isAttached()) {
@@ -89,10 +117,36 @@ public class MMCommand extends YggdrasilShellCommand {
         }
     }
 
+    private void attachSession(MMProcess process) throws IOException {
+        boolean reattached = mmEngine.getSessions().contains(process.getProcessID());
+        mmEngine.attachProcess(process);
+
+        console.writeLine(
+            "%s '%s' at PID%d, %d sessions open", reattached ? "Reattached to" : "Attached to",
+            process.getProcessName(), process.getProcessID(), mmEngine.getSessions().size()
+        );
+    }
+
     @CommandAction("Detach from process")
     public void detach() throws IOException {
-        if (mmEngine.isAttached()) {
-            if (kwargs.containsKey("kill")) {
+        if (kwargs.containsKey("all")) {
+            int sessionCount = mmEngine.getSessions().size();
+            mmEngine.detachAll();
+            console.writeLine("Detached from %d processes", sessionCount);
+        } else if (kwargs.containsKey("pid") || kwargs.containsKey("session")) {
+            // Live sessions go by PID, snapshots and dumps by the negative ID shown by mm sessions
+            int sessionID = Integer.parseInt(kwargs.containsKey("session") ? kwargs.get("session") : kwargs.get("pid"));
+
+            if (mmEngine.detachProcess(sessionID)) {
+                console.writeLine("Detached session %d", sessionID);
+            } else {
+                console.writeLine("No session %d", sessionID);
+            }
+        } else if (mmEngine.isAttached()) {
+            if (kwargs.containsKey("kill") && mmEngine.getActiveSession().isOffline()) {
+                console.writeLine("Snapshots and dumps cannot be killed, detach without --kill");
+                return;
+            } else if (kwargs.containsKey("kill")) {
                 console.writeLine("Killing process PID%d", mmEngine.getAttachedProcess().getProcessID());
                 mmEngine.getAttachedProcess().kill();
             }
@@ -104,17 +158,175 @@ public class MMCommand extends YggdrasilShellCommand {
         }
     }
 
+    @CommandAction("List or select attached processes")
+    public void sessions() throws IOException {
+        if (kwargs.containsKey("select")) {
+            int sessionID = Integer.parseInt(kwargs.get("select"));
+
+            if (!mmEngine.selectSession(sessionID)) {
+                console.writeLine("No session %d", sessionID);
+                return;
+            }
+        }
+
+        MMSession activeSession = mmEngine.getActiveSession();
+        Table sessionTable = new Table("Active", "Session", "PID", "Process Name", "Regions", "Attached");
+
+        for (MMSession session: mmEngine.getSessions().getSessions()) {
+            sessionTable.addRow(
+                session == activeSession ? "*" : "",
+                String.valueOf(session.getSessionID()),
+                String.valueOf(session.getProcessID()),
+                session.getProcessName(),
+                session.isOpen() ? String.valueOf(session.getProcess().getRegionMap().size()) : "closed",
+                String.format("%tT", session.getAttachedAt())
+            );
+        }
+
+        console.writeTable(sessionTable);
+    }
+
     @CommandAction("Dump process memory")
     public void dump() throws IOException {
         if (mmEngine.isAttached()) {
-            if (kwargs.containsKey("address")&&kwargs.containsKey("length")) {
-                long address = Long.decode(kwargs.get("address"));
-                int length = Integer.parseInt(kwargs.get("length"));
+            MMProcess process = mmEngine.getAttachedProcess();
+            int bytesPerLine = kwargs.containsKey("width")
+                ? Integer.parseInt(kwargs.get("width")) : MMHexDumper.DEFAULT_BYTES_PER_LINE;
+
+            boolean ranged = kwargs.containsKey("address") && kwargs.containsKey("length");
+
+            if (kwargs.containsKey("out")) {
+                Path outputPath = Paths.get(kwargs.get("out"));
+
+                try (FileChannel output = FileChannel.open(
+                    outputPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+                )) {
+                    MMHexDumper dumper = new MMHexDumper(output, bytesPerLine);
+
+                    if (ranged) {
+                        process.dumpMemory(resolveAddress(kwargs.get("address")), Long.decode(kwargs.get("length")), dumper);
+                    } else {
+                        process.dumpMemory(dumper);
+                    }
+
+                    console.writeLine("Dumped %d bytes to %s", output.size(), outputPath);
+                }
+            } else if (ranged) {
+                process.dumpMemory(
+                    resolveAddress(kwargs.get("address")), Long.decode(kwargs.get("length")),
+                    new MMHexDumper(new ConsoleLineWriter(), bytesPerLine)
+                );
+            }
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Save or load process memory snapshot, or load a core file or minidump")
+    public void snapshot() throws IOException {
+        if (kwargs.containsKey("load")) {
+            MMProcess snapshot = mmEngine.loadSnapshot(Paths.get(kwargs.get("load")));
+            MMSession session = mmEngine.attachSnapshot(snapshot);
+
+            console.writeLine(
+                "Attached to snapshot of %s[%d] as session %d: %d regions",
+                snapshot.getProcessName(), snapshot.getProcessID(), session.getSessionID(), snapshot.getRegionMap().size()
+            );
+        } else if (kwargs.containsKey("save")) {
+            if (mmEngine.isAttached()) {
+                Path snapshotPath = Paths.get(kwargs.get("save"));
+                long snapshotSize = mmEngine.getAttachedProcess().saveSnapshot(snapshotPath);
+
+                console.writeLine("Saved %d bytes to %s", snapshotSize, snapshotPath);
+            } else {
+                console.writeLine("No process attached");
+            }
+        } else {
+            console.writeLine("Specify --save <file> or --load <file>");
+        }
+    }
+
+    @CommandAction("Compare two memory snapshots")
+    public void diff() throws IOException {
+        if (!kwargs.containsKey("from") || !kwargs.containsKey("to")) {
+            console.writeLine("Specify --from <file> and --to <file>");
+            return;
+        }
+
+        try (
+            MMSnapshotHandle before = new MMSnapshotHandle(Paths.get(kwargs.get("from")));
+            MMSnapshotHandle after = new MMSnapshotHandle(Paths.get(kwargs.get("to")))
+        ) {
+            MMSnapshotDiff snapshotDiff = new MMSnapshotDiff(before, after);
+            MMIntervalList changes = snapshotDiff.compare(mmEngine.getScanPool());
+
+            console.writeLine(
+                "%d changed ranges, %d bytes (%d of %d pages compared byte by byte)",
+                changes.size(), changes.getTotalLength(), snapshotDiff.getComparedPages(), snapshotDiff.getHashedPages()
+            );
+
+            int displayLimit = Integer.parseInt(kwargs.getOrDefault("show", "100"));
+
+            if (!changes.isEmpty() && displayLimit > 0) {
+                Table changeTable = new Table("Start", "End", "Length");
+
+                for (int i = 0; i < Math.min(changes.size(), displayLimit); i++) {
+                    changeTable.addRow(
+                        String.format("%08X", changes.getStart(i)),
+                        String.format("%08X", changes.getEnd(i)),
+                        String.valueOf(changes.getEnd(i) - changes.getStart(i))
+                    );
+                }
+
+                console.writeTable(changeTable);
+            }
+        }
+    }
+
+    @CommandAction("List process memory regions")
+    public void regions() throws IOException {
+        if (mmEngine.isAttached()) {
+            MMProcess process = mmEngine.getAttachedProcess();
+            MMRegionMap regionMap = kwargs.containsKey("refresh") ? process.refreshRegions() : process.getRegionMap();
+
+            Table regionTable = new Table("Start", "End", "Protection", "Mapping");
 
-                for (String line: mmEngine.getAttachedProcess().dumpMemory(address, length).split("\r\n")) {
-                    console.writeLine(line);
+            for (int i = 0; i < regionMap.size(); i++) {
+                MMRegion region = regionMap.getRegion(i);
+
+                if (kwargs.containsKey("all") || region.hasProtection(process.getRequiredProtection(), process.getExcludedProtection())) {
+                    regionTable.addRow(
+                        String.format("%08X", region.getBaseAddress()),
+                        String.format("%08X", region.getEndAddress()),
+                        MMRegion.formatProtection(region.getProtection()),
+                        region.getMappingName()
+                    );
                 }
             }
+
+            console.writeTable(regionTable);
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Configure scanned region protection")
+    public void filter() throws IOException {
+        if (mmEngine.isAttached()) {
+            MMProcess process = mmEngine.getAttachedProcess();
+
+            if (kwargs.containsKey("require") || kwargs.containsKey("exclude")) {
+                process.setProtectionFilter(
+                    MMRegion.parseProtection(kwargs.getOrDefault("require", "")),
+                    MMRegion.parseProtection(kwargs.getOrDefault("exclude", ""))
+                );
+            }
+
+            console.writeLine(
+                "Scanning regions with '%s' and without '%s'",
+                MMRegion.formatProtection(process.getRequiredProtection()),
+                MMRegion.formatProtection(process.getExcludedProtection())
+            );
         } else {
             console.writeLine("No process attached");
         }
@@ -127,71 +339,1014 @@ public class MMCommand extends YggdrasilShellCommand {
             Integer bytesPerChar = Integer.parseInt(kwargs.getOrDefault("bytes", "2"));
             String type = kwargs.getOrDefault("type", "string");
 
+            if (kwargs.containsKey("threads")) {
+                mmEngine.setScanParallelism(Integer.parseInt(kwargs.get("threads")));
+            }
+
             MMReader memoryReader = mmEngine.getAttachedProcess()
-                .getMemoryReader();
+                .getMemoryReader(mmEngine.getScanPool());
 
-            if (value != null) {
-                Table searchResults = new Table("Address", "Value");
+            MMSearch search;
+            String label;
+
+            switch (type) {
+                case "string":
+                    if (value == null) {
+                        console.writeLine("No pattern provided");
+                        return;
+                    }
 
-                switch (type) {
-                    case "string":
-                        memoryReader.findString(value, bytesPerChar).forEach(result -> searchResults.addRow(
-                                String.format("%08X", result),
-                                memoryReader.readString(result, bytesPerChar))
+                    MMStringEncoding encoding = kwargs.containsKey("encoding")
+                        ? MMStringEncoding.fromName(kwargs.get("encoding"))
+                        : MMStringEncoding.fromBytesPerChar(bytesPerChar);
+                    boolean ignoreCase = kwargs.containsKey("ignore-case");
+                    int maxBytes = Integer.parseInt(kwargs.getOrDefault("length", String.valueOf(MMReader.MAX_STRING_BYTES)));
+
+                    search = awaitSearch(streamMatches -> memoryReader.findStringAsync(
+                        value, encoding, ignoreCase, streamMatches
+                    ));
+                    label = String.format("string:%s:%d", encoding.name().toLowerCase(), maxBytes);
+                    break;
+                case "bytes":
+                    if (value == null) {
+                        console.writeLine("No pattern provided");
+                        return;
+                    }
+
+                    MMPattern pattern = MMPattern.parse(value);
+
+                    search = awaitSearch(streamMatches -> memoryReader.findBytesAsync(pattern, streamMatches));
+                    label = String.format("bytes:%d", pattern.length());
+                    break;
+                case "query":
+                    if (value == null) {
+                        console.writeLine("No query provided");
+                        return;
+                    }
+
+                    MMQuery query = MMQuery.parse(value);
+                    MMQueryScanner queryScanner = memoryReader.compileQuery(
+                        query, Integer.parseInt(kwargs.getOrDefault("align", "1"))
+                    );
+
+                    for (int i = 0; i < queryScanner.getOrder().size(); i++) {
+                        console.writeLine("%d. %s (held at %.4f%% of sampled positions)",
+                            i + 1, queryScanner.getOrder().get(i), queryScanner.getPassRate(i) * 100
                         );
-                        break;
-                    case "byte":
-                        memoryReader.findByte(Byte.parseByte(value)).forEach(result -> searchResults.addRow(
-                                String.format("%08X", result),
-                                String.valueOf(memoryReader.readByte(result))
-                        ));
-                        break;
-                    case "short":
-                        memoryReader.findShort(Short.parseShort(value)).forEach(result -> searchResults.addRow(
-                                String.format("%08X", result),
-                                String.valueOf(memoryReader.readShort(result))
-                        ));
-                        break;
-                    case "int":
-                        memoryReader.findInt(Integer.parseInt(value)).forEach(result -> searchResults.addRow(
-                                String.format("%08X", result),
-                                String.valueOf(memoryReader.readInt(result))
-                        ));
-                        break;
-                    case "long":
-                        memoryReader.findLong(Long.parseLong(value)).forEach(result -> searchResults.addRow(
-                                String.format("%08X", result),
-                                String.valueOf(memoryReader.readLong(result))
-                        ));
-                        break;
-                    case "float":
-                        memoryReader.findFloat(Float.parseFloat(value)).forEach(result -> searchResults.addRow(
-                                String.format("%08X", result),
-                                String.valueOf(memoryReader.readFloat(result))
-                        ));
-                        break;
-                    case "double":
-                        memoryReader.findDouble(Double.parseDouble(value)).forEach(result -> searchResults.addRow(
-                                String.format("%08X", result),
-                                String.valueOf(memoryReader.readDouble(result))
+                    }
+
+                    search = awaitSearch(streamMatches -> memoryReader.findQueryAsync(
+                        queryScanner, streamMatches
+                    ));
+                    label = String.format("query:%s", query);
+                    break;
+                case "byte":
+                case "short":
+                case "int":
+                case "long":
+                case "float":
+                case "double":
+                    MMValueType valueType = MMValueType.fromName(type);
+
+                    if (!checkRange()) {
+                        return;
+                    }
+
+                    MMScanCondition condition = parseValueCondition(valueType);
+
+                    if (condition == null) {
+                        console.writeLine("No pattern provided");
+                        return;
+                    }
+
+                    int alignment = Integer.parseInt(kwargs.getOrDefault("align", "1"));
+
+                    search = awaitSearch(streamMatches -> memoryReader.findValuesAsync(
+                        valueType, condition, alignment, streamMatches
+                    ));
+                    label = String.format("value:%s", valueType.name().toLowerCase());
+                    break;
+                default:
+                    console.writeLine("Unknown type: '%s'", type);
+                    return;
+            }
+
+            if (search != null) {
+                keepResults(search, label);
+            }
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Extract printable strings from process memory")
+    public void strings() throws IOException {
+        if (mmEngine.isAttached()) {
+            MMStringEncoding encoding = MMStringEncoding.fromName(kwargs.getOrDefault("encoding", "ascii"));
+            int minLength = Integer.parseInt(kwargs.getOrDefault("min", "4"));
+            int maxBytes = Integer.parseInt(kwargs.getOrDefault("length", "256"));
+
+            if (kwargs.containsKey("threads")) {
+                mmEngine.setScanParallelism(Integer.parseInt(kwargs.get("threads")));
+            }
+
+            MMReader memoryReader = mmEngine.getAttachedProcess()
+                .getMemoryReader(mmEngine.getScanPool());
+
+            MMSearch search = awaitSearch(streamMatches -> memoryReader.findStringsAsync(
+                encoding, minLength, streamMatches
+            ));
+
+            if (search != null) {
+                keepResults(search, String.format("strings:%s:%d", encoding.name().toLowerCase(), maxBytes));
+            }
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Page through, export or reopen results of the last search")
+    public void results() throws IOException {
+        if (!mmEngine.isAttached()) {
+            console.writeLine("No process attached");
+            return;
+        }
+
+        MMSession session = mmEngine.getActiveSession();
+
+        if (kwargs.containsKey("load")) {
+            Path resultPath = Paths.get(kwargs.get("load"));
+            session.setResults(MMResultStore.open(resultPath));
+
+            console.writeLine("Loaded %d results from %s", session.getResults().size(), resultPath);
+        }
+
+        MMResultStore results = session.getResults();
+
+        if (results == null) {
+            console.writeLine("No results");
+            return;
+        }
+
+        if (kwargs.containsKey("out")) {
+            exportResults(session, Paths.get(kwargs.get("out")));
+            return;
+        }
+
+        int pageSize = getResultPageSize();
+        long offset = session.getResultOffset();
+
+        if (kwargs.containsKey("offset")) {
+            offset = Long.parseLong(kwargs.get("offset"));
+        } else if (kwargs.containsKey("page")) {
+            offset = (Long.parseLong(kwargs.get("page")) - 1) * pageSize;
+        } else if (kwargs.containsKey("next")) {
+            offset += pageSize;
+        } else if (kwargs.containsKey("prev")) {
+            offset -= pageSize;
+        }
+
+        writeResultPage(session, Math.max(0, offset));
+    }
+
+    @CommandAction("Scan process memory for a file of signatures at once")
+    public void sigscan() throws IOException {
+        if (mmEngine.isAttached()) {
+            if (!kwargs.containsKey("file")) {
+                console.writeLine("No signature file provided");
+                return;
+            }
+
+            MMSignatureSet signatures = MMSignatureSet.load(Paths.get(kwargs.get("file")));
+            int displayLimit = Integer.parseInt(kwargs.getOrDefault("show", "4"));
+
+            if (kwargs.containsKey("threads")) {
+                mmEngine.setScanParallelism(Integer.parseInt(kwargs.get("threads")));
+            }
+
+            MMReader memoryReader = mmEngine.getAttachedProcess()
+                .getMemoryReader(mmEngine.getScanPool());
+
+            MMSignatureScan[] signatureScan = new MMSignatureScan[1];
+            MMSearch search = awaitSearch(streamMatches -> {
+                signatureScan[0] = memoryReader.findSignaturesAsync(signatures, streamMatches);
+                return signatureScan[0].getSearch();
+            });
+
+            if (search == null) {
+                return;
+            }
+
+            Table signatureTable = new Table("Signature", "Matches", "Addresses");
+            int matchedSignatures = 0;
+
+            for (Map.Entry<String, List<Long>> signatureMatches: signatureScan[0].getMatches().entrySet()) {
+                List<Long> addresses = signatureMatches.getValue();
+                matchedSignatures += addresses.isEmpty() ? 0 : 1;
+
+                signatureTable.addRow(
+                    signatureMatches.getKey(), String.valueOf(addresses.size()),
+                    addresses.stream()
+                        .limit(displayLimit)
+                        .map(address -> String.format("%08X", address))
+                        .collect(Collectors.joining(" ")) + (addresses.size() > displayLimit ? " ..." : "")
+                );
+            }
+
+            console.writeTable(signatureTable);
+            console.writeLine("Matched %d signatures of %d", matchedSignatures, signatures.size());
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Search value in several attached processes at once")
+    public void msearch() throws IOException {
+        if (mmEngine.getSessions().isEmpty()) {
+            console.writeLine("No process attached");
+            return;
+        }
+
+        List<MMSession> sessions = kwargs.containsKey("pids")
+            ? mmEngine.getSessions().getSessions(Arrays.stream(kwargs.get("pids").split(","))
+                .map(String::trim).map(Integer::valueOf).collect(Collectors.toList()))
+            : mmEngine.getSessions().getSessions();
+
+        String value = kwargs.getOrDefault("value", null);
+        String type = kwargs.getOrDefault("type", "bytes");
+        int displayLimit = Integer.parseInt(kwargs.getOrDefault("show", "4"));
+
+        if (kwargs.containsKey("threads")) {
+            mmEngine.setScanParallelism(Integer.parseInt(kwargs.get("threads")));
+        }
+
+        ForkJoinPool scanPool = mmEngine.getScanPool();
+        Function<MMReader, MMSearch> searchStarter;
+
+        switch (type) {
+            case "string":
+                if (value == null) {
+                    console.writeLine("No pattern provided");
+                    return;
+                }
+
+                MMStringEncoding encoding = MMStringEncoding.fromName(kwargs.getOrDefault("encoding", "utf16le"));
+                boolean ignoreCase = kwargs.containsKey("ignore-case");
+
+                searchStarter = memoryReader -> memoryReader.findStringAsync(value, encoding, ignoreCase, null);
+                break;
+            case "bytes":
+                if (value == null) {
+                    console.writeLine("No pattern provided");
+                    return;
+                }
+
+                MMPattern pattern = MMPattern.parse(value);
+                searchStarter = memoryReader -> memoryReader.findBytesAsync(pattern, null);
+                break;
+            case "byte":
+            case "short":
+            case "int":
+            case "long":
+            case "float":
+            case "double":
+                MMValueType valueType = MMValueType.fromName(type);
+
+                if (!checkRange()) {
+                    return;
+                }
+
+                MMScanCondition condition = parseValueCondition(valueType);
+
+                if (condition == null) {
+                    console.writeLine("No pattern provided");
+                    return;
+                }
+
+                int alignment = Integer.parseInt(kwargs.getOrDefault("align", "1"));
+                searchStarter = memoryReader -> memoryReader.findValuesAsync(valueType, condition, alignment, null);
+                break;
+            case "query":
+                if (value == null) {
+                    console.writeLine("No query provided");
+                    return;
+                }
+
+                MMQuery query = MMQuery.parse(value);
+                int queryAlignment = Integer.parseInt(kwargs.getOrDefault("align", "1"));
+
+                // Each process is sampled on its own, so the evaluation order may differ between them
+                searchStarter = memoryReader -> memoryReader.findQueryAsync(query, queryAlignment, null);
+                break;
+            default:
+                console.writeLine("Unknown type: '%s'", type);
+                return;
+        }
+
+        MMMultiSearch multiSearch = MMMultiSearch.start(
+            sessions, session -> searchStarter.apply(session.getMemoryReader(scanPool))
+        );
+
+        // Matches are only shown, so the stores behind them go as soon as the table is written
+        try {
+            Map<Integer, List<Long>> processMatches = awaitMultiSearch(multiSearch);
+
+            if (processMatches == null) {
+                return;
+            }
+
+            Table matchTable = new Table("Session", "PID", "Process Name", "Matches", "Addresses");
+
+            for (MMSession session: sessions) {
+                List<Long> addresses = processMatches.get(session.getSessionID());
+
+                if (addresses != null) {
+                    matchTable.addRow(
+                        String.valueOf(session.getSessionID()), String.valueOf(session.getProcessID()),
+                        session.getProcessName(), String.valueOf(addresses.size()),
+                        addresses.stream()
+                            .limit(displayLimit)
+                            .map(address -> String.format("%08X", address))
+                            .collect(Collectors.joining(" ")) + (addresses.size() > displayLimit ? " ..." : "")
+                    );
+                }
+            }
+
+            console.writeTable(matchTable);
+
+            for (Map.Entry<Integer, Throwable> failure: multiSearch.getFailures().entrySet()) {
+                console.writeLine("Session %d failed: %s", failure.getKey(), failure.getValue());
+            }
+        } finally {
+            multiSearch.closeResults();
+        }
+    }
+
+    // Runs a search while reporting progress and its first matches, returns the finished search or null
+    // if it was cancelled
+    private MMSearch awaitSearch(Function<LongConsumer, MMSearch> searchStarter) throws IOException {
+        int streamLimit = Integer.parseInt(kwargs.getOrDefault("stream", "10"));
+        AtomicInteger streamed = new AtomicInteger();
+        Queue<Long> firstMatches = new ConcurrentLinkedQueue<>();
+
+        MMSearch search = searchStarter.apply(address -> {
+            if (streamed.getAndIncrement() < streamLimit) {
+                firstMatches.add(address);
+            }
+        });
+
+        activeSearch = search;
+
+        try {
+            long reportedAt = System.nanoTime();
+
+            while (true) {
+                try {
+                    search.get(SEARCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+                    console.writeLine(
+                        "Scanned %d MB in %d regions in %.2f s (%.1f MB/s, %d ms matching, %d ms reading), %d matches",
+                        search.getBytesScanned() >> 20, search.getTotalRegions(), search.getElapsedNanos() / 1e9,
+                        search.getThroughput(), TimeUnit.NANOSECONDS.toMillis(search.getMatchNanos()),
+                        TimeUnit.NANOSECONDS.toMillis(search.getIoNanos()), search.getMatchCount()
+                    );
+
+                    return search;
+                } catch (TimeoutException e) {
+                    for (Long address = firstMatches.poll(); address != null; address = firstMatches.poll()) {
+                        console.writeLine("Found %08X", address);
+                    }
+
+                    if (System.nanoTime() - reportedAt >= TimeUnit.SECONDS.toNanos(1)) {
+                        console.writeLine(
+                            "Scanned %d of %d MB in %d of %d regions, %d matches",
+                            search.getBytesScanned() >> 20, search.getTotalBytes() >> 20,
+                            search.getRegionsScanned(), search.getTotalRegions(), search.getMatchCount()
+                        );
+                        reportedAt = System.nanoTime();
+                    }
+                }
+            }
+        } catch (CancellationException e) {
+            console.writeLine(
+                "Search cancelled after %d MB, %d matches", search.getBytesScanned() >> 20, search.getMatchCount()
+            );
+            return null;
+        } catch (InterruptedException e) {
+            search.cancel();
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        } finally {
+            activeSearch = null;
+        }
+    }
+
+    // Same as awaitSearch for a search over several processes, returns null if it was cancelled
+    private Map<Integer, List<Long>> awaitMultiSearch(MMMultiSearch multiSearch) throws IOException {
+        activeMultiSearch = multiSearch;
+
+        try {
+            long reportedAt = System.nanoTime();
+
+            while (true) {
+                try {
+                    Map<Integer, List<Long>> matches = multiSearch.get(SEARCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+                    console.writeLine(
+                        "Scanned %d MB of %d processes in %.2f s (%.1f MB/s), %d matches",
+                        multiSearch.getBytesScanned() >> 20, multiSearch.getSearches().size(),
+                        multiSearch.getElapsedNanos() / 1e9, multiSearch.getThroughput(), multiSearch.getMatchCount()
+                    );
+
+                    return matches;
+                } catch (TimeoutException e) {
+                    if (System.nanoTime() - reportedAt >= TimeUnit.SECONDS.toNanos(1)) {
+                        console.writeLine(
+                            "Scanned %d of %d MB, %d of %d processes done, %d matches",
+                            multiSearch.getBytesScanned() >> 20, multiSearch.getTotalBytes() >> 20,
+                            multiSearch.getProcessesDone(), multiSearch.getSearches().size(), multiSearch.getMatchCount()
+                        );
+                        reportedAt = System.nanoTime();
+                    }
+                }
+            }
+        } catch (CancellationException e) {
+            console.writeLine(
+                "Search cancelled after %d MB, %d matches", multiSearch.getBytesScanned() >> 20, multiSearch.getMatchCount()
+            );
+            return null;
+        } catch (InterruptedException e) {
+            multiSearch.cancel();
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        } finally {
+            activeMultiSearch = null;
+        }
+    }
+
+    // Keeps the results of a finished search in the active session and shows their first page, or exports them
+    private void keepResults(MMSearch search, String label) throws IOException {
+        MMSession session = mmEngine.getActiveSession();
+        MMResultStore results = search.getResults();
+        results.setLabel(label);
+
+        if (session == null) {
+            results.close();
+            return;
+        }
+
+        session.setResults(results);
+
+        if (kwargs.containsKey("out")) {
+            exportResults(session, Paths.get(kwargs.get("out")));
+        } else {
+            writeResultPage(session, Long.parseLong(kwargs.getOrDefault("offset", "0")));
+        }
+    }
+
+    private int getResultPageSize() {
+        return Integer.parseInt(kwargs.getOrDefault("limit", kwargs.getOrDefault("show", String.valueOf(RESULT_PAGE_SIZE))));
+    }
+
+    private void writeResultPage(MMSession session, long offset) throws IOException {
+        MMResultStore results = session.getResults();
+
+        if (results.isEmpty()) {
+            console.writeLine("No results");
+            return;
+        }
+
+        if (offset >= results.size()) {
+            console.writeLine("Offset %d is past the last of %d results", offset, results.size());
+            return;
+        }
+
+        long[] addresses = results.read(offset, getResultPageSize());
+        String[] values = formatResults(session.getMemoryReader(mmEngine.getScanPool()), results.getLabel(), addresses);
+
+        Table resultTable = new Table("Address", "Value");
+
+        for (int i = 0; i < addresses.length; i++) {
+            resultTable.addRow(String.format("%08X", addresses[i]), values[i]);
+        }
+
+        session.setResultOffset(offset);
+
+        console.writeTable(resultTable);
+        console.writeLine(
+            "Results %d-%d of %d%s", offset + 1, offset + addresses.length, results.size(),
+            offset + addresses.length < results.size() ? ", mm results --next for more" : ""
+        );
+    }
+
+    // Writes the results as address,value lines when the file ends with .csv and as a binary address list
+    // otherwise, --format csv or bin overrides the extension
+    private void exportResults(MMSession session, Path outputPath) throws IOException {
+        MMResultStore results = session.getResults();
+        String format = kwargs.getOrDefault("format", outputPath.toString().toLowerCase().endsWith(".csv") ? "csv" : "bin");
+
+        switch (format) {
+            case "csv":
+                MMReader memoryReader = session.getMemoryReader(mmEngine.getScanPool());
+
+                try (BufferedWriter output = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
+                    output.write("address,value\n");
+
+                    for (long offset = 0; offset < results.size(); offset += EXPORT_PAGE_SIZE) {
+                        long[] addresses = results.read(offset, EXPORT_PAGE_SIZE);
+                        String[] values = formatResults(memoryReader, results.getLabel(), addresses);
+
+                        for (int i = 0; i < addresses.length; i++) {
+                            output.write(String.format("%08X,%s\n", addresses[i], toCsvField(values[i])));
+                        }
+                    }
+                }
+
+                console.writeLine("Exported %d results to %s", results.size(), outputPath);
+                break;
+            case "bin":
+                long fileSize = results.save(outputPath);
+                console.writeLine("Saved %d results (%d bytes) to %s", results.size(), fileSize, outputPath);
+                break;
+            default:
+                console.writeLine("Unknown format: '%s'", format);
+                break;
+        }
+    }
+
+    private static String toCsvField(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        return value.matches("(?s).*[,\"\r\n].*") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    // Reads what the addresses point at as described by the result label. String matches are moved to the
+    // start of their strings in place.
+    private static String[] formatResults(MMReader memoryReader, String label, long[] addresses) {
+        String[] labelParts = (label != null ? label : "").split(":", 2);
+        String argument = labelParts.length > 1 ? labelParts[1] : "";
+        String[] values = new String[addresses.length];
+
+        switch (labelParts[0]) {
+            case "string":
+            case "strings":
+                String[] stringParts = argument.split(":");
+                MMStringEncoding encoding = MMStringEncoding.fromName(stringParts[0]);
+                int maxBytes = Integer.parseInt(stringParts[1]);
+
+                if (labelParts[0].equals("strings")) {
+                    return memoryReader.readPrintableStrings(addresses, encoding, maxBytes);
+                }
+
+                for (int i = 0; i < addresses.length; i++) {
+                    addresses[i] = memoryReader.findStringStart(addresses[i], encoding, maxBytes);
+                }
+
+                return memoryReader.readStrings(addresses, encoding, maxBytes);
+            case "value":
+                MMValueType valueType = MMValueType.fromName(argument);
+                long[] valueBits = memoryReader.readValues(valueType, addresses);
+
+                for (int i = 0; i < addresses.length; i++) {
+                    values[i] = valueType.format(valueBits[i]);
+                }
+
+                return values;
+            case "query":
+                MMQuery query = MMQuery.parse(argument);
+                ByteBuffer queryValues = ByteBuffer.wrap(memoryReader.readBytes(addresses, query.size()))
+                    .order(ByteOrder.nativeOrder());
+
+                for (int i = 0; i < addresses.length; i++) {
+                    StringBuilder fieldValues = new StringBuilder();
+
+                    for (MMQuery.Field field: query.getFields()) {
+                        fieldValues.append(fieldValues.length() > 0 ? " " : "").append(String.format(
+                            "+%d=%s", field.getOffset(),
+                            field.format(field.getValueType().read(queryValues, i * query.size() + field.getOffset()))
                         ));
-                        break;
-                    default:
-                        console.writeLine("Unknown type: '%s'", type);
-                        break;
+                    }
+
+                    values[i] = fieldValues.toString();
                 }
 
-                console.writeTable(searchResults);
+                return values;
+            default:
+                // Plain address lists show the bytes of a pointer at each address
+                int length = labelParts[0].equals("bytes") ? Integer.parseInt(argument) : Long.BYTES;
+                byte[] bytes = memoryReader.readBytes(addresses, length);
+
+                for (int i = 0; i < addresses.length; i++) {
+                    values[i] = MMUtils.toHexString(bytes, i * length, length);
+                }
+
+                return values;
+        }
+    }
+
+    private MMScanCondition parseValueCondition(MMValueType valueType) {
+        if (kwargs.containsKey("min") && kwargs.containsKey("max")) {
+            return MMScanCondition.between(valueType.parse(kwargs.get("min")), valueType.parse(kwargs.get("max")));
+        } else if (kwargs.containsKey("value")) {
+            String value = kwargs.get("value");
+            double epsilon = kwargs.containsKey("epsilon")
+                ? Double.parseDouble(kwargs.get("epsilon"))
+                : MMUtils.getRoundingEpsilon(value);
+
+            return MMScanCondition.exact(valueType.parse(value), epsilon);
+        }
+
+        return null;
+    }
+
+    // A range needs both bounds, a lone one would otherwise fall through to another condition
+    private boolean checkRange() throws IOException {
+        if (kwargs.containsKey("min") != kwargs.containsKey("max")) {
+            console.writeLine("Provide both --min and --max");
+            return false;
+        }
+
+        return true;
+    }
+
+    @CommandAction("Start iterative scan")
+    public void scan() throws IOException {
+        if (!checkRange()) {
+            return;
+        }
+
+        if (mmEngine.isAttached()) {
+            MMValueType valueType = MMValueType.fromName(kwargs.getOrDefault("type", "int"));
+            int alignment = Integer.parseInt(kwargs.getOrDefault("align", "1"));
+
+            MMScanSession session = mmEngine.getAttachedProcess()
+                .getMemoryReader(mmEngine.getScanPool())
+                .newScanSession(valueType, alignment);
+
+            MMScanCondition condition = parseValueCondition(valueType);
+            session.firstScan(condition != null ? condition : MMScanCondition.any());
+
+            mmEngine.setScanSession(session);
+            writeCandidates(session);
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Narrow iterative scan")
+    public void next() throws IOException {
+        MMScanSession session = mmEngine.getScanSession();
+
+        if (session != null) {
+            MMValueType valueType = session.getValueType();
+            MMScanCondition condition;
+
+            if (kwargs.containsKey("value") || kwargs.containsKey("min") || kwargs.containsKey("max")) {
+                if (!checkRange()) {
+                    return;
+                }
+
+                condition = parseValueCondition(valueType);
+            } else if (kwargs.containsKey("by")) {
+                condition = MMScanCondition.changedBy(valueType.parse(kwargs.get("by")));
+            } else if (kwargs.containsKey("changed")) {
+                condition = MMScanCondition.changed();
+            } else if (kwargs.containsKey("unchanged")) {
+                condition = MMScanCondition.unchanged();
+            } else if (kwargs.containsKey("increased")) {
+                condition = MMScanCondition.increased();
+            } else if (kwargs.containsKey("decreased")) {
+                condition = MMScanCondition.decreased();
             } else {
-                console.writeLine("No pattern provided");
+                console.writeLine("No condition provided");
+                return;
             }
+
+            session.nextScan(condition);
+            writeCandidates(session);
+        } else {
+            console.writeLine("No scan in progress");
+        }
+    }
+
+    @CommandAction("Reset iterative scan")
+    public void reset() throws IOException {
+        if (mmEngine.getScanSession() != null) {
+            mmEngine.getScanSession().reset();
+            mmEngine.setScanSession(null);
+            console.writeLine("Scan reset");
+        } else {
+            console.writeLine("No scan in progress");
+        }
+    }
+
+    @CommandAction("Find pointer paths to address")
+    public void pointers() throws IOException {
+        if (mmEngine.isAttached()) {
+            if (!kwargs.containsKey("target")) {
+                console.writeLine("Specify --target");
+                return;
+            }
+
+            long target = resolveAddress(kwargs.get("target"));
+            int maxDepth = Integer.parseInt(kwargs.getOrDefault("depth", "3"));
+            long maxOffset = Long.decode(kwargs.getOrDefault("offset", "0x800"));
+            int pointerSize = Integer.parseInt(kwargs.getOrDefault("size", "8"));
+
+            MMPointerIndex pointerIndex = mmEngine.getAttachedProcess()
+                .getMemoryReader(mmEngine.getScanPool())
+                .buildPointerIndex(pointerSize);
+
+            console.writeLine("Indexed %d pointers", pointerIndex.size());
+
+            if (kwargs.containsKey("out")) {
+                Path outputPath = Paths.get(kwargs.get("out"));
+                long maxResults = Long.parseLong(kwargs.getOrDefault("limit", "1000000"));
+                long pathCount;
+
+                try (BufferedWriter output = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
+                    pathCount = pointerIndex.findPaths(target, maxDepth, maxOffset, maxResults, (moduleName, moduleOffset, offsets) -> {
+                        try {
+                            output.write(MMPointerIndex.formatPath(moduleName, moduleOffset, offsets));
+                            output.newLine();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+
+                console.writeLine("Saved %d paths to %s", pathCount, outputPath);
+            } else {
+                Table pathTable = new Table("Path");
+                long maxResults = Long.parseLong(kwargs.getOrDefault("show", "100"));
+
+                long pathCount = pointerIndex.findPaths(target, maxDepth, maxOffset, maxResults, (moduleName, moduleOffset, offsets) ->
+                    pathTable.addRow(MMPointerIndex.formatPath(moduleName, moduleOffset, offsets))
+                );
+
+                console.writeTable(pathTable);
+                console.writeLine("%d paths", pathCount);
+            }
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Freeze value at address")
+    public void freeze() throws IOException {
+        if (mmEngine.isAttached()) {
+            if (!kwargs.containsKey("address") || !kwargs.containsKey("value")) {
+                console.writeLine("Specify --address and --value");
+                return;
+            }
+
+            MMWatchScheduler scheduler = mmEngine.getAttachedProcess().getWatchScheduler();
+            MMValueType valueType = MMValueType.fromName(kwargs.getOrDefault("type", "int"));
+            long address = resolveAddress(kwargs.get("address"));
+
+            if (kwargs.containsKey("interval")) {
+                scheduler.setInterval(Long.parseLong(kwargs.get("interval")), TimeUnit.MILLISECONDS);
+            }
+
+            scheduler.freeze(address, valueType, valueType.parse(kwargs.get("value")));
+            console.writeLine("Frozen %08X at %s", address, kwargs.get("value"));
         } else {
             console.writeLine("No process attached");
         }
     }
 
+    @CommandAction("Watch value at address or list watched values")
+    public void watch() throws IOException {
+        if (mmEngine.isAttached()) {
+            MMWatchScheduler scheduler = mmEngine.getAttachedProcess().getWatchScheduler();
+
+            if (kwargs.containsKey("interval")) {
+                scheduler.setInterval(Long.parseLong(kwargs.get("interval")), TimeUnit.MILLISECONDS);
+            }
+
+            if (kwargs.containsKey("address")) {
+                long address = resolveAddress(kwargs.get("address"));
+                scheduler.watch(address, MMValueType.fromName(kwargs.getOrDefault("type", "int")), null);
+                console.writeLine("Watching %08X", address);
+                return;
+            }
+
+            Table watchTable = new Table("Address", "Type", "Value", "Frozen", "Changes");
+
+            for (MMWatchScheduler.Entry entry: scheduler.getEntries()) {
+                watchTable.addRow(
+                    String.format("%08X", entry.getAddress()),
+                    entry.getValueType().name().toLowerCase(),
+                    entry.isReadable() ? entry.getValueType().format(entry.getValueBits()) : "??",
+                    entry.isFrozen() ? entry.getValueType().format(entry.getFrozenBits()) : "",
+                    String.valueOf(entry.getChangeCount())
+                );
+            }
+
+            console.writeTable(watchTable);
+            console.writeLine(
+                "Interval: %d ms, ticks: %d, overruns: %d, tick: %d us avg / %d us max, latency: %d us avg / %d us max",
+                scheduler.getInterval(TimeUnit.MILLISECONDS), scheduler.getTickCount(), scheduler.getOverrunCount(),
+                TimeUnit.NANOSECONDS.toMicros(scheduler.getAverageTickNanos()),
+                TimeUnit.NANOSECONDS.toMicros(scheduler.getMaxTickNanos()),
+                TimeUnit.NANOSECONDS.toMicros(scheduler.getAverageLatencyNanos()),
+                TimeUnit.NANOSECONDS.toMicros(scheduler.getMaxLatencyNanos())
+            );
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Stop watching or freezing value at address")
+    public void unwatch() throws IOException {
+        if (mmEngine.isAttached()) {
+            MMWatchScheduler scheduler = mmEngine.getAttachedProcess().getWatchScheduler();
+
+            if (kwargs.containsKey("all")) {
+                scheduler.clear();
+                console.writeLine("Stopped watching all addresses");
+            } else if (kwargs.containsKey("address")) {
+                long address = resolveAddress(kwargs.get("address"));
+                scheduler.unwatch(address);
+                console.writeLine("Stopped watching %08X", address);
+            } else {
+                console.writeLine("Specify --address or --all");
+            }
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Read values at address")
+    public void read() throws IOException {
+        if (mmEngine.isAttached()) {
+            if (!kwargs.containsKey("address")) {
+                console.writeLine("Specify --address");
+                return;
+            }
+
+            MMValueType valueType = MMValueType.fromName(kwargs.getOrDefault("type", "int"));
+            long address = resolveAddress(kwargs.get("address"));
+            int count = Integer.parseInt(kwargs.getOrDefault("count", "1"));
+
+            long[] addresses = new long[count];
+            for (int i = 0; i < count; i++) {
+                addresses[i] = address + (long) i * valueType.size();
+            }
+
+            long[] values = mmEngine.getAttachedProcess().getMemoryReader().readValues(valueType, addresses);
+            Table valueTable = new Table("Address", "Value");
+
+            for (int i = 0; i < count; i++) {
+                valueTable.addRow(String.format("%08X", addresses[i]), valueType.format(values[i]));
+            }
+
+            console.writeTable(valueTable);
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Write value at address")
+    public void write() throws IOException {
+        if (mmEngine.isAttached()) {
+            if (!kwargs.containsKey("address") || !kwargs.containsKey("value")) {
+                console.writeLine("Specify --address and --value");
+                return;
+            }
+
+            MMValueType valueType = MMValueType.fromName(kwargs.getOrDefault("type", "int"));
+            long address = resolveAddress(kwargs.get("address"));
+
+            mmEngine.getAttachedProcess().getMemoryReader().writeValue(valueType, address, valueType.parse(kwargs.get("value")));
+            console.writeLine("Written %s to %08X", kwargs.get("value"), address);
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    @CommandAction("Show memory access statistics")
+    public void stats() throws IOException {
+        if (mmEngine.isAttached()) {
+            MMProcessMetrics metrics = mmEngine.getAttachedProcess().getMetrics();
+
+            if (kwargs.containsKey("reset")) {
+                metrics.reset();
+                console.writeLine("Statistics reset");
+                return;
+            }
+
+            Table counterTable = new Table("Counter", "Value");
+
+            for (Map.Entry<String, Long> counter: metrics.getCounters().entrySet()) {
+                counterTable.addRow(counter.getKey(), String.valueOf(counter.getValue()));
+            }
+
+            console.writeTable(counterTable);
+
+            Table histogramTable = new Table("Histogram", "Count", "Mean", "P50", "P99", "Max");
+
+            addHistogramRow(histogramTable, "read latency, us", metrics.getReadLatency(), TimeUnit.MICROSECONDS.toNanos(1));
+            addHistogramRow(histogramTable, "read size, bytes", metrics.getReadSize(), 1);
+            addHistogramRow(histogramTable, "region query, us", metrics.getRegionQueryLatency(), TimeUnit.MICROSECONDS.toNanos(1));
+
+            console.writeTable(histogramTable);
+
+            long searchNanos = metrics.getSearchMatchNanos() + metrics.getSearchIoNanos();
+
+            if (searchNanos > 0) {
+                console.writeLine(
+                    "Searches: %d MB in %d searches, %.1f MB/s per thread, %d%% of the time matching, %d%% reading",
+                    metrics.getSearchBytes() >> 20, metrics.getSearchCount(),
+                    (metrics.getSearchBytes() / (1024.0 * 1024.0)) / (searchNanos / 1e9),
+                    metrics.getSearchMatchNanos() * 100 / searchNanos, metrics.getSearchIoNanos() * 100 / searchNanos
+                );
+            }
+        } else {
+            console.writeLine("No process attached");
+        }
+    }
+
+    private static void addHistogramRow(Table table, String name, MMHistogram histogram, long unit) {
+        table.addRow(
+            name, String.valueOf(histogram.getCount()), String.valueOf(histogram.getMean() / unit),
+            String.valueOf(histogram.getPercentile(50) / unit), String.valueOf(histogram.getPercentile(99) / unit),
+            String.valueOf(histogram.getMax() / unit)
+        );
+    }
+
+    private long resolveAddress(String expression) {
+        return mmEngine.getAttachedProcess().getAddressResolver().resolve(expression);
+    }
+
+    private void writeCandidates(MMScanSession session) throws IOException {
+        long candidateCount = session.getCandidateCount();
+        long displayLimit = Long.parseLong(kwargs.getOrDefault("show", "100"));
+
+        console.writeLine("Scan #%d: %d candidates", session.getScanCount(), candidateCount);
+
+        if (candidateCount > 0 && candidateCount <= displayLimit) {
+            Table candidates = new Table("Address", "Value");
+
+            session.forEachCandidate(displayLimit, (address, valueBits) -> candidates.addRow(
+                    String.format("%08X", address),
+                    session.getValueType().format(valueBits)
+            ));
+
+            console.writeTable(candidates);
+        }
+    }
+
+    private class ConsoleLineWriter extends Writer {
+
+        private final StringBuilder line = new StringBuilder();
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                if (buffer[i] == '\n') {
+                    console.writeLine("%s", line);
+                    line.setLength(0);
+                } else if (buffer[i] != '\r') {
+                    line.append(buffer[i]);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
     @Override
     protected void onInterrupt() {
+        MMSearch search = activeSearch;
+        MMMultiSearch multiSearch = activeMultiSearch;
 
+        if (search != null) {
+            search.cancel();
+        }
+
+        if (multiSearch != null) {
+            multiSearch.cancel();
+        }
     }
 }
@@ -0,0 +1,168 @@
+package ru.linachan.memorymanager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+// One search over several attached processes. Every process gets its own MMSearch, all of them are started
+// at once and share the scan pool, so units of different processes are scanned in parallel. A process whose
+// search fails, for instance because it exited, is left out of the result and reported by getFailures.
+// Searches, results and failures are keyed by session ID.
+public class MMMultiSearch {
+
+    private final Map<Integer, MMSearch> searches;
+    private final CompletableFuture<Map<Integer, List<Long>>> result;
+    private final long startedAt = System.nanoTime();
+
+    private MMMultiSearch(Map<Integer, MMSearch> searches) {
+        this.searches = searches;
+
+        CompletableFuture<?>[] futures = searches.values().stream()
+            .map(MMSearch::toCompletableFuture)
+            .toArray(CompletableFuture[]::new);
+
+        result = new CompletableFuture<>();
+
+        CompletableFuture.allOf(futures).whenComplete((ignored, failure) -> {
+            Map<Integer, List<Long>> matches = new LinkedHashMap<>();
+
+            for (Map.Entry<Integer, MMSearch> search: searches.entrySet()) {
+                CompletableFuture<List<Long>> future = search.getValue().toCompletableFuture();
+
+                if (!future.isCompletedExceptionally()) {
+                    matches.put(search.getKey(), future.join());
+                }
+            }
+
+            result.complete(matches);
+        });
+    }
+
+    public static MMMultiSearch start(List<MMSession> sessions, Function<MMSession, MMSearch> searchStarter) {
+        Map<Integer, MMSearch> searches = new LinkedHashMap<>();
+
+        try {
+            for (MMSession session: sessions) {
+                searches.put(session.getSessionID(), searchStarter.apply(session));
+            }
+        } catch (RuntimeException e) {
+            searches.values().forEach(MMSearch::cancel);
+            throw e;
+        }
+
+        return new MMMultiSearch(searches);
+    }
+
+    public Map<Integer, MMSearch> getSearches() {
+        return Collections.unmodifiableMap(searches);
+    }
+
+    public MMSearch getSearch(int sessionID) {
+        return searches.get(sessionID);
+    }
+
+    // Cancels the search in every process, the result completes with a CancellationException
+    public boolean cancel() {
+        boolean cancelled = result.completeExceptionally(new CancellationException());
+
+        for (MMSearch search: searches.values()) {
+            search.cancel();
+        }
+
+        return cancelled;
+    }
+
+    // Releases the result stores of the searches that completed, see MMSearch.closeResults
+    public void closeResults() {
+        searches.values().forEach(MMSearch::closeResults);
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    public Map<Integer, List<Long>> get() throws InterruptedException, ExecutionException {
+        return result.get();
+    }
+
+    public Map<Integer, List<Long>> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return result.get(timeout, unit);
+    }
+
+    // Waits for every process, rethrowing the first failure as is
+    public Map<Integer, List<Long>> join() {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    // Processes whose search failed or was cancelled, with the reason
+    public Map<Integer, Throwable> getFailures() {
+        Map<Integer, Throwable> failures = new LinkedHashMap<>();
+
+        for (Map.Entry<Integer, MMSearch> search: searches.entrySet()) {
+            CompletableFuture<List<Long>> future = search.getValue().toCompletableFuture();
+
+            if (future.isCompletedExceptionally()) {
+                try {
+                    future.join();
+                } catch (CancellationException e) {
+                    failures.put(search.getKey(), e);
+                } catch (CompletionException e) {
+                    failures.put(search.getKey(), e.getCause());
+                }
+            }
+        }
+
+        return failures;
+    }
+
+    public long getBytesScanned() {
+        return searches.values().stream().mapToLong(MMSearch::getBytesScanned).sum();
+    }
+
+    public long getTotalBytes() {
+        return searches.values().stream().mapToLong(MMSearch::getTotalBytes).sum();
+    }
+
+    public int getRegionsScanned() {
+        return searches.values().stream().mapToInt(MMSearch::getRegionsScanned).sum();
+    }
+
+    public int getTotalRegions() {
+        return searches.values().stream().mapToInt(MMSearch::getTotalRegions).sum();
+    }
+
+    public long getMatchCount() {
+        return searches.values().stream().mapToLong(MMSearch::getMatchCount).sum();
+    }
+
+    public int getProcessesDone() {
+        return (int) searches.values().stream().filter(MMSearch::isDone).count();
+    }
+
+    public long getElapsedNanos() {
+        return searches.values().stream().mapToLong(MMSearch::getElapsedNanos).max().orElse(System.nanoTime() - startedAt);
+    }
+
+    public double getThroughput() {
+        long elapsedNanos = getElapsedNanos();
+        return elapsedNanos > 0 ? (getBytesScanned() / (1024.0 * 1024.0)) / (elapsedNanos / 1e9) : 0;
+    }
+}
@@ -0,0 +1,133 @@
+package ru.linachan.memorymanager;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Only the LRU map is guarded by the cache lock. Missing pages are read from the process outside it, so
+// point reads from the watch scheduler, the resolver and commands do not queue behind one slow native read.
+public class MMPageCache {
+
+    private static final long PAGE_MASK = -MMRegion.PAGE_SIZE;
+
+    private static final ThreadLocal<ByteBuffer> PAGE_BUFFER = ThreadLocal.withInitial(
+        () -> ByteBuffer.allocateDirect(MMRegion.PAGE_SIZE)
+    );
+
+    private final MMProcess process;
+    private final Map<Long, Page> pages;
+
+    // Bumped by every invalidation, a page read before one is not cached after it
+    private long generation = 0;
+
+    private volatile long ttlNanos;
+
+    private static final class Page {
+
+        private final byte[] data;
+        private final int length;
+        private final long loadedAt;
+
+        private Page(byte[] data, int length, long loadedAt) {
+            this.data = data;
+            this.length = length;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public MMPageCache(MMProcess process, int maxPages, long ttl, TimeUnit unit) {
+        this.process = process;
+        this.ttlNanos = unit.toNanos(ttl);
+
+        pages = new LinkedHashMap<Long, Page>(maxPages, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Page> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    // Copies up to length bytes at address into target. Returns how many bytes could be read
+    // before the first unreadable page.
+    public int read(long address, byte[] target, int offset, int length) {
+        int bytesRead = 0;
+
+        while (bytesRead < length) {
+            long currentAddress = address + bytesRead;
+            Page page = getPage(currentAddress & PAGE_MASK);
+
+            int pageOffset = (int) (currentAddress & ~PAGE_MASK);
+            int bytesToCopy = Math.min(length - bytesRead, page.length - pageOffset);
+
+            if (bytesToCopy <= 0) {
+                break;
+            }
+
+            System.arraycopy(page.data, pageOffset, target, offset + bytesRead, bytesToCopy);
+            bytesRead += bytesToCopy;
+
+            if (page.length < MMRegion.PAGE_SIZE) {
+                break;
+            }
+        }
+
+        return bytesRead;
+    }
+
+    public byte[] read(long address, int length) {
+        byte[] data = new byte[length];
+        read(address, data, 0, length);
+        return data;
+    }
+
+    private Page getPage(long pageAddress) {
+        long now = System.nanoTime();
+        long loadGeneration;
+
+        synchronized (this) {
+            Page page = pages.get(pageAddress);
+
+            if (page != null && now - page.loadedAt <= ttlNanos) {
+                return page;
+            }
+
+            loadGeneration = generation;
+        }
+
+        ByteBuffer pageBuffer = PAGE_BUFFER.get();
+        pageBuffer.clear();
+        int bytesRead = process.readMemory(pageAddress, pageBuffer);
+
+        byte[] data = new byte[bytesRead];
+        pageBuffer.flip();
+        pageBuffer.get(data);
+
+        Page page = new Page(data, bytesRead, now);
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                pages.put(pageAddress, page);
+            }
+        }
+
+        return page;
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        pages.clear();
+    }
+
+    public synchronized void invalidate(long address, int length) {
+        generation++;
+
+        for (long pageAddress = address & PAGE_MASK; pageAddress < address + length; pageAddress += MMRegion.PAGE_SIZE) {
+            pages.remove(pageAddress);
+        }
+    }
+
+    public void setTTL(long ttl, TimeUnit unit) {
+        ttlNanos = unit.toNanos(ttl);
+    }
+}
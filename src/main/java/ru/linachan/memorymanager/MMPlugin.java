@@ -1,93 +1,162 @@
 package ru.linachan.memorymanager;
 
-import com.sun.jna.LastErrorException;
-import com.sun.jna.Native;
-import com.sun.jna.platform.win32.*;
-import ru.linachan.yggdrasil.common.SystemInfo;
+import ru.linachan.memorymanager.backend.MMBackend;
+import ru.linachan.memorymanager.backend.MMDumpBackend;
+import ru.linachan.memorymanager.backend.MMSnapshotBackend;
 import ru.linachan.yggdrasil.plugin.YggdrasilPlugin;
-import ru.linachan.yggdrasil.plugin.helpers.OSSupport;
 import ru.linachan.yggdrasil.plugin.helpers.Plugin;
 
-import java.util.ArrayList;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-@OSSupport(SystemInfo.OSType.WINDOWS)
 @Plugin(name = "MemoryManager", description = "Provides ability to manage process memory")
 public class MMPlugin implements YggdrasilPlugin {
 
-    static final Kernel32 kernel32 = Kernel32.INSTANCE;
+    private MMBackend backend;
+    private MMProcessTable processTable;
 
-    private MMProcess attachedProcess = null;
+    private static final int SESSION_PERMISSIONS =
+        MMProcess.PROCESS_VM_READ | MMProcess.PROCESS_VM_WRITE | MMProcess.PROCESS_VM_OPERATIONS | MMProcess.PROCESS_QUERY_INFO;
+
+    private final MMSessionRegistry sessions = new MMSessionRegistry();
+
+    // Session the single-process commands work on
+    private volatile MMSession activeSession = null;
+
+    private ForkJoinPool scanPool = ForkJoinPool.commonPool();
 
     @Override
     public void onInit() {
-
+        backend = MMBackend.forCurrentPlatform();
+        processTable = new MMProcessTable(backend);
     }
 
     @Override
     public void onShutdown() {
-
+        detachAll();
+        setScanPool(ForkJoinPool.commonPool());
     }
 
     public List<MMProcess> getProcessesByName(String processName) {
-        List<MMProcess> processes = new ArrayList<>();
-
-        WinNT.HANDLE snapshot = null;
-
-        try {
-            snapshot = kernel32.CreateToolhelp32Snapshot(Tlhelp32.TH32CS_SNAPPROCESS, new WinDef.DWORD(0));
-            Tlhelp32.PROCESSENTRY32 entry = new Tlhelp32.PROCESSENTRY32();
-            kernel32.Process32First(snapshot, entry);
-
-            do {
-                String processEXEName = Native.toString(entry.szExeFile);
-                if (processEXEName.equals(processName)) {
-                    processes.add(new MMProcess(Native.toString(entry.szExeFile), entry.th32ProcessID.intValue()));
-                }
-            } while(kernel32.Process32Next(snapshot, entry));
-        } finally {
-            kernel32.CloseHandle(snapshot);
-        }
+        return processTable.getProcessesByName(processName);
+    }
 
-        return processes;
+    public List<MMProcess> getAllProcesses() {
+        return processTable.getAllProcesses();
     }
 
-    public List<MMProcess> getAllProcesses() throws LastErrorException {
-        List<MMProcess> processes = new ArrayList<>();
-        WinNT.HANDLE snapshot = null;
+    public MMProcess getProcess(int processID) {
+        return processTable.getProcess(processID);
+    }
 
-        try {
-            snapshot = kernel32.CreateToolhelp32Snapshot(Tlhelp32.TH32CS_SNAPPROCESS, new WinDef.DWORD(0));
-            Tlhelp32.PROCESSENTRY32 entry = new Tlhelp32.PROCESSENTRY32();
-            kernel32.Process32First(snapshot, entry);
+    public MMProcessTable getProcessTable() {
+        return processTable;
+    }
 
-            do {
-                processes.add(new MMProcess(Native.toString(entry.szExeFile), entry.th32ProcessID.intValue()));
-            } while(kernel32.Process32Next(snapshot, entry));
-        } finally {
-            kernel32.CloseHandle(snapshot);
-        }
+    // Crash dumps load the same way as snapshots, the formats are told apart by their magic
+    public MMProcess loadSnapshot(Path snapshotPath) {
+        MMBackend snapshotBackend = MMDumpBackend.isDump(snapshotPath)
+            ? new MMDumpBackend(snapshotPath) : new MMSnapshotBackend(snapshotPath);
 
-        return processes;
+        return snapshotBackend.listProcesses().entrySet().stream()
+            .map(entry -> new MMProcess(snapshotBackend, entry.getValue(), entry.getKey()))
+            .findFirst().orElseThrow(IllegalStateException::new);
     }
 
-    public void attachProcess(MMProcess process) {
-        process.openProcess(
-            MMProcess.PROCESS_VM_READ | MMProcess.PROCESS_VM_WRITE | MMProcess.PROCESS_VM_OPERATIONS | MMProcess.PROCESS_QUERY_INFO
-        );
+    // Opens a session for the process and makes it the active one, other sessions stay open
+    public MMSession attachProcess(MMProcess process) {
+        MMSession session = sessions.open(process, SESSION_PERMISSIONS);
+        activeSession = session;
+        return session;
+    }
 
-        attachedProcess = process;
+    // Same for a loaded snapshot or dump, which always gets a session of its own
+    public MMSession attachSnapshot(MMProcess snapshot) {
+        MMSession session = sessions.openOffline(snapshot, SESSION_PERMISSIONS);
+        activeSession = session;
+        return session;
     }
 
     public void detachProcess() {
-        attachedProcess = null;
+        MMSession session = activeSession;
+
+        if (session != null) {
+            detachProcess(session.getSessionID());
+        }
+    }
+
+    public boolean detachProcess(int sessionID) {
+        MMSession session = activeSession;
+
+        if (session != null && session.getSessionID() == sessionID) {
+            activeSession = null;
+        }
+
+        return sessions.close(sessionID);
+    }
+
+    public void detachAll() {
+        activeSession = null;
+        sessions.close();
+    }
+
+    public boolean selectSession(int sessionID) {
+        MMSession session = sessions.get(sessionID);
+
+        if (session != null) {
+            activeSession = session;
+        }
+
+        return session != null;
+    }
+
+    public MMSessionRegistry getSessions() {
+        return sessions;
+    }
+
+    public MMSession getActiveSession() {
+        return activeSession;
     }
 
     public MMProcess getAttachedProcess() {
-        return attachedProcess;
+        MMSession session = activeSession;
+        return session != null ? session.getProcess() : null;
+    }
+
+    public MMScanSession getScanSession() {
+        MMSession session = activeSession;
+        return session != null ? session.getScanSession() : null;
+    }
+
+    public void setScanSession(MMScanSession scanSession) {
+        MMSession session = activeSession;
+
+        if (session != null) {
+            session.setScanSession(scanSession);
+        }
+    }
+
+    public synchronized ForkJoinPool getScanPool() {
+        return scanPool;
+    }
+
+    public synchronized void setScanParallelism(int parallelism) {
+        if (parallelism != scanPool.getParallelism()) {
+            setScanPool(new ForkJoinPool(parallelism));
+        }
+    }
+
+    private synchronized void setScanPool(ForkJoinPool pool) {
+        if (scanPool != ForkJoinPool.commonPool()) {
+            scanPool.shutdown();
+        }
+
+        scanPool = pool;
     }
 
     public boolean isAttached() {
-        return attachedProcess != null;
+        MMSession session = activeSession;
+        return session != null && session.isOpen();
     }
 }
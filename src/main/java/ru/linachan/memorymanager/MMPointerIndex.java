@@ -0,0 +1,179 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.utils.MMLongArray;
+import ru.linachan.memorymanager.utils.MMUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// Every pointer-sized value in the scanned regions that points into a mapped region, sorted by value
+public class MMPointerIndex {
+
+    @FunctionalInterface
+    public interface PathVisitor {
+
+        // offsets[0] is added to the pointer read at moduleBase + moduleOffset, the last offset lands on the target
+        void visit(String moduleName, long moduleOffset, long[] offsets);
+    }
+
+    private static final long INDEX_UNIT_SIZE = 4L * MMProcess.CHUNK_SIZE;
+
+    private final int pointerSize;
+    private final long[] pointerValues;
+    private final long[] pointerAddresses;
+
+    private final MMRegionMap regionMap;
+    private final String[] moduleNames;
+    private final long[] moduleBases;
+
+    private MMPointerIndex(int pointerSize, long[] pointerValues, long[] pointerAddresses, MMRegionMap regionMap) {
+        this.pointerSize = pointerSize;
+        this.pointerValues = pointerValues;
+        this.pointerAddresses = pointerAddresses;
+        this.regionMap = regionMap;
+
+        // Regions backed by a file are static bases, addressed relative to the lowest mapping of that file
+        Map<String, Long> mappingBases = new HashMap<>();
+        moduleNames = new String[regionMap.size()];
+        moduleBases = new long[regionMap.size()];
+
+        for (int i = 0; i < regionMap.size(); i++) {
+            String mappingName = regionMap.getMappingName(i);
+            moduleNames[i] = MMRegion.getModuleName(mappingName);
+
+            if (moduleNames[i] != null) {
+                mappingBases.putIfAbsent(mappingName, regionMap.getBaseAddress(i));
+                moduleBases[i] = mappingBases.get(mappingName);
+            }
+        }
+    }
+
+    public static MMPointerIndex build(MMProcess process, int pointerSize, ForkJoinPool pool) {
+        if (pointerSize != 4 && pointerSize != 8) {
+            throw new IllegalArgumentException(String.format("Invalid pointer size: %d", pointerSize));
+        }
+
+        MMRegionMap regionMap = process.getRegionMap();
+
+        if (regionMap.size() == 0) {
+            return new MMPointerIndex(pointerSize, new long[0], new long[0], regionMap);
+        }
+
+        long minTarget = regionMap.getBaseAddress(0);
+        long maxTarget = regionMap.getBaseAddress(regionMap.size() - 1) + regionMap.getRegionSize(regionMap.size() - 1);
+
+        MMLongArray pointerPairs = pool.invoke(MMScanTask.forRegions(
+            process.queryPages(), INDEX_UNIT_SIZE, (startAddress, endAddress, regionEnd, results) -> process.streamMemory(
+                startAddress, endAddress, 0, (chunkAddress, chunk, startLimit) -> {
+                    int firstOffset = (int) (-chunkAddress & (pointerSize - 1));
+
+                    for (int offset = firstOffset; offset + pointerSize <= chunk.limit(); offset += pointerSize) {
+                        long value = pointerSize == 8 ? chunk.getLong(offset) : chunk.getInt(offset) & 0xFFFFFFFFL;
+
+                        if (value >= minTarget && value < maxTarget && regionMap.indexOf(value) >= 0) {
+                            results.add(value);
+                            results.add(chunkAddress + offset);
+                        }
+                    }
+                }
+            )
+        ));
+
+        int pointerCount = pointerPairs.size() / 2;
+        long[] values = new long[pointerCount];
+
+        for (int i = 0; i < pointerCount; i++) {
+            values[i] = pointerPairs.get(2 * i);
+        }
+
+        int[] order = MMUtils.sortIndices(values);
+
+        long[] sortedValues = new long[pointerCount];
+        long[] sortedAddresses = new long[pointerCount];
+
+        for (int i = 0; i < pointerCount; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedAddresses[i] = pointerPairs.get(2 * order[i] + 1);
+        }
+
+        return new MMPointerIndex(pointerSize, sortedValues, sortedAddresses, regionMap);
+    }
+
+    public int size() {
+        return pointerValues.length;
+    }
+
+    public int getPointerSize() {
+        return pointerSize;
+    }
+
+    // Walks backwards from target through pointers whose value lies at most maxOffset below the address
+    // being resolved, reporting every path of up to maxDepth levels that starts in a module.
+    // Returns the number of paths reported.
+    public long findPaths(long target, int maxDepth, long maxOffset, long maxResults, PathVisitor visitor) {
+        long[] offsets = new long[maxDepth];
+        return findPaths(target, 0, maxDepth, maxOffset, maxResults, 0, offsets, visitor);
+    }
+
+    private long findPaths(
+        long address, int depth, int maxDepth, long maxOffset, long maxResults, long found, long[] offsets, PathVisitor visitor
+    ) {
+        for (int i = lowerBound(address - maxOffset); i < pointerValues.length && pointerValues[i] <= address; i++) {
+            if (found >= maxResults) {
+                break;
+            }
+
+            long source = pointerAddresses[i];
+            offsets[depth] = address - pointerValues[i];
+
+            int region = regionMap.indexOf(source);
+
+            if (region >= 0 && moduleNames[region] != null) {
+                long[] path = new long[depth + 1];
+
+                for (int level = 0; level <= depth; level++) {
+                    path[level] = offsets[depth - level];
+                }
+
+                visitor.visit(moduleNames[region], source - moduleBases[region], path);
+                found++;
+            }
+
+            if (depth + 1 < maxDepth) {
+                found = findPaths(source, depth + 1, maxDepth, maxOffset, maxResults, found, offsets, visitor);
+            }
+        }
+
+        return found;
+    }
+
+    private int lowerBound(long value) {
+        int low = 0;
+        int high = pointerValues.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (pointerValues[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    public static String formatPath(String moduleName, long moduleOffset, long[] offsets) {
+        StringBuilder path = new StringBuilder(String.format(
+            "%s+0x%X", MMAddressExpression.formatModuleName(moduleName), moduleOffset
+        ));
+
+        for (long offset: offsets) {
+            path.insert(0, '[').append(String.format("]+0x%X", offset));
+        }
+
+        return path.toString();
+    }
+}
@@ -1,20 +1,26 @@
 package ru.linachan.memorymanager;
 
 import com.sun.jna.Memory;
-import com.sun.jna.Pointer;
-import com.sun.jna.platform.win32.*;
-import com.sun.jna.ptr.IntByReference;
+import ru.linachan.memorymanager.backend.MMBackend;
+import ru.linachan.memorymanager.backend.MMProcessHandle;
+import ru.linachan.memorymanager.backend.MMSnapshotBackend;
+import ru.linachan.memorymanager.utils.MMBufferPool;
+import ru.linachan.memorymanager.utils.MMHexDumper;
 import ru.linachan.memorymanager.utils.MMUtils;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Objects;
-
-import static com.sun.jna.platform.win32.WinNT.MEM_COMMIT;
-import static com.sun.jna.platform.win32.WinNT.PAGE_READWRITE;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class MMProcess {
 
+    private final MMBackend backend;
     private final String processName;
     private final int processID;
 
@@ -23,98 +29,560 @@ public class MMProcess {
     public static final int PROCESS_VM_OPERATIONS = 0x0008;
     public static final int PROCESS_QUERY_INFO = 0x0400;
 
-    private WinNT.HANDLE processHandle;
+    public static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    public static final int BATCH_GAP = MMRegion.PAGE_SIZE;
+
+    // Native calls share the read lock, so closing the handle waits for the calls already in flight
+    private volatile MMProcessHandle processHandle;
+    private final ReadWriteLock handleLock = new ReentrantReadWriteLock();
+
+    private volatile MMRegionMap regionMap;
+    private volatile long regionMapTTL = TimeUnit.SECONDS.toNanos(10);
 
-    static final Kernel32 kernel32 = Kernel32.INSTANCE;
+    private volatile int requiredProtection = MMRegion.READ | MMRegion.WRITE;
+    private volatile int excludedProtection = MMRegion.EXECUTE | MMRegion.WRITECOPY;
 
-    public MMProcess(String processName, int processID) {
+    // Created when first needed, so processes that are only listed, like the entries of the process table,
+    // stay a PID and a name. metrics is assigned last and marks the rest as ready.
+    private MMBufferPool bufferPool;
+    private MMPageCache pageCache;
+    private MMWatchScheduler watchScheduler;
+    private MMAddressResolver addressResolver;
+    private volatile MMProcessMetrics metrics;
+
+    public MMProcess(MMBackend backend, String processName, int processID) {
+        this.backend = backend;
         this.processName = processName;
         this.processID = processID;
     }
 
+    private void ensureState() {
+        if (metrics == null) {
+            synchronized (this) {
+                if (metrics == null) {
+                    bufferPool = new MMBufferPool(CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+                    pageCache = new MMPageCache(this, 1024, 500, TimeUnit.MILLISECONDS);
+                    watchScheduler = new MMWatchScheduler(this);
+                    addressResolver = new MMAddressResolver(this);
+                    metrics = new MMProcessMetrics();
+                }
+            }
+        }
+    }
+
+    // The new handle is opened first, if that fails the process keeps the handle it had
     public void openProcess(int permissions) {
-        processHandle = kernel32.OpenProcess(permissions, true, processID);
+        MMProcessHandle handle = backend.openProcess(processID, permissions);
+        handleLock.writeLock().lock();
+
+        try {
+            if (processHandle != null) {
+                processHandle.close();
+            }
+
+            processHandle = handle;
+            regionMap = null;
+            getPageCache().invalidate();
+            getAddressResolver().invalidate();
+        } finally {
+            handleLock.writeLock().unlock();
+        }
+    }
+
+    // Stops watching and freezing values and releases the handle, reads fail until the process is opened again
+    public void close() {
+        if (metrics == null) {
+            // Never opened, there is nothing to stop or release
+            return;
+        }
+
+        getWatchScheduler().clear();
+        handleLock.writeLock().lock();
+
+        try {
+            if (processHandle != null) {
+                processHandle.close();
+                processHandle = null;
+            }
+
+            regionMap = null;
+            getPageCache().invalidate();
+            getAddressResolver().invalidate();
+        } finally {
+            handleLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isOpen() {
+        return processHandle != null;
+    }
+
+    private MMProcessHandle lockHandle() {
+        handleLock.readLock().lock();
+        MMProcessHandle handle = processHandle;
+
+        if (handle == null) {
+            handleLock.readLock().unlock();
+            throw new IllegalStateException(String.format("Process %s[%d] is not open", processName, processID));
+        }
+
+        return handle;
     }
 
     public String dumpMemory() {
         StringBuilder memoryDump = new StringBuilder();
 
-        for (WinNT.MEMORY_BASIC_INFORMATION memoryInfo: queryPages()) {
-            Memory memoryPage = readMemory(memoryInfo.baseAddress, memoryInfo.regionSize);
-
-            memoryDump.append(MMUtils.dumpMemory(
-                memoryPage, memoryInfo.regionSize.longValue(), Pointer.nativeValue(memoryInfo.baseAddress)
-            ));
+        try {
+            dumpMemory(new MMHexDumper(memoryDump, MMHexDumper.DEFAULT_BYTES_PER_LINE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
         return memoryDump.toString();
     }
 
     public String dumpMemory(long address, int bytesToRead) {
-        Memory memoryPage = readMemory(address, bytesToRead);
+        StringBuilder memoryDump = new StringBuilder();
+
+        try {
+            dumpMemory(address, bytesToRead, new MMHexDumper(memoryDump, MMHexDumper.DEFAULT_BYTES_PER_LINE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return memoryDump.toString();
+    }
 
-        return MMUtils.dumpMemory(memoryPage, bytesToRead, address);
+    public void dumpMemory(MMHexDumper dumper) throws IOException {
+        for (MMRegion memoryRegion: queryPages()) {
+            dumpMemory(memoryRegion.getBaseAddress(), memoryRegion.getRegionSize(), dumper);
+        }
     }
 
-    public List<WinNT.MEMORY_BASIC_INFORMATION> queryPages() {
-        List<WinNT.MEMORY_BASIC_INFORMATION> memoryPages = new ArrayList<>();
+    public void dumpMemory(long address, long bytesToRead, MMHexDumper dumper) throws IOException {
+        try {
+            streamMemory(address, address + bytesToRead, 0, (chunkAddress, chunk, startLimit) -> {
+                try {
+                    dumper.write(chunkAddress, chunk);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
-        WinNT.MEMORY_BASIC_INFORMATION memoryInfo;
-        WinBase.SYSTEM_INFO info =  new WinBase.SYSTEM_INFO();
-        kernel32.GetSystemInfo(info);
+        dumper.flush();
+    }
 
-        Pointer processMinAddressPtr = info.lpMinimumApplicationAddress;
-        Pointer processMaxAddressPtr = info.lpMaximumApplicationAddress;
+    public long saveSnapshot(Path snapshotPath) throws IOException {
+        return MMSnapshotBackend.capture(this, snapshotPath);
+    }
 
-        long processMinAddress = Pointer.nativeValue(processMinAddressPtr);
-        long processMaxAddress = Pointer.nativeValue(processMaxAddressPtr);
+    public List<MMRegion> queryPages() {
+        MMRegionMap currentMap = getRegionMap();
+        List<MMRegion> regions = currentMap.getRegions(requiredProtection, excludedProtection);
 
-        while (processMinAddress < processMaxAddress) {
-            memoryInfo = new WinNT.MEMORY_BASIC_INFORMATION();
-            kernel32.VirtualQueryEx(processHandle, processMinAddressPtr, memoryInfo, new BaseTSD.SIZE_T(memoryInfo.size()));
+        getMetrics().recordRegionsSkipped(currentMap.size() - regions.size());
+        return regions;
+    }
 
-            if (Objects.equals(memoryInfo.protect, new WinDef.DWORD(PAGE_READWRITE))&&Objects.equals(memoryInfo.state, new WinDef.DWORD(MEM_COMMIT))) {
-                memoryPages.add(memoryInfo);
-            }
+    public MMRegionMap getRegionMap() {
+        MMRegionMap currentMap = regionMap;
 
-            processMinAddress += memoryInfo.regionSize.longValue();
-            processMinAddressPtr = new Pointer(processMinAddress);
+        if (currentMap == null || currentMap.getAgeNanos() > regionMapTTL) {
+            currentMap = refreshRegions();
         }
 
-        return memoryPages;
+        return currentMap;
+    }
+
+    public MMRegionMap refreshRegions() {
+        long startedAt = System.nanoTime();
+        List<MMRegion> regions;
+        MMProcessHandle handle = lockHandle();
+
+        try {
+            regions = handle.queryRegions();
+        } finally {
+            handleLock.readLock().unlock();
+        }
+
+        getMetrics().recordRegionQuery(regions.size(), System.nanoTime() - startedAt);
+
+        MMRegionMap currentMap = new MMRegionMap(regions);
+        regionMap = currentMap;
+        return currentMap;
+    }
+
+    public void setRegionMapTTL(long ttl, TimeUnit unit) {
+        regionMapTTL = unit.toNanos(ttl);
+    }
+
+    public void setProtectionFilter(int requiredProtection, int excludedProtection) {
+        this.requiredProtection = requiredProtection;
+        this.excludedProtection = excludedProtection;
+    }
+
+    public int getRequiredProtection() {
+        return requiredProtection;
+    }
+
+    public int getExcludedProtection() {
+        return excludedProtection;
     }
 
     public Memory readMemory(long address, int bytesToRead) {
-        IntByReference read = new IntByReference(0);
         Memory output = new Memory(bytesToRead);
 
-        kernel32.ReadProcessMemory(processHandle, new Pointer(address), output, bytesToRead, read);
+        nativeRead(address, output.getByteBuffer(0, bytesToRead));
         return output;
     }
 
-    public Memory readMemory(Pointer address, BaseTSD.SIZE_T bytesToRead) {
-        IntByReference read = new IntByReference(0);
-        Memory output = new Memory(bytesToRead.intValue());
+    public int readMemory(long address, ByteBuffer buffer) {
+        return nativeRead(address, buffer);
+    }
 
-        kernel32.ReadProcessMemory(processHandle, address, output, bytesToRead.intValue(), read);
-        return output;
+    private int nativeRead(long address, ByteBuffer buffer) {
+        int bytesRequested = buffer.remaining();
+        long startedAt = System.nanoTime();
+
+        int bytesRead;
+        MMProcessHandle handle = lockHandle();
+
+        try {
+            bytesRead = handle.read(address, buffer);
+        } finally {
+            handleLock.readLock().unlock();
+        }
+
+        getMetrics().recordRead(bytesRequested, bytesRead, System.nanoTime() - startedAt);
+        return bytesRead;
+    }
+
+    private ByteBuffer nativeView(long address, int length) {
+        long startedAt = System.nanoTime();
+
+        ByteBuffer view;
+        MMProcessHandle handle = lockHandle();
+
+        try {
+            view = handle.view(address, length);
+        } finally {
+            handleLock.readLock().unlock();
+        }
+
+        if (view != null) {
+            getMetrics().recordRead(length, length, System.nanoTime() - startedAt);
+        }
+
+        return view;
+    }
+
+    private int nativeWrite(long address, ByteBuffer buffer) {
+        int bytesRequested = buffer.remaining();
+        int bytesWritten;
+        MMProcessHandle handle = lockHandle();
+
+        try {
+            bytesWritten = handle.write(address, buffer);
+        } finally {
+            handleLock.readLock().unlock();
+        }
+
+        getMetrics().recordWrite(bytesRequested, bytesWritten);
+        return bytesWritten;
+    }
+
+    // Scatter read: request i lands in output at the sum of the preceding lengths. Requests are sorted
+    // by address and any that lie within BATCH_GAP bytes of each other are served by one native read.
+    // Returns the number of bytes actually read for every request, the same as reading it on its own.
+    public int[] readMemory(long[] addresses, int[] lengths, ByteBuffer output) {
+        int[] outputOffsets = getBatchOffsets(lengths);
+        int[] bytesRead = new int[addresses.length];
+        int[] order = MMUtils.sortIndices(addresses);
+
+        ByteBuffer span = getBufferPool().acquire();
+        ByteBuffer source = span.duplicate();
+        ByteBuffer target = output.duplicate();
+
+        try {
+            int index = 0;
+            int soloIndex = -1;
+
+            while (index < order.length) {
+                long spanStart = addresses[order[index]];
+                long spanEnd = spanStart + lengths[order[index]];
+                int spanIndex = index + 1;
+
+                while (spanIndex < order.length && index != soloIndex) {
+                    int request = order[spanIndex];
+                    long requestEnd = Math.max(spanEnd, addresses[request] + lengths[request]);
+
+                    if (addresses[request] - spanEnd > BATCH_GAP || requestEnd - spanStart > span.capacity()) {
+                        break;
+                    }
+
+                    spanEnd = requestEnd;
+                    spanIndex++;
+                }
+
+                if (spanEnd - spanStart > span.capacity()) {
+                    // A single request larger than a chunk is read piece by piece
+                    int request = order[index];
+
+                    while (bytesRead[request] < lengths[request]) {
+                        int pieceSize = Math.min(span.capacity(), lengths[request] - bytesRead[request]);
+
+                        span.clear();
+                        span.limit(pieceSize);
+
+                        int pieceRead = nativeRead(addresses[request] + bytesRead[request], span);
+
+                        source.limit(pieceRead);
+                        source.position(0);
+                        target.limit(target.capacity());
+                        target.position(outputOffsets[request] + bytesRead[request]);
+                        target.put(source);
+
+                        bytesRead[request] += pieceRead;
+
+                        if (pieceRead < pieceSize) {
+                            break;
+                        }
+                    }
+                } else {
+                    span.clear();
+                    span.limit((int) (spanEnd - spanStart));
+
+                    int spanRead = nativeRead(spanStart, span);
+                    int unserved = spanIndex;
+
+                    for (int i = index; i < spanIndex; i++) {
+                        int request = order[i];
+                        int spanOffset = (int) (addresses[request] - spanStart);
+                        int requestRead = Math.max(0, Math.min(lengths[request], spanRead - spanOffset));
+
+                        source.limit(spanOffset + requestRead);
+                        source.position(spanOffset);
+                        target.limit(target.capacity());
+                        target.position(outputOffsets[request]);
+                        target.put(source);
+
+                        bytesRead[request] = requestRead;
+
+                        if (requestRead < lengths[request] && unserved == spanIndex) {
+                            unserved = i;
+                        }
+                    }
+
+                    // A request must not fail because a neighbour sharing its span is unreadable, so reading
+                    // starts over at the first request the short read did not serve. If that is the first
+                    // request of the span, it is read on its own, as a partial copy may report nothing.
+                    if (unserved < spanIndex && spanIndex - index > 1) {
+                        soloIndex = unserved;
+                        spanIndex = unserved;
+                    }
+                }
+
+                index = spanIndex;
+            }
+        } finally {
+            getBufferPool().release(span);
+        }
+
+        return bytesRead;
+    }
+
+    // Gather write: request i takes its bytes from input at the sum of the preceding lengths.
+    // Only requests that touch each other are merged, gaps are never rewritten.
+    public int[] writeMemory(long[] addresses, int[] lengths, ByteBuffer input) {
+        int[] inputOffsets = getBatchOffsets(lengths);
+        int[] bytesWritten = new int[addresses.length];
+        int[] order = MMUtils.sortIndices(addresses);
+
+        ByteBuffer span = getBufferPool().acquire();
+        ByteBuffer source = input.duplicate();
+
+        try {
+            int index = 0;
+
+            while (index < order.length) {
+                long spanStart = addresses[order[index]];
+                long spanEnd = spanStart;
+                int spanIndex = index;
+
+                span.clear();
+
+                while (spanIndex < order.length) {
+                    int request = order[spanIndex];
+
+                    if (spanIndex > index && (addresses[request] != spanEnd || lengths[request] > span.remaining())) {
+                        break;
+                    }
+
+                    if (lengths[request] > span.remaining()) {
+                        // A single request larger than a chunk is written on its own
+                        source.limit(inputOffsets[request] + lengths[request]);
+                        source.position(inputOffsets[request]);
+
+                        ByteBuffer requestBuffer = ByteBuffer.allocateDirect(lengths[request]);
+                        requestBuffer.put(source);
+                        requestBuffer.flip();
+
+                        getPageCache().invalidate(addresses[request], lengths[request]);
+                        getAddressResolver().invalidate(addresses[request], lengths[request]);
+                        bytesWritten[request] = nativeWrite(addresses[request], requestBuffer);
+
+                        spanIndex++;
+                        break;
+                    }
+
+                    source.limit(inputOffsets[request] + lengths[request]);
+                    source.position(inputOffsets[request]);
+                    span.put(source);
+
+                    spanEnd += lengths[request];
+                    spanIndex++;
+                }
+
+                if (spanEnd > spanStart) {
+                    span.flip();
+
+                    getPageCache().invalidate(spanStart, (int) (spanEnd - spanStart));
+                    getAddressResolver().invalidate(spanStart, spanEnd - spanStart);
+                    int spanWritten = nativeWrite(spanStart, span);
+
+                    for (int i = index; i < spanIndex; i++) {
+                        int request = order[i];
+                        int spanOffset = (int) (addresses[request] - spanStart);
+
+                        bytesWritten[request] = Math.max(0, Math.min(lengths[request], spanWritten - spanOffset));
+                    }
+                }
+
+                index = spanIndex;
+            }
+        } finally {
+            getBufferPool().release(span);
+        }
+
+        return bytesWritten;
+    }
+
+    private static int[] getBatchOffsets(int[] lengths) {
+        int[] offsets = new int[lengths.length];
+
+        for (int i = 1; i < lengths.length; i++) {
+            offsets[i] = offsets[i - 1] + lengths[i - 1];
+        }
+
+        return offsets;
+    }
+
+    public void streamMemory(long startAddress, long endAddress, int overlap, MMChunkVisitor visitor) {
+        if (overlap >= getBufferPool().getBufferSize()) {
+            throw new IllegalArgumentException(String.format("Overlap of %d bytes does not fit into a chunk", overlap));
+        }
+
+        ByteBuffer chunk = getBufferPool().acquire();
+
+        try {
+            long chunkAddress = startAddress;
+
+            while (chunkAddress < endAddress) {
+                int chunkSize = (int) Math.min(chunk.capacity(), endAddress - chunkAddress);
+                ByteBuffer view = nativeView(chunkAddress, chunkSize);
+
+                if (view != null) {
+                    // Mapped sources hand out their memory as is, saving the copy into the chunk
+                    boolean lastChunk = chunkAddress + chunkSize >= endAddress;
+                    int startLimit = lastChunk ? chunkSize : chunkSize - overlap;
+
+                    visitor.visit(chunkAddress, view, startLimit);
+                    chunkAddress += startLimit;
+                    continue;
+                }
+
+                chunk.clear();
+                chunk.limit(chunkSize);
+
+                int bytesRead = nativeRead(chunkAddress, chunk);
+                chunk.flip();
+
+                if (bytesRead == chunkSize) {
+                    boolean lastChunk = chunkAddress + chunkSize >= endAddress;
+                    int startLimit = lastChunk ? chunkSize : chunkSize - overlap;
+
+                    visitor.visit(chunkAddress, chunk, startLimit);
+                    chunkAddress += startLimit;
+                } else {
+                    // Nothing can match across an unreadable page, so skip past it
+                    if (bytesRead > 0) {
+                        visitor.visit(chunkAddress, chunk, bytesRead);
+                    }
+                    long nextAddress = ((chunkAddress + bytesRead) & -MMRegion.PAGE_SIZE) + MMRegion.PAGE_SIZE;
+
+                    getMetrics().recordBytesSkipped(Math.min(nextAddress, endAddress) - (chunkAddress + bytesRead));
+                    chunkAddress = nextAddress;
+                }
+            }
+        } finally {
+            getBufferPool().release(chunk);
+        }
     }
 
     public int writeMemory(long address, Memory bytesToWrite) {
-        IntByReference write = new IntByReference(0);
-        kernel32.WriteProcessMemory(processHandle, new Pointer(address), bytesToWrite, (int) bytesToWrite.size(), write);
-        return write.getValue();
+        getPageCache().invalidate(address, (int) bytesToWrite.size());
+        getAddressResolver().invalidate(address, bytesToWrite.size());
+        return nativeWrite(address, bytesToWrite.getByteBuffer(0, bytesToWrite.size()));
     }
 
     public void kill() {
-        kernel32.TerminateProcess(processHandle, 0);
-        kernel32.CloseHandle(processHandle);
+        MMProcessHandle handle = lockHandle();
+
+        try {
+            handle.terminate();
+        } finally {
+            handleLock.readLock().unlock();
+        }
+
+        close();
+    }
+
+    public MMPageCache getPageCache() {
+        ensureState();
+        return pageCache;
+    }
+
+    public MMAddressResolver getAddressResolver() {
+        ensureState();
+        return addressResolver;
+    }
+
+    public MMWatchScheduler getWatchScheduler() {
+        ensureState();
+        return watchScheduler;
+    }
+
+    public MMProcessMetrics getMetrics() {
+        ensureState();
+        return metrics;
+    }
+
+    public MMBufferPool getBufferPool() {
+        ensureState();
+        return bufferPool;
     }
 
     public MMReader getMemoryReader() {
         return new MMReader(this);
     }
 
+    public MMReader getMemoryReader(ForkJoinPool scanPool) {
+        return new MMReader(this, scanPool);
+    }
+
     public String getProcessName() {
         return processName;
     }
@@ -0,0 +1,208 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.utils.MMHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters of the native I/O done for a process. Recording only touches LongAdders, so scanning threads never contend.
+public class MMProcessMetrics {
+
+    private final LongAdder readCount = new LongAdder();
+    private final LongAdder bytesRequested = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder failedReads = new LongAdder();
+    private final LongAdder partialReads = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+
+    private final LongAdder writeCount = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+
+    private final LongAdder regionQueries = new LongAdder();
+    private final LongAdder regionsQueried = new LongAdder();
+    private final LongAdder regionsSkipped = new LongAdder();
+    private final LongAdder bytesSkipped = new LongAdder();
+
+    private final LongAdder searchCount = new LongAdder();
+    private final LongAdder searchBytes = new LongAdder();
+    private final LongAdder searchMatchNanos = new LongAdder();
+    private final LongAdder searchIoNanos = new LongAdder();
+
+    private final MMHistogram readLatency = new MMHistogram();
+    private final MMHistogram readSize = new MMHistogram();
+    private final MMHistogram regionQueryLatency = new MMHistogram();
+
+    void recordRead(int requested, int read, long nanos) {
+        readCount.increment();
+        bytesRequested.add(requested);
+        bytesRead.add(read);
+        readNanos.add(nanos);
+
+        if (read <= 0 && requested > 0) {
+            failedReads.increment();
+        } else if (read < requested) {
+            partialReads.increment();
+        }
+
+        readLatency.record(nanos);
+        readSize.record(requested);
+    }
+
+    void recordWrite(int requested, int written) {
+        writeCount.increment();
+        bytesWritten.add(written);
+
+        if (written < requested) {
+            failedWrites.increment();
+        }
+    }
+
+    void recordRegionQuery(int regionCount, long nanos) {
+        regionQueries.increment();
+        regionsQueried.add(regionCount);
+        regionQueryLatency.record(nanos);
+    }
+
+    void recordRegionsSkipped(int regionCount) {
+        regionsSkipped.add(regionCount);
+    }
+
+    void recordBytesSkipped(long bytes) {
+        bytesSkipped.add(bytes);
+    }
+
+    void recordSearch(long bytes, long matchNanos, long ioNanos) {
+        searchCount.increment();
+        searchBytes.add(bytes);
+        searchMatchNanos.add(matchNanos);
+        searchIoNanos.add(ioNanos);
+    }
+
+    public long getReadCount() {
+        return readCount.sum();
+    }
+
+    public long getBytesRequested() {
+        return bytesRequested.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    // Reads that returned nothing at all
+    public long getFailedReadCount() {
+        return failedReads.sum();
+    }
+
+    // Reads that stopped short at an unreadable page
+    public long getPartialReadCount() {
+        return partialReads.sum();
+    }
+
+    public long getReadNanos() {
+        return readNanos.sum();
+    }
+
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getFailedWriteCount() {
+        return failedWrites.sum();
+    }
+
+    // Full region enumerations, on Windows each costs one VirtualQueryEx call per region
+    public long getRegionQueryCount() {
+        return regionQueries.sum();
+    }
+
+    public long getRegionsQueried() {
+        return regionsQueried.sum();
+    }
+
+    // Regions left out of scans by the protection filter
+    public long getRegionsSkipped() {
+        return regionsSkipped.sum();
+    }
+
+    // Bytes of selected regions that turned out to be unreadable while streaming
+    public long getBytesSkipped() {
+        return bytesSkipped.sum();
+    }
+
+    public long getSearchCount() {
+        return searchCount.sum();
+    }
+
+    public long getSearchBytes() {
+        return searchBytes.sum();
+    }
+
+    // Time spent matching chunks, summed over scanning threads
+    public long getSearchMatchNanos() {
+        return searchMatchNanos.sum();
+    }
+
+    // Time spent reading chunks while searching, summed over scanning threads
+    public long getSearchIoNanos() {
+        return searchIoNanos.sum();
+    }
+
+    public MMHistogram getReadLatency() {
+        return readLatency;
+    }
+
+    public MMHistogram getReadSize() {
+        return readSize;
+    }
+
+    public MMHistogram getRegionQueryLatency() {
+        return regionQueryLatency;
+    }
+
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+
+        counters.put("reads", getReadCount());
+        counters.put("bytes.requested", getBytesRequested());
+        counters.put("bytes.read", getBytesRead());
+        counters.put("reads.failed", getFailedReadCount());
+        counters.put("reads.partial", getPartialReadCount());
+        counters.put("reads.nanos", getReadNanos());
+        counters.put("writes", getWriteCount());
+        counters.put("bytes.written", getBytesWritten());
+        counters.put("writes.failed", getFailedWriteCount());
+        counters.put("regions.queries", getRegionQueryCount());
+        counters.put("regions.queried", getRegionsQueried());
+        counters.put("regions.skipped", getRegionsSkipped());
+        counters.put("bytes.skipped", getBytesSkipped());
+        counters.put("searches", getSearchCount());
+        counters.put("searches.bytes", getSearchBytes());
+        counters.put("searches.match.nanos", getSearchMatchNanos());
+        counters.put("searches.io.nanos", getSearchIoNanos());
+
+        return counters;
+    }
+
+    public void reset() {
+        for (LongAdder counter: new LongAdder[] {
+            readCount, bytesRequested, bytesRead, failedReads, partialReads, readNanos,
+            writeCount, bytesWritten, failedWrites,
+            regionQueries, regionsQueried, regionsSkipped, bytesSkipped,
+            searchCount, searchBytes, searchMatchNanos, searchIoNanos
+        }) {
+            counter.reset();
+        }
+
+        readLatency.reset();
+        readSize.reset();
+        regionQueryLatency.reset();
+    }
+}
@@ -0,0 +1,118 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.backend.MMBackend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Cached process list indexed by PID and by name. Refreshing only adds and removes the processes
+// that started or exited since the previous refresh, existing MMProcess instances are kept.
+public class MMProcessTable {
+
+    private final MMBackend backend;
+
+    private final Map<Integer, MMProcess> processes = new HashMap<>();
+    private final Map<String, Set<Integer>> processIDsByName = new HashMap<>();
+
+    private long refreshedAt = 0;
+    private long refreshInterval = TimeUnit.SECONDS.toNanos(1);
+
+    public MMProcessTable(MMBackend backend) {
+        this.backend = backend;
+    }
+
+    public synchronized void refresh() {
+        Map<Integer, String> currentProcesses = backend.listProcesses();
+
+        Iterator<MMProcess> knownProcesses = processes.values().iterator();
+        while (knownProcesses.hasNext()) {
+            MMProcess process = knownProcesses.next();
+
+            if (!process.getProcessName().equals(currentProcesses.get(process.getProcessID()))) {
+                knownProcesses.remove();
+                unindex(process);
+            }
+        }
+
+        for (Map.Entry<Integer, String> entry: currentProcesses.entrySet()) {
+            if (!processes.containsKey(entry.getKey())) {
+                add(new MMProcess(backend, entry.getValue(), entry.getKey()));
+            }
+        }
+
+        refreshedAt = System.nanoTime();
+    }
+
+    // Looks the PID up directly instead of enumerating every process
+    public synchronized MMProcess getProcess(int processID) {
+        String processName = backend.getProcessName(processID);
+        MMProcess process = processes.get(processID);
+
+        if (process != null && !process.getProcessName().equals(processName)) {
+            processes.remove(processID);
+            unindex(process);
+            process = null;
+        }
+
+        if (process == null && processName != null) {
+            process = new MMProcess(backend, processName, processID);
+            add(process);
+        }
+
+        return process;
+    }
+
+    public synchronized List<MMProcess> getProcessesByName(String processName) {
+        refreshIfStale();
+
+        List<MMProcess> namedProcesses = new ArrayList<>();
+        for (int processID: processIDsByName.getOrDefault(processName, Collections.emptySet())) {
+            namedProcesses.add(processes.get(processID));
+        }
+
+        return namedProcesses;
+    }
+
+    public synchronized List<MMProcess> getAllProcesses() {
+        refreshIfStale();
+        return new ArrayList<>(processes.values());
+    }
+
+    public synchronized int size() {
+        return processes.size();
+    }
+
+    public synchronized void setRefreshInterval(long interval, TimeUnit unit) {
+        refreshInterval = unit.toNanos(interval);
+    }
+
+    private void refreshIfStale() {
+        if (refreshedAt == 0 || System.nanoTime() - refreshedAt > refreshInterval) {
+            refresh();
+        }
+    }
+
+    private void add(MMProcess process) {
+        processes.put(process.getProcessID(), process);
+        processIDsByName.computeIfAbsent(process.getProcessName(), name -> new HashSet<>()).add(process.getProcessID());
+    }
+
+    private void unindex(MMProcess process) {
+        Set<Integer> processIDs = processIDsByName.get(process.getProcessName());
+
+        if (processIDs != null) {
+            processIDs.remove(process.getProcessID());
+
+            if (processIDs.isEmpty()) {
+                processIDsByName.remove(process.getProcessName());
+            }
+        }
+    }
+}
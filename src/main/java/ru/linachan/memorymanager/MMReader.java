@@ -1,51 +1,289 @@
 package ru.linachan.memorymanager;
 
 import com.sun.jna.Memory;
-import com.sun.jna.Pointer;
-import com.sun.jna.platform.win32.WinNT;
-import org.bouncycastle.util.Arrays;
-import ru.linachan.memorymanager.utils.MMUtils;
+import ru.linachan.memorymanager.search.MMPattern;
+import ru.linachan.memorymanager.search.MMQuery;
+import ru.linachan.memorymanager.search.MMQueryScanner;
+import ru.linachan.memorymanager.search.MMScanCondition;
+import ru.linachan.memorymanager.search.MMSignatureScanner;
+import ru.linachan.memorymanager.search.MMSignatureSet;
+import ru.linachan.memorymanager.search.MMStringEncoding;
+import ru.linachan.memorymanager.search.MMStringScanner;
+import ru.linachan.memorymanager.search.MMValueScanner;
+import ru.linachan.memorymanager.search.MMValueType;
+import ru.linachan.memorymanager.utils.MMBufferPool;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 public class MMReader {
 
+    @FunctionalInterface
+    private interface ChunkSearch {
+        void search(ByteBuffer chunk, long chunkAddress, int startLimit, IntConsumer consumer);
+    }
+
+    private static final long SCAN_UNIT_SIZE = 4L * MMProcess.CHUNK_SIZE;
+    private static final int CACHED_READ_LIMIT = 16 * MMRegion.PAGE_SIZE;
+
+    // Memory read up front to find out which query fields are the most selective
+    private static final int QUERY_SAMPLE_REGIONS = 16;
+    private static final int QUERY_SAMPLE_SIZE = 16 * MMRegion.PAGE_SIZE;
+
+    public static final int MAX_STRING_BYTES = 4096;
+    private static final int BATCH_READ_SIZE = 1 << 20;
+    private static final int STRING_LOOKBEHIND = 4;
+
     private final MMProcess process;
+    private final ForkJoinPool scanPool;
 
     public MMReader(MMProcess process) {
+        this(process, ForkJoinPool.commonPool());
+    }
+
+    public MMReader(MMProcess process, ForkJoinPool scanPool) {
         this.process = process;
+        this.scanPool = scanPool;
     }
 
     // byte[]
 
     public List<Long> findBytes(byte[] pattern) {
-        List<Long> searchResult = new ArrayList<>();
+        return findBytes(MMPattern.of(pattern));
+    }
+
+    public List<Long> findBytes(String signature) {
+        return findBytes(MMPattern.parse(signature));
+    }
+
+    public List<Long> findBytes(MMPattern pattern) {
+        return collectResults(findBytesAsync(pattern, null));
+    }
+
+    public MMSearch findBytesAsync(MMPattern pattern, LongConsumer matchSink) {
+        return startSearch(
+            pattern.length() - 1, (chunk, chunkAddress, startLimit, consumer) -> pattern.search(chunk, startLimit, consumer), matchSink
+        );
+    }
+
+    public List<Long> findValues(MMValueType valueType, MMScanCondition condition, int alignment) {
+        return collectResults(findValuesAsync(valueType, condition, alignment, null));
+    }
+
+    public MMSearch findValuesAsync(MMValueType valueType, MMScanCondition condition, int alignment, LongConsumer matchSink) {
+        MMValueScanner scanner = new MMValueScanner(valueType, condition, alignment);
+
+        return startSearch(scanner.getOverlap(), scanner::search, matchSink);
+    }
+
+    public List<Long> findQuery(MMQuery query, int alignment) {
+        return findQuery(compileQuery(query, alignment));
+    }
+
+    public List<Long> findQuery(MMQueryScanner scanner) {
+        return collectResults(findQueryAsync(scanner, null));
+    }
+
+    public MMSearch findQueryAsync(MMQuery query, int alignment, LongConsumer matchSink) {
+        return findQueryAsync(compileQuery(query, alignment), matchSink);
+    }
+
+    public MMSearch findQueryAsync(MMQueryScanner scanner, LongConsumer matchSink) {
+        return startSearch(scanner.getOverlap(), scanner::search, matchSink);
+    }
+
+    // Compiles the query against samples taken from the middle of regions spread over the address space
+    public MMQueryScanner compileQuery(MMQuery query, int alignment) {
+        List<MMRegion> regions = process.queryPages();
+        List<ByteBuffer> samples = new ArrayList<>();
+        int regionStep = Math.max(1, regions.size() / QUERY_SAMPLE_REGIONS);
+
+        // Handles read into direct buffers only, samples are copied out of a pooled one
+        MMBufferPool bufferPool = process.getBufferPool();
+        ByteBuffer readBuffer = bufferPool.acquire();
+
+        try {
+            for (int i = 0; i < regions.size() && samples.size() < QUERY_SAMPLE_REGIONS; i += regionStep) {
+                MMRegion region = regions.get(i);
+                int sampleSize = (int) Math.min(QUERY_SAMPLE_SIZE, region.getRegionSize());
+                long sampleAddress = region.getBaseAddress() + ((region.getRegionSize() - sampleSize) / 2 & -MMRegion.PAGE_SIZE);
+
+                readBuffer.clear();
+                readBuffer.limit(sampleSize);
+                int bytesRead = process.readMemory(sampleAddress, readBuffer);
+
+                if (bytesRead > 0) {
+                    readBuffer.flip();
+
+                    ByteBuffer sample = ByteBuffer.allocate(bytesRead).order(ByteOrder.nativeOrder());
+                    sample.put(readBuffer).clear();
+                    samples.add(sample);
+                }
+            }
+        } finally {
+            bufferPool.release(readBuffer);
+        }
+
+        return query.compile(alignment, samples);
+    }
+
+    private MMSearch startSearch(int overlap, ChunkSearch chunkSearch, LongConsumer matchSink) {
+        List<MMRegion> regions = process.queryPages();
+        MMSearch search = new MMSearch(regions, SCAN_UNIT_SIZE, matchSink, process.getMetrics());
+
+        search.start(scanPool, MMScanTask.forRegions(regions, SCAN_UNIT_SIZE, (startAddress, endAddress, regionEnd, results) -> {
+            search.checkCancelled();
+
+            long unitStartedAt = System.nanoTime();
+            long[] unitMatchNanos = new long[1];
+
+            process.streamMemory(
+                startAddress, Math.min(endAddress + overlap, regionEnd), overlap, (chunkAddress, chunk, startLimit) -> {
+                    search.checkCancelled();
+
+                    int searchLimit = (int) Math.min(startLimit, endAddress - chunkAddress);
+                    long chunkStartedAt = System.nanoTime();
 
-        for (WinNT.MEMORY_BASIC_INFORMATION memoryInfo: process.queryPages()) {
-            Memory memoryPage = process.readMemory(memoryInfo.baseAddress, memoryInfo.regionSize);
-            byte[] memoryBytes = memoryPage.getByteArray(0x00, memoryInfo.regionSize.intValue());
+                    chunkSearch.search(chunk, chunkAddress, searchLimit, memoryOffset -> {
+                        results.add(chunkAddress + memoryOffset);
+                        search.onMatch(chunkAddress + memoryOffset);
+                    });
 
-            List<Integer> memoryOffsets = MMUtils.findArray(pattern, memoryBytes);
+                    long chunkNanos = System.nanoTime() - chunkStartedAt;
+                    unitMatchNanos[0] += chunkNanos;
+                    search.onChunkScanned(searchLimit, chunkNanos);
+                }
+            );
+
+            // Whatever the unit did besides matching was spent reading
+            search.onUnitIo(System.nanoTime() - unitStartedAt - unitMatchNanos[0]);
+            search.onUnitScanned(regionEnd);
+        }));
+
+        return search;
+    }
+
+    // Looks for every signature of the set in one pass over memory
+    public MMSignatureScan findSignaturesAsync(MMSignatureSet signatures, LongConsumer matchSink) {
+        MMSignatureScanner scanner = signatures.compile();
+        int overlap = scanner.getOverlap();
+
+        List<MMRegion> regions = process.queryPages();
+        MMSearch search = new MMSearch(regions, SCAN_UNIT_SIZE, matchSink, process.getMetrics());
+        MMSignatureScan signatureScan = new MMSignatureScan(signatures, search);
+
+        search.start(scanPool, MMScanTask.forRegions(regions, SCAN_UNIT_SIZE, (startAddress, endAddress, regionEnd, results) -> {
+            search.checkCancelled();
+
+            long unitStartedAt = System.nanoTime();
+            long[] unitMatchNanos = new long[1];
+
+            process.streamMemory(
+                startAddress, Math.min(endAddress + overlap, regionEnd), overlap, (chunkAddress, chunk, startLimit) -> {
+                    search.checkCancelled();
+
+                    int searchLimit = (int) Math.min(startLimit, endAddress - chunkAddress);
+                    long chunkStartedAt = System.nanoTime();
 
-            searchResult.addAll(
-                memoryOffsets.stream()
-                    .map(memoryOffset -> Pointer.nativeValue(memoryInfo.baseAddress) + memoryOffset)
-                    .collect(Collectors.toList())
+                    scanner.search(chunk, searchLimit, (memoryOffset, signature) -> {
+                        results.add(chunkAddress + memoryOffset);
+                        results.add(signature);
+                        search.onMatch(chunkAddress + memoryOffset);
+                    });
+
+                    long chunkNanos = System.nanoTime() - chunkStartedAt;
+                    unitMatchNanos[0] += chunkNanos;
+                    search.onChunkScanned(searchLimit, chunkNanos);
+                }
             );
+
+            search.onUnitIo(System.nanoTime() - unitStartedAt - unitMatchNanos[0]);
+            search.onUnitScanned(regionEnd);
+        }), signatureScan::collect);
+
+        return signatureScan;
+    }
+
+    public MMSignatureScan findSignatures(MMSignatureSet signatures) {
+        return findSignaturesAsync(signatures, null).join();
+    }
+
+    // Synchronous searches return a plain list and release the store behind the search before returning
+    private static List<Long> collectResults(MMSearch search) {
+        try {
+            return new ArrayList<>(search.join());
+        } finally {
+            search.closeResults();
         }
+    }
 
-        return searchResult;
+    public MMScanSession newScanSession(MMValueType valueType, int alignment) {
+        return new MMScanSession(process, valueType, alignment, scanPool);
+    }
+
+    public MMPointerIndex buildPointerIndex(int pointerSize) {
+        return MMPointerIndex.build(process, pointerSize, scanPool);
     }
 
     public byte[] readBytes(long address, int blockSize) {
+        // Large blocks would only evict the pages point reads keep hitting
+        if (blockSize <= CACHED_READ_LIMIT) {
+            return process.getPageCache().read(address, blockSize);
+        }
+
         Memory memoryBlock = process.readMemory(address, blockSize);
         return memoryBlock.getByteArray(0, (int) memoryBlock.size());
     }
 
+    // Reads blockSize bytes at every address in batched passes of about BATCH_READ_SIZE bytes,
+    // block i starts at i * blockSize
+    public byte[] readBytes(long[] addresses, int blockSize) {
+        long totalSize = Math.multiplyExact((long) addresses.length, blockSize);
+
+        if (totalSize > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format(
+                "%d blocks of %d bytes do not fit into one array", addresses.length, blockSize
+            ));
+        }
+
+        byte[] blocks = new byte[(int) totalSize];
+        int batchSize = Math.max(1, BATCH_READ_SIZE / Math.max(1, blockSize));
+
+        for (int start = 0; start < addresses.length; start += batchSize) {
+            int end = Math.min(addresses.length, start + batchSize);
+            int[] lengths = new int[end - start];
+            Arrays.fill(lengths, blockSize);
+
+            process.readMemory(
+                Arrays.copyOfRange(addresses, start, end), lengths,
+                ByteBuffer.wrap(blocks, start * blockSize, lengths.length * blockSize).slice()
+            );
+        }
+
+        return blocks;
+    }
+
+    public void invalidateCache() {
+        process.getPageCache().invalidate();
+        process.getAddressResolver().invalidate();
+    }
+
+    public long resolveAddress(String expression) {
+        return process.getAddressResolver().resolve(expression);
+    }
+
+    public List<Long> resolveAddresses(List<MMAddressExpression> expressions) {
+        return process.getAddressResolver().resolve(expressions);
+    }
+
     public int writeBytes(long address, byte[] bytesToWrite) {
         Memory memoryToWrite = new Memory(bytesToWrite.length);
         memoryToWrite.write(0, bytesToWrite, 0, bytesToWrite.length);
@@ -54,77 +292,245 @@ public class MMReader {
 
     // String
 
-    private long findStringBaseAddress(long stringAddress, int bytesPerChar) {
-        byte[] nullArray = MMUtils.getNullArray(bytesPerChar);
+    public MMSearch findStringAsync(String value, MMStringEncoding encoding, boolean ignoreCase, LongConsumer matchSink) {
+        MMPattern pattern = encoding.toPattern(value, ignoreCase);
+
+        if (!ignoreCase) {
+            return findBytesAsync(pattern, matchSink);
+        }
+
+        // Folded masks admit a few neighbours of non-ASCII letters, decode every hit to be sure
+        return startSearch(pattern.length() - 1, (chunk, chunkAddress, startLimit, consumer) -> pattern.search(
+            chunk, startLimit, offset -> {
+                if (encoding.decode(chunk, offset, pattern.length()).equalsIgnoreCase(value)) {
+                    consumer.accept(offset);
+                }
+            }
+        ), matchSink);
+    }
+
+    public List<Long> findString(String value, MMStringEncoding encoding, boolean ignoreCase) {
+        return collectResults(findStringAsync(value, encoding, ignoreCase, null));
+    }
+
+    // Reports the start of every run of at least minLength printable characters
+    public MMSearch findStringsAsync(MMStringEncoding encoding, int minLength, LongConsumer matchSink) {
+        List<MMRegion> regions = process.queryPages();
+        MMSearch search = new MMSearch(regions, SCAN_UNIT_SIZE, matchSink, process.getMetrics());
+
+        long[] regionStarts = new long[regions.size()];
+        for (int i = 0; i < regionStarts.length; i++) {
+            regionStarts[i] = regions.get(i).getBaseAddress();
+        }
+        Arrays.sort(regionStarts);
+
+        search.start(scanPool, MMScanTask.forRegions(regions, SCAN_UNIT_SIZE, (startAddress, endAddress, regionEnd, results) -> {
+            search.checkCancelled();
+
+            long unitStartedAt = System.nanoTime();
+            long[] unitMatchNanos = new long[1];
+
+            MMStringScanner scanner = new MMStringScanner(encoding, minLength, startAddress, endAddress);
+            LongConsumer consumer = address -> {
+                results.add(address);
+                search.onMatch(address);
+            };
+
+            MMChunkVisitor visitor = (chunkAddress, chunk, startLimit) -> {
+                search.checkCancelled();
+
+                long chunkStartedAt = System.nanoTime();
+                scanner.scan(chunk, chunkAddress, startLimit, consumer);
+
+                long chunkNanos = System.nanoTime() - chunkStartedAt;
+                unitMatchNanos[0] += chunkNanos;
+                search.onChunkScanned(
+                    Math.max(0, Math.min(chunkAddress + startLimit, endAddress) - Math.max(chunkAddress, startAddress)), chunkNanos
+                );
+            };
+
+            // A run already open at the start of the unit belongs to the unit before it
+            if (Arrays.binarySearch(regionStarts, startAddress) < 0) {
+                process.streamMemory(startAddress - STRING_LOOKBEHIND, startAddress, 0, visitor);
+            }
+
+            process.streamMemory(startAddress, endAddress, 0, visitor);
+
+            // Follow the last run past the end of the unit until it closes
+            for (long address = endAddress; scanner.isInRun() && scanner.getRunStart() < endAddress && address < regionEnd; ) {
+                long nextAddress = Math.min(address + MMRegion.PAGE_SIZE, regionEnd);
+                process.streamMemory(address, nextAddress, 0, visitor);
+                address = nextAddress;
+            }
+
+            scanner.finish(consumer);
+
+            search.onUnitIo(System.nanoTime() - unitStartedAt - unitMatchNanos[0]);
+            search.onUnitScanned(regionEnd);
+        }));
+
+        return search;
+    }
+
+    public List<Long> findStrings(MMStringEncoding encoding, int minLength) {
+        return collectResults(findStringsAsync(encoding, minLength, null));
+    }
+
+    // Start of the string containing address: the unit after the closest preceding terminator,
+    // looking back no further than maxBytes and never outside the region of address
+    public long findStringStart(long address, MMStringEncoding encoding, int maxBytes) {
+        MMRegion region = process.getRegionMap().regionOf(address);
+
+        if (region == null) {
+            return address;
+        }
+
+        int unitSize = encoding.getUnitSize();
+        int windowSize = (int) Math.min(maxBytes, address - region.getBaseAddress()) / unitSize * unitSize;
+        byte[] window = readBytes(address - windowSize, windowSize);
+
+        for (int position = windowSize - unitSize; position >= 0; position -= unitSize) {
+            if (encoding.findTerminator(window, position, position + unitSize) == position) {
+                return address - windowSize + position + unitSize;
+            }
+        }
+
+        return address - windowSize;
+    }
+
+    // Decodes the string at address from one read of at most maxBytes, up to its terminator
+    public String readString(long address, MMStringEncoding encoding, int maxBytes) {
+        byte[] data = readBytes(address, maxBytes);
+        return encoding.decode(data, 0, encoding.findTerminator(data, 0, data.length));
+    }
+
+    // Decodes the strings at every address from batched reads
+    public String[] readStrings(long[] addresses, MMStringEncoding encoding, int maxBytes) {
+        return readStrings(addresses, maxBytes, (data, offset) -> encoding.decode(
+            data, offset, encoding.findTerminator(data, offset, offset + maxBytes) - offset
+        ));
+    }
+
+    // Like readStrings, but each string ends where its printable run does, as found by findStrings
+    public String[] readPrintableStrings(long[] addresses, MMStringEncoding encoding, int maxBytes) {
+        return readStrings(addresses, maxBytes, (data, offset) -> encoding.decode(
+            data, offset, MMStringScanner.measureRun(encoding, data, offset, offset + maxBytes)
+        ));
+    }
+
+    // Only one batch of raw bytes is held at a time, however many addresses there are
+    private String[] readStrings(long[] addresses, int maxBytes, BiFunction<byte[], Integer, String> decoder) {
+        String[] strings = new String[addresses.length];
+        int batchSize = Math.max(1, BATCH_READ_SIZE / Math.max(1, maxBytes));
 
-        while (true) {
-            Memory memoryPage = process.readMemory(stringAddress - bytesPerChar, bytesPerChar);
-            byte[] memoryBytes = memoryPage.getByteArray(0, bytesPerChar);
+        for (int start = 0; start < addresses.length; start += batchSize) {
+            int end = Math.min(addresses.length, start + batchSize);
+            byte[] data = readBytes(Arrays.copyOfRange(addresses, start, end), maxBytes);
 
-            if (Arrays.areEqual(memoryBytes, nullArray)) {
-                break;
-            } else {
-                stringAddress -= bytesPerChar;
+            for (int i = start; i < end; i++) {
+                strings[i] = decoder.apply(data, (i - start) * maxBytes);
             }
         }
 
-        return stringAddress;
+        return strings;
+    }
+
+    public void writeString(long address, String value, MMStringEncoding encoding) {
+        byte[] valueBytes = encoding.encode(value);
+        byte[] terminated = new byte[valueBytes.length + encoding.getUnitSize()];
+
+        System.arraycopy(valueBytes, 0, terminated, 0, valueBytes.length);
+        writeBytes(address, terminated);
     }
 
-    public List<Long> findString(String pattern, int bytesPerChar) throws UnsupportedEncodingException {
-        return findBytes(MMUtils.prepareString(pattern, bytesPerChar)).stream()
-            .map(address -> findStringBaseAddress(address, bytesPerChar))
+    public long findStringBaseAddress(long stringAddress, int bytesPerChar) {
+        return findStringStart(stringAddress, MMStringEncoding.fromBytesPerChar(bytesPerChar), MAX_STRING_BYTES);
+    }
+
+    public List<Long> findString(String pattern, int bytesPerChar) {
+        MMStringEncoding encoding = MMStringEncoding.fromBytesPerChar(bytesPerChar);
+
+        return findString(pattern, encoding, false).stream()
+            .map(address -> findStringStart(address, encoding, MAX_STRING_BYTES))
             .collect(Collectors.toList());
     }
 
     public String readString(long address, int bytesPerChar) {
-        StringBuilder resultString = new StringBuilder();
+        MMStringEncoding encoding = MMStringEncoding.fromBytesPerChar(bytesPerChar);
 
-        byte[] nullArray = MMUtils.getNullArray(bytesPerChar);
+        return readString(findStringStart(address, encoding, MAX_STRING_BYTES), encoding, MAX_STRING_BYTES);
+    }
 
-        address = findStringBaseAddress(address, bytesPerChar);
+    // Overwrites the whole old string, padding the new one with zeros when it is shorter
+    public void writeString(String data, long address, int bytesPerChar) {
+        MMStringEncoding encoding = MMStringEncoding.fromBytesPerChar(bytesPerChar);
+        address = findStringStart(address, encoding, MAX_STRING_BYTES);
 
-        while (true) {
-            Memory memoryPage = process.readMemory(address, bytesPerChar);
-            byte[] memoryBytes = memoryPage.getByteArray(0, bytesPerChar);
+        byte[] dataBytes = encoding.encode(data);
+        byte[] oldBytes = readBytes(address, MAX_STRING_BYTES);
+        byte[] paddedBytes = new byte[Math.max(encoding.findTerminator(oldBytes, 0, oldBytes.length), dataBytes.length)];
 
-            if (Arrays.areEqual(memoryBytes, nullArray)) {
-                break;
-            } else {
-                resultString.append(new String(memoryBytes));
-                address += bytesPerChar;
-            }
+        System.arraycopy(dataBytes, 0, paddedBytes, 0, dataBytes.length);
+
+        writeBytes(address, paddedBytes);
+    }
+
+    // typed values
+
+    public List<Long> findValues(MMValueType valueType, MMScanCondition condition) {
+        return findValues(valueType, condition, 1);
+    }
+
+    // Unreadable addresses come back as zero
+    public long[] readValues(MMValueType valueType, long[] addresses) {
+        int valueSize = valueType.size();
+        ByteBuffer values = ByteBuffer.wrap(readBytes(addresses, valueSize)).order(ByteOrder.nativeOrder());
+
+        long[] valueBits = new long[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            valueBits[i] = valueType.read(values, i * valueSize);
         }
 
-        return resultString.toString();
+        return valueBits;
     }
 
-    public void writeString(String data, long address, int bytesPerChar) throws UnsupportedEncodingException {
-        address = findStringBaseAddress(address, bytesPerChar);
+    public int[] writeValues(MMValueType valueType, long[] addresses, long[] valueBits) {
+        int valueSize = valueType.size();
+        ByteBuffer values = ByteBuffer.allocate(addresses.length * valueSize).order(ByteOrder.nativeOrder());
 
-        byte[] dataBytes = MMUtils.prepareString(data, bytesPerChar);
-        byte[] nullArray = MMUtils.getNullArray(Math.max(readString(address, bytesPerChar).length() * bytesPerChar, dataBytes.length));
+        int[] lengths = new int[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            valueType.write(values, i * valueSize, valueBits[i]);
+            lengths[i] = valueSize;
+        }
 
-        System.arraycopy(dataBytes, 0, nullArray, 0, dataBytes.length);
+        return process.writeMemory(addresses, lengths, values);
+    }
 
-        writeBytes(address, nullArray);
+    public long readValue(MMValueType valueType, long address) {
+        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, valueType.size())).order(ByteOrder.nativeOrder());
+        return valueType.read(valueBytes, 0);
+    }
+
+    public void writeValue(MMValueType valueType, long address, long valueBits) {
+        ByteBuffer valueBytes = ByteBuffer.allocate(valueType.size()).order(ByteOrder.nativeOrder());
+        valueType.write(valueBytes, 0, valueBits);
+        writeBytes(address, valueBytes.array());
     }
 
     // byte
 
     public List<Long> findByte(byte value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(1);
-        valueBytes.put(value);
-        return findBytes(valueBytes.array());
+        return findValues(MMValueType.BYTE, MMScanCondition.exact(value));
     }
 
     public byte readByte(long address) {
-        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 1));
+        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 1)).order(ByteOrder.nativeOrder());
         return valueBytes.get();
     }
 
     public void writeByte(long address, byte value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(1);
+        ByteBuffer valueBytes = ByteBuffer.allocate(1).order(ByteOrder.nativeOrder());
         valueBytes.put(value);
         writeBytes(address, valueBytes.array());
     }
@@ -132,18 +538,16 @@ public class MMReader {
     // short
 
     public List<Long> findShort(short value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(2);
-        valueBytes.putShort(value);
-        return findBytes(valueBytes.array());
+        return findValues(MMValueType.SHORT, MMScanCondition.exact(value));
     }
 
     public short readShort(long address) {
-        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 2));
+        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 2)).order(ByteOrder.nativeOrder());
         return valueBytes.getShort();
     }
 
     public void writeShort(long address, short value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(2);
+        ByteBuffer valueBytes = ByteBuffer.allocate(2).order(ByteOrder.nativeOrder());
         valueBytes.putShort(value);
         writeBytes(address, valueBytes.array());
     }
@@ -151,18 +555,16 @@ public class MMReader {
     // int
 
     public List<Long> findInt(int value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(4);
-        valueBytes.putInt(value);
-        return findBytes(valueBytes.array());
+        return findValues(MMValueType.INT, MMScanCondition.exact(value));
     }
 
     public int readInt(long address) {
-        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 4));
+        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 4)).order(ByteOrder.nativeOrder());
         return valueBytes.getInt();
     }
 
     public void writeInt(long address, int value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(4);
+        ByteBuffer valueBytes = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
         valueBytes.putInt(value);
         writeBytes(address, valueBytes.array());
     }
@@ -170,18 +572,16 @@ public class MMReader {
     // long
 
     public List<Long> findLong(long value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(8);
-        valueBytes.putLong(value);
-        return findBytes(valueBytes.array());
+        return findValues(MMValueType.LONG, MMScanCondition.exact(value));
     }
 
     public long readLong(long address) {
-        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 8));
+        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 8)).order(ByteOrder.nativeOrder());
         return valueBytes.getLong();
     }
 
     public void writeLong(long address, long value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(8);
+        ByteBuffer valueBytes = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
         valueBytes.putLong(value);
         writeBytes(address, valueBytes.array());
     }
@@ -189,18 +589,20 @@ public class MMReader {
     // float
 
     public List<Long> findFloat(float value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(4);
-        valueBytes.putFloat(value);
-        return findBytes(valueBytes.array());
+        return findValues(MMValueType.FLOAT, MMScanCondition.exact(Float.floatToRawIntBits(value)));
+    }
+
+    public List<Long> findFloat(float value, float epsilon) {
+        return findValues(MMValueType.FLOAT, MMScanCondition.exact(Float.floatToRawIntBits(value), epsilon));
     }
 
     public float readFloat(long address) {
-        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 4));
+        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 4)).order(ByteOrder.nativeOrder());
         return valueBytes.getFloat();
     }
 
     public void writeFloat(long address, float value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(4);
+        ByteBuffer valueBytes = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
         valueBytes.putFloat(value);
         writeBytes(address, valueBytes.array());
     }
@@ -208,18 +610,20 @@ public class MMReader {
     // double
 
     public List<Long> findDouble(double value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(8);
-        valueBytes.putDouble(value);
-        return findBytes(valueBytes.array());
+        return findValues(MMValueType.DOUBLE, MMScanCondition.exact(Double.doubleToRawLongBits(value)));
+    }
+
+    public List<Long> findDouble(double value, double epsilon) {
+        return findValues(MMValueType.DOUBLE, MMScanCondition.exact(Double.doubleToRawLongBits(value), epsilon));
     }
 
     public double readDouble(long address) {
-        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 8));
+        ByteBuffer valueBytes = ByteBuffer.wrap(readBytes(address, 8)).order(ByteOrder.nativeOrder());
         return valueBytes.getDouble();
     }
 
     public void writeDouble(long address, double value) {
-        ByteBuffer valueBytes = ByteBuffer.allocate(8);
+        ByteBuffer valueBytes = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
         valueBytes.putDouble(value);
         writeBytes(address, valueBytes.array());
     }
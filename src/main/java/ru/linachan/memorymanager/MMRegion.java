@@ -0,0 +1,111 @@
+package ru.linachan.memorymanager;
+
+public class MMRegion {
+
+    public static final int READ = 0x01;
+    public static final int WRITE = 0x02;
+    public static final int EXECUTE = 0x04;
+    public static final int SHARED = 0x08;
+    public static final int WRITECOPY = 0x10;
+
+    public static final int PAGE_SIZE = 0x1000;
+
+    private final long baseAddress;
+    private final long regionSize;
+    private final int protection;
+    private final String mappingName;
+
+    public MMRegion(long baseAddress, long regionSize, int protection, String mappingName) {
+        this.baseAddress = baseAddress;
+        this.regionSize = regionSize;
+        this.protection = protection;
+        this.mappingName = mappingName;
+    }
+
+    public long getBaseAddress() {
+        return baseAddress;
+    }
+
+    public long getRegionSize() {
+        return regionSize;
+    }
+
+    public long getEndAddress() {
+        return baseAddress + regionSize;
+    }
+
+    public int getProtection() {
+        return protection;
+    }
+
+    public String getMappingName() {
+        return mappingName;
+    }
+
+    public String getModuleName() {
+        return getModuleName(mappingName);
+    }
+
+    public boolean hasProtection(int requiredFlags, int excludedFlags) {
+        return (protection & requiredFlags) == requiredFlags && (protection & excludedFlags) == 0;
+    }
+
+    public boolean contains(long address) {
+        return address >= baseAddress && address - baseAddress < regionSize;
+    }
+
+    // Protection flags as "rwxsc" letters: read, write, execute, shared, write-copy
+    public static int parseProtection(String flags) {
+        int protection = 0;
+
+        for (char flag: flags.toCharArray()) {
+            switch (flag) {
+                case 'r':
+                    protection |= READ;
+                    break;
+                case 'w':
+                    protection |= WRITE;
+                    break;
+                case 'x':
+                    protection |= EXECUTE;
+                    break;
+                case 's':
+                    protection |= SHARED;
+                    break;
+                case 'c':
+                    protection |= WRITECOPY;
+                    break;
+                case '-':
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown protection flag: '%c'", flag));
+            }
+        }
+
+        return protection;
+    }
+
+    public static String formatProtection(int protection) {
+        return new String(new char[] {
+            (protection & READ) != 0 ? 'r' : '-',
+            (protection & WRITE) != 0 ? 'w' : '-',
+            (protection & EXECUTE) != 0 ? 'x' : '-',
+            (protection & SHARED) != 0 ? 's' : '-',
+            (protection & WRITECOPY) != 0 ? 'c' : '-'
+        });
+    }
+
+    // File name of a file-backed mapping, null for anonymous and pseudo mappings such as [heap]
+    public static String getModuleName(String mappingName) {
+        if (mappingName == null || mappingName.isEmpty() || mappingName.startsWith("[")) {
+            return null;
+        }
+
+        return mappingName.substring(Math.max(mappingName.lastIndexOf('/'), mappingName.lastIndexOf('\\')) + 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%08X-%08X %s %s", baseAddress, getEndAddress(), formatProtection(protection), mappingName);
+    }
+}
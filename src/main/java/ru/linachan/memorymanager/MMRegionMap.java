@@ -0,0 +1,98 @@
+package ru.linachan.memorymanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class MMRegionMap {
+
+    private final long[] baseAddresses;
+    private final long[] regionSizes;
+    private final int[] protections;
+    private final String[] mappingNames;
+
+    private final long createdAt;
+
+    public MMRegionMap(List<MMRegion> regions) {
+        MMRegion[] sortedRegions = regions.toArray(new MMRegion[0]);
+        Arrays.sort(sortedRegions, Comparator.comparingLong(MMRegion::getBaseAddress));
+
+        baseAddresses = new long[sortedRegions.length];
+        regionSizes = new long[sortedRegions.length];
+        protections = new int[sortedRegions.length];
+        mappingNames = new String[sortedRegions.length];
+
+        for (int i = 0; i < sortedRegions.length; i++) {
+            baseAddresses[i] = sortedRegions[i].getBaseAddress();
+            regionSizes[i] = sortedRegions[i].getRegionSize();
+            protections[i] = sortedRegions[i].getProtection();
+            mappingNames[i] = sortedRegions[i].getMappingName();
+        }
+
+        createdAt = System.nanoTime();
+    }
+
+    public int size() {
+        return baseAddresses.length;
+    }
+
+    // Index of the region containing address, or -1 if the address is not mapped
+    public int indexOf(long address) {
+        int low = 0;
+        int high = baseAddresses.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (baseAddresses[middle] <= address) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return high >= 0 && address - baseAddresses[high] < regionSizes[high] ? high : -1;
+    }
+
+    public MMRegion regionOf(long address) {
+        int index = indexOf(address);
+        return index < 0 ? null : getRegion(index);
+    }
+
+    public MMRegion getRegion(int index) {
+        return new MMRegion(baseAddresses[index], regionSizes[index], protections[index], mappingNames[index]);
+    }
+
+    public long getBaseAddress(int index) {
+        return baseAddresses[index];
+    }
+
+    public long getRegionSize(int index) {
+        return regionSizes[index];
+    }
+
+    public int getProtection(int index) {
+        return protections[index];
+    }
+
+    public String getMappingName(int index) {
+        return mappingNames[index];
+    }
+
+    public List<MMRegion> getRegions(int requiredProtection, int excludedProtection) {
+        List<MMRegion> regions = new ArrayList<>();
+
+        for (int i = 0; i < baseAddresses.length; i++) {
+            if ((protections[i] & requiredProtection) == requiredProtection && (protections[i] & excludedProtection) == 0) {
+                regions.add(getRegion(i));
+            }
+        }
+
+        return regions;
+    }
+
+    public long getAgeNanos() {
+        return System.nanoTime() - createdAt;
+    }
+}
@@ -0,0 +1,353 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.search.MMScanCondition;
+import ru.linachan.memorymanager.search.MMValueType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class MMScanSession {
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    // Bytes held per candidate in sparse form: int offset + long value
+    private static final int SPARSE_ENTRY_SIZE = Integer.BYTES + Long.BYTES;
+
+    @FunctionalInterface
+    public interface CandidateVisitor {
+        void visit(long address, long valueBits);
+    }
+
+    private final MMProcess process;
+    private final MMValueType valueType;
+    private final int alignment;
+    private final ForkJoinPool scanPool;
+
+    private List<Block> blocks = new ArrayList<>();
+    private int scanCount = 0;
+
+    MMScanSession(MMProcess process, MMValueType valueType, int alignment, ForkJoinPool scanPool) {
+        if (alignment <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid alignment: %d", alignment));
+        }
+
+        this.process = process;
+        this.valueType = valueType;
+        this.alignment = alignment;
+        this.scanPool = scanPool;
+    }
+
+    public synchronized long firstScan(MMScanCondition condition) {
+        if (condition.isRelative()) {
+            throw new IllegalArgumentException("First scan requires an exact or unknown initial value");
+        }
+
+        List<Block> regionBlocks = new ArrayList<>();
+
+        for (MMRegion region: process.queryPages()) {
+            for (long address = region.getBaseAddress(); address < region.getEndAddress(); address += BLOCK_SIZE) {
+                long remaining = region.getEndAddress() - address;
+
+                regionBlocks.add(new Block(
+                    address, (int) Math.min(BLOCK_SIZE, remaining),
+                    (int) Math.min(BLOCK_SIZE + valueType.size() - 1, remaining)
+                ));
+            }
+        }
+
+        blocks = regionBlocks;
+        scanCount = 0;
+
+        return runScan(condition);
+    }
+
+    public synchronized long nextScan(MMScanCondition condition) {
+        if (scanCount == 0) {
+            throw new IllegalStateException("Next scan requires a first scan");
+        }
+
+        return runScan(condition);
+    }
+
+    public synchronized void reset() {
+        blocks = new ArrayList<>();
+        scanCount = 0;
+    }
+
+    private long runScan(MMScanCondition condition) {
+        scanPool.invoke(new BlockTask(blocks, 0, blocks.size(), condition, scanCount == 0));
+
+        List<Block> remainingBlocks = new ArrayList<>();
+        for (Block block: blocks) {
+            if (block.candidateCount > 0) {
+                remainingBlocks.add(block);
+            }
+        }
+
+        blocks = remainingBlocks;
+        scanCount++;
+
+        return getCandidateCount();
+    }
+
+    public synchronized long getCandidateCount() {
+        long candidateCount = 0;
+
+        for (Block block: blocks) {
+            candidateCount += block.candidateCount;
+        }
+
+        return candidateCount;
+    }
+
+    public synchronized void forEachCandidate(long limit, CandidateVisitor visitor) {
+        long visited = 0;
+
+        for (Block block: blocks) {
+            if (block.offsets != null) {
+                for (int i = 0; i < block.candidateCount && visited < limit; i++, visited++) {
+                    visitor.visit(block.address + block.offsets[i], block.values[i]);
+                }
+            } else {
+                ByteBuffer contents = ByteBuffer.wrap(block.contents).order(ByteOrder.nativeOrder());
+
+                for (int word = 0; word < block.bitmap.length && visited < limit; word++) {
+                    for (long bits = block.bitmap[word]; bits != 0 && visited < limit; bits &= bits - 1, visited++) {
+                        int offset = ((word << 6) + Long.numberOfTrailingZeros(bits)) * alignment;
+                        visitor.visit(block.address + offset, valueType.read(contents, offset));
+                    }
+                }
+            }
+        }
+    }
+
+    public MMValueType getValueType() {
+        return valueType;
+    }
+
+    public int getAlignment() {
+        return alignment;
+    }
+
+    public synchronized int getScanCount() {
+        return scanCount;
+    }
+
+    private static int pageEnd(int offset) {
+        return (offset + MMRegion.PAGE_SIZE - 1) & -MMRegion.PAGE_SIZE;
+    }
+
+    // Candidates of one block are either sparse (offset and value arrays) or dense (slot bitmap and a copy of the block)
+    private final class Block {
+
+        private final long address;
+        private final int length;
+        private final int readLength;
+
+        private int candidateCount = 0;
+
+        private int[] offsets;
+        private long[] values;
+
+        private long[] bitmap;
+        private byte[] contents;
+
+        private Block(long address, int length, int readLength) {
+            this.address = address;
+            this.length = length;
+            this.readLength = readLength;
+        }
+
+        private void scan(ByteBuffer buffer, MMScanCondition condition, boolean firstScan) {
+            if (firstScan) {
+                scanAll(buffer, condition);
+            } else if (offsets != null) {
+                scanSparse(buffer, condition);
+            } else {
+                scanDense(buffer, condition);
+            }
+        }
+
+        private int readBlock(ByteBuffer buffer) {
+            buffer.clear();
+            buffer.limit(readLength);
+
+            return process.readMemory(address, buffer);
+        }
+
+        private void scanAll(ByteBuffer buffer, MMScanCondition condition) {
+            int bytesRead = readBlock(buffer);
+            int valueSize = valueType.size();
+            long[] slots = new long[((length + alignment - 1) / alignment + 63) >>> 6];
+            int matched = 0;
+
+            for (int offset = 0, slot = 0; offset < length && offset + valueSize <= bytesRead; offset += alignment, slot++) {
+                long value = valueType.read(buffer, offset);
+
+                if (condition.matches(valueType, value, value)) {
+                    slots[slot >>> 6] |= 1L << slot;
+                    matched++;
+                }
+            }
+
+            store(buffer, slots, matched, bytesRead);
+        }
+
+        private void scanDense(ByteBuffer buffer, MMScanCondition condition) {
+            int bytesRead = readBlock(buffer);
+            int valueSize = valueType.size();
+            ByteBuffer previous = ByteBuffer.wrap(contents).order(ByteOrder.nativeOrder());
+            int matched = 0;
+
+            for (int word = 0; word < bitmap.length; word++) {
+                for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+                    int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    int offset = slot * alignment;
+
+                    if (offset + valueSize <= bytesRead && condition.matches(
+                        valueType, valueType.read(previous, offset), valueType.read(buffer, offset)
+                    )) {
+                        matched++;
+                    } else {
+                        bitmap[word] &= ~(1L << slot);
+                    }
+                }
+            }
+
+            store(buffer, bitmap, matched, bytesRead);
+        }
+
+        private void scanSparse(ByteBuffer buffer, MMScanCondition condition) {
+            int valueSize = valueType.size();
+            int matched = 0;
+            int index = 0;
+
+            buffer.clear();
+
+            // Only the pages still holding candidates are read, adjacent pages are coalesced into one read
+            while (index < candidateCount) {
+                int runStart = offsets[index] & -MMRegion.PAGE_SIZE;
+                int runEnd = pageEnd(offsets[index] + valueSize);
+                int runIndex = index + 1;
+
+                while (runIndex < candidateCount && offsets[runIndex] < runEnd + MMRegion.PAGE_SIZE) {
+                    runEnd = Math.max(runEnd, pageEnd(offsets[runIndex] + valueSize));
+                    runIndex++;
+                }
+
+                runEnd = Math.min(runEnd, readLength);
+
+                buffer.limit(runEnd);
+                buffer.position(runStart);
+
+                int readEnd = runStart + process.readMemory(address + runStart, buffer);
+
+                for (; index < runIndex; index++) {
+                    int offset = offsets[index];
+
+                    if (offset + valueSize <= readEnd) {
+                        long value = valueType.read(buffer, offset);
+
+                        if (condition.matches(valueType, values[index], value)) {
+                            offsets[matched] = offset;
+                            values[matched++] = value;
+                        }
+                    }
+                }
+            }
+
+            candidateCount = matched;
+
+            if (matched == 0) {
+                offsets = null;
+                values = null;
+            } else if (matched < offsets.length / 2) {
+                offsets = Arrays.copyOf(offsets, matched);
+                values = Arrays.copyOf(values, matched);
+            }
+        }
+
+        private void store(ByteBuffer buffer, long[] slots, int matched, int bytesRead) {
+            candidateCount = matched;
+
+            if (matched == 0) {
+                offsets = null;
+                values = null;
+                bitmap = null;
+                contents = null;
+            } else if ((long) matched * SPARSE_ENTRY_SIZE < readLength) {
+                offsets = new int[matched];
+                values = new long[matched];
+
+                int index = 0;
+                for (int word = 0; word < slots.length; word++) {
+                    for (long bits = slots[word]; bits != 0; bits &= bits - 1) {
+                        int offset = ((word << 6) + Long.numberOfTrailingZeros(bits)) * alignment;
+
+                        offsets[index] = offset;
+                        values[index++] = valueType.read(buffer, offset);
+                    }
+                }
+
+                bitmap = null;
+                contents = null;
+            } else {
+                if (contents == null) {
+                    contents = new byte[readLength];
+                }
+
+                buffer.position(0);
+                buffer.get(contents, 0, bytesRead);
+
+                bitmap = slots;
+            }
+        }
+    }
+
+    private final class BlockTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Block> blocks;
+        private final int fromBlock;
+        private final int toBlock;
+        private final MMScanCondition condition;
+        private final boolean firstScan;
+
+        private BlockTask(List<Block> blocks, int fromBlock, int toBlock, MMScanCondition condition, boolean firstScan) {
+            this.blocks = blocks;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.condition = condition;
+            this.firstScan = firstScan;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock <= 1) {
+                if (toBlock > fromBlock) {
+                    ByteBuffer buffer = process.getBufferPool().acquire();
+
+                    try {
+                        blocks.get(fromBlock).scan(buffer, condition, firstScan);
+                    } finally {
+                        process.getBufferPool().release(buffer);
+                    }
+                }
+                return;
+            }
+
+            int middleBlock = (fromBlock + toBlock) >>> 1;
+
+            invokeAll(
+                new BlockTask(blocks, fromBlock, middleBlock, condition, firstScan),
+                new BlockTask(blocks, middleBlock, toBlock, condition, firstScan)
+            );
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.utils.MMLongArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class MMScanTask extends RecursiveTask<MMLongArray> {
+
+    private static final long serialVersionUID = 1L;
+
+    @FunctionalInterface
+    interface UnitScanner {
+
+        // Scans matches starting in [startAddress, endAddress), reading no further than regionEnd
+        void scan(long startAddress, long endAddress, long regionEnd, MMLongArray results);
+    }
+
+    @FunctionalInterface
+    interface UnitSink {
+
+        // Takes the results of a scanned unit, called from the scanning threads in no particular order
+        void accept(int unit, MMLongArray results);
+    }
+
+    private final long[] unitStarts;
+    private final long[] unitEnds;
+    private final long[] regionEnds;
+    private final int fromUnit;
+    private final int toUnit;
+    private final UnitScanner scanner;
+    private final UnitSink sink;
+
+    private MMScanTask(
+        long[] unitStarts, long[] unitEnds, long[] regionEnds, int fromUnit, int toUnit, UnitScanner scanner, UnitSink sink
+    ) {
+        this.unitStarts = unitStarts;
+        this.unitEnds = unitEnds;
+        this.regionEnds = regionEnds;
+        this.fromUnit = fromUnit;
+        this.toUnit = toUnit;
+        this.scanner = scanner;
+        this.sink = sink;
+    }
+
+    static MMScanTask forRegions(List<MMRegion> regions, long unitSize, UnitScanner scanner) {
+        int unitCount = 0;
+
+        for (MMRegion region: regions) {
+            unitCount += (int) ((region.getRegionSize() + unitSize - 1) / unitSize);
+        }
+
+        long[] unitStarts = new long[unitCount];
+        long[] unitEnds = new long[unitCount];
+        long[] regionEnds = new long[unitCount];
+
+        int unit = 0;
+
+        for (MMRegion region: regions) {
+            for (long address = region.getBaseAddress(); address < region.getEndAddress(); address += unitSize) {
+                unitStarts[unit] = address;
+                unitEnds[unit] = Math.min(address + unitSize, region.getEndAddress());
+                regionEnds[unit++] = region.getEndAddress();
+            }
+        }
+
+        return new MMScanTask(unitStarts, unitEnds, regionEnds, 0, unitCount, scanner, null);
+    }
+
+    // Same task handing the results of every unit to the sink as soon as it is scanned, the task itself
+    // then completes with no results. Units are taken in address order by one worker per pool thread
+    // instead of being split in halves, so they finish roughly in order and the sink holds few back.
+    MMScanTask withSink(UnitSink unitSink) {
+        return new MMScanTask(unitStarts, unitEnds, regionEnds, fromUnit, toUnit, scanner, unitSink);
+    }
+
+    int getUnitCount() {
+        return toUnit - fromUnit;
+    }
+
+    @Override
+    protected MMLongArray compute() {
+        if (sink != null) {
+            return computeInOrder();
+        }
+
+        if (toUnit - fromUnit <= 1) {
+            MMLongArray results = new MMLongArray();
+
+            if (toUnit > fromUnit) {
+                scanner.scan(unitStarts[fromUnit], unitEnds[fromUnit], regionEnds[fromUnit], results);
+            }
+
+            return results;
+        }
+
+        int middleUnit = (fromUnit + toUnit) >>> 1;
+
+        MMScanTask lowerHalf = new MMScanTask(unitStarts, unitEnds, regionEnds, fromUnit, middleUnit, scanner, null);
+        MMScanTask upperHalf = new MMScanTask(unitStarts, unitEnds, regionEnds, middleUnit, toUnit, scanner, null);
+
+        lowerHalf.fork();
+        MMLongArray upperResults = upperHalf.compute();
+        MMLongArray results = lowerHalf.join();
+
+        results.addAll(upperResults);
+        return results;
+    }
+
+    private MMLongArray computeInOrder() {
+        AtomicInteger nextUnit = new AtomicInteger(fromUnit);
+        int workerCount = Math.max(1, Math.min(getPool() != null ? getPool().getParallelism() : 1, toUnit - fromUnit));
+        List<RecursiveAction> workers = new ArrayList<>();
+
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (int unit = nextUnit.getAndIncrement(); unit < toUnit; unit = nextUnit.getAndIncrement()) {
+                        MMLongArray results = new MMLongArray();
+                        scanner.scan(unitStarts[unit], unitEnds[unit], regionEnds[unit], results);
+                        sink.accept(unit, results);
+                    }
+                }
+            });
+        }
+
+        invokeAll(workers);
+        return new MMLongArray(1);
+    }
+}
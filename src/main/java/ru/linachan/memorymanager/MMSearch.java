@@ -0,0 +1,246 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.utils.MMLongArray;
+import ru.linachan.memorymanager.utils.MMResultStore;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+// Handle of a search running on the scan pool. Matches are passed to the sink as soon as they are
+// found, from the scanning threads and in no particular order. The result lists them sorted by address
+// and cannot be modified.
+public class MMSearch {
+
+    private final CompletableFuture<List<Long>> result = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+
+    // Units scanned ahead of an unfinished one wait here until they can be appended to the results in order
+    private volatile MMResultStore results = null;
+    private MMLongArray[] pendingUnits;
+    private int nextUnit = 0;
+
+    private final LongConsumer matchSink;
+    private final MMProcessMetrics metrics;
+
+    private final long totalBytes;
+    private final int totalRegions;
+    private final Map<Long, AtomicInteger> remainingUnits = new HashMap<>();
+
+    private final LongAdder bytesScanned = new LongAdder();
+    private final LongAdder matchCount = new LongAdder();
+    private final AtomicInteger regionsScanned = new AtomicInteger();
+
+    private final LongAdder matchNanos = new LongAdder();
+    private final LongAdder ioNanos = new LongAdder();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    MMSearch(List<MMRegion> regions, long unitSize, LongConsumer matchSink, MMProcessMetrics metrics) {
+        this.matchSink = matchSink;
+        this.metrics = metrics;
+
+        long regionBytes = 0;
+
+        for (MMRegion region: regions) {
+            regionBytes += region.getRegionSize();
+            remainingUnits.put(region.getEndAddress(), new AtomicInteger(
+                (int) ((region.getRegionSize() + unitSize - 1) / unitSize)
+            ));
+        }
+
+        this.totalBytes = regionBytes;
+        this.totalRegions = regions.size();
+    }
+
+    // Results go to a store that moves to disk once it grows large, the result list is a view of it
+    void start(ForkJoinPool pool, MMScanTask task) {
+        MMResultStore store = new MMResultStore();
+        pendingUnits = new MMLongArray[task.getUnitCount()];
+        results = store;
+
+        start(pool, task.withSink(this::onUnitResults), unitResults -> store.asList());
+    }
+
+    // The collector turns what the units gathered into the result, for scans recording more than addresses
+    void start(ForkJoinPool pool, MMScanTask task, Function<MMLongArray, List<Long>> collector) {
+        startedAt = System.nanoTime();
+
+        pool.execute(() -> {
+            try {
+                List<Long> matches = collector.apply(task.invoke());
+                finish();
+
+                if (!result.complete(matches)) {
+                    discardResults();
+                }
+            } catch (Throwable e) {
+                finish();
+                result.completeExceptionally(e);
+                discardResults();
+            }
+        });
+    }
+
+    // Nobody gets to see the results of a failed or cancelled search, so their file goes right away
+    private void discardResults() {
+        if (results != null) {
+            results.close();
+        }
+    }
+
+    private void finish() {
+        finishedAt = System.nanoTime();
+        metrics.recordSearch(bytesScanned.sum(), matchNanos.sum(), ioNanos.sum());
+    }
+
+    private void onUnitResults(int unit, MMLongArray unitResults) {
+        synchronized (pendingUnits) {
+            pendingUnits[unit] = unitResults;
+
+            while (nextUnit < pendingUnits.length && pendingUnits[nextUnit] != null) {
+                results.addAll(pendingUnits[nextUnit]);
+                pendingUnits[nextUnit++] = null;
+            }
+        }
+    }
+
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    void onMatch(long address) {
+        matchCount.increment();
+
+        if (matchSink != null) {
+            matchSink.accept(address);
+        }
+    }
+
+    void onChunkScanned(long bytes, long nanos) {
+        bytesScanned.add(bytes);
+        matchNanos.add(nanos);
+    }
+
+    void onUnitIo(long nanos) {
+        ioNanos.add(nanos);
+    }
+
+    void onUnitScanned(long regionEnd) {
+        AtomicInteger regionUnits = remainingUnits.get(regionEnd);
+
+        if (regionUnits != null && regionUnits.decrementAndGet() == 0) {
+            regionsScanned.incrementAndGet();
+        }
+    }
+
+    // Stops the search at the next chunk boundary, the result completes with a CancellationException
+    public boolean cancel() {
+        cancelled = true;
+        return result.completeExceptionally(new CancellationException());
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    public List<Long> get() throws InterruptedException, ExecutionException {
+        return result.get();
+    }
+
+    public List<Long> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return result.get(timeout, unit);
+    }
+
+    // Waits for the result, rethrowing the failure of the search as is
+    public List<Long> join() {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    // Store behind the result list, waiting for the search to finish. Closing it releases the spilled part.
+    // Searches that collect more than addresses have none.
+    public MMResultStore getResults() {
+        join();
+        return results;
+    }
+
+    // Releases the store of a search that completed, failed and cancelled searches drop theirs on their own.
+    // The result list cannot be read afterwards.
+    public void closeResults() {
+        if (result.isDone() && !result.isCompletedExceptionally() && results != null) {
+            results.close();
+        }
+    }
+
+    public CompletableFuture<List<Long>> toCompletableFuture() {
+        return result;
+    }
+
+    public long getBytesScanned() {
+        return bytesScanned.sum();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getRegionsScanned() {
+        return regionsScanned.get();
+    }
+
+    public int getTotalRegions() {
+        return totalRegions;
+    }
+
+    public long getMatchCount() {
+        return matchCount.sum();
+    }
+
+    // Wall time from start until the search finished, or until now while it is running
+    public long getElapsedNanos() {
+        long endedAt = finishedAt;
+        return (endedAt != 0 ? endedAt : System.nanoTime()) - startedAt;
+    }
+
+    public double getThroughput() {
+        long elapsedNanos = getElapsedNanos();
+        return elapsedNanos > 0 ? (bytesScanned.sum() / (1024.0 * 1024.0)) / (elapsedNanos / 1e9) : 0;
+    }
+
+    // Time spent matching chunks, summed over scanning threads
+    public long getMatchNanos() {
+        return matchNanos.sum();
+    }
+
+    // Time spent reading chunks, summed over scanning threads
+    public long getIoNanos() {
+        return ioNanos.sum();
+    }
+}
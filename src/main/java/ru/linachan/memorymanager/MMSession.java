@@ -0,0 +1,109 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.utils.MMResultStore;
+
+import java.util.concurrent.ForkJoinPool;
+
+// An attached process together with the shell state kept for it. The process owns the handle, region map,
+// caches and buffers and serves reads from any number of threads, the session only adds the iterative scan
+// and the results of the last search, paged through from the shell.
+public class MMSession implements AutoCloseable {
+
+    private final int sessionID;
+    private final MMProcess process;
+    private final long attachedAt = System.currentTimeMillis();
+
+    private volatile MMScanSession scanSession = null;
+
+    private volatile MMResultStore results = null;
+    private volatile long resultOffset = 0;
+
+    MMSession(int sessionID, MMProcess process) {
+        this.sessionID = sessionID;
+        this.process = process;
+    }
+
+    // The PID for live processes, a negative number for snapshots and dumps
+    public int getSessionID() {
+        return sessionID;
+    }
+
+    public boolean isOffline() {
+        return sessionID < 0;
+    }
+
+    public MMProcess getProcess() {
+        return process;
+    }
+
+    public int getProcessID() {
+        return process.getProcessID();
+    }
+
+    public String getProcessName() {
+        return process.getProcessName();
+    }
+
+    public long getAttachedAt() {
+        return attachedAt;
+    }
+
+    public MMReader getMemoryReader(ForkJoinPool scanPool) {
+        return process.getMemoryReader(scanPool);
+    }
+
+    public MMScanSession getScanSession() {
+        return scanSession;
+    }
+
+    public void setScanSession(MMScanSession session) {
+        MMScanSession previousSession = scanSession;
+        scanSession = session;
+
+        if (previousSession != null && previousSession != session) {
+            previousSession.reset();
+        }
+    }
+
+    public MMResultStore getResults() {
+        return results;
+    }
+
+    // Replaces the results, closing the previous ones, and moves back to the first page
+    public synchronized void setResults(MMResultStore store) {
+        MMResultStore previousResults = results;
+        results = store;
+        resultOffset = 0;
+
+        if (previousResults != null && previousResults != store) {
+            previousResults.close();
+        }
+    }
+
+    // First result of the page shown last
+    public long getResultOffset() {
+        return resultOffset;
+    }
+
+    public void setResultOffset(long offset) {
+        resultOffset = offset;
+    }
+
+    public boolean isOpen() {
+        return process.isOpen();
+    }
+
+    // Drops the scan, the results and the watches but leaves the process open
+    void reset() {
+        setScanSession(null);
+        setResults(null);
+        process.getWatchScheduler().clear();
+    }
+
+    @Override
+    public void close() {
+        setScanSession(null);
+        setResults(null);
+        process.close();
+    }
+}
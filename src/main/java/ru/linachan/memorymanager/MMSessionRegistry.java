@@ -0,0 +1,98 @@
+package ru.linachan.memorymanager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Attached processes keyed by session ID, which is the PID for live processes. Snapshots and dumps get
+// negative IDs of their own, as the PID recorded in a file may belong to a live session or to another file.
+// Attaching a process that already has a session replaces the old one once the process is open, so no
+// handle is ever dropped without being closed and a failed attach leaves the old session as it was.
+public class MMSessionRegistry implements AutoCloseable {
+
+    private final ConcurrentMap<Integer, MMSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextOfflineID = new AtomicInteger(-1);
+
+    public MMSession open(MMProcess process, int permissions) {
+        return open(process.getProcessID(), process, permissions);
+    }
+
+    public MMSession openOffline(MMProcess process, int permissions) {
+        return open(nextOfflineID.getAndDecrement(), process, permissions);
+    }
+
+    private MMSession open(int sessionID, MMProcess process, int permissions) {
+        process.openProcess(permissions);
+
+        MMSession session = new MMSession(sessionID, process);
+        MMSession previousSession = sessions.put(sessionID, session);
+
+        if (previousSession != null && previousSession.getProcess() == process) {
+            // Same process attached again, its handle was already swapped for the new one
+            previousSession.reset();
+        } else if (previousSession != null) {
+            previousSession.close();
+        }
+
+        return session;
+    }
+
+    public MMSession get(int sessionID) {
+        return sessions.get(sessionID);
+    }
+
+    public boolean contains(int sessionID) {
+        return sessions.containsKey(sessionID);
+    }
+
+    // Sessions ordered by ID, offline ones first
+    public List<MMSession> getSessions() {
+        List<MMSession> sessionList = new ArrayList<>(sessions.values());
+        sessionList.sort(Comparator.comparingInt(MMSession::getSessionID));
+        return sessionList;
+    }
+
+    public List<MMSession> getSessions(List<Integer> sessionIDs) {
+        List<MMSession> sessionList = new ArrayList<>();
+
+        for (int sessionID: sessionIDs) {
+            MMSession session = sessions.get(sessionID);
+
+            if (session == null) {
+                throw new IllegalArgumentException(String.format("No session %d", sessionID));
+            }
+
+            sessionList.add(session);
+        }
+
+        return sessionList;
+    }
+
+    public boolean close(int sessionID) {
+        MMSession session = sessions.remove(sessionID);
+
+        if (session != null) {
+            session.close();
+        }
+
+        return session != null;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public boolean isEmpty() {
+        return sessions.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        for (int sessionID: new ArrayList<>(sessions.keySet())) {
+            close(sessionID);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.search.MMSignatureSet;
+import ru.linachan.memorymanager.utils.MMLongArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Result of a single pass over memory for a whole signature set. The search itself yields
+// every match address, matches of each signature are available once it has finished.
+public class MMSignatureScan {
+
+    private final MMSignatureSet signatures;
+    private final MMSearch search;
+
+    private volatile long[][] matches;
+
+    MMSignatureScan(MMSignatureSet signatures, MMSearch search) {
+        this.signatures = signatures;
+        this.search = search;
+    }
+
+    // Units gather (address, signature) pairs
+    List<Long> collect(MMLongArray pairs) {
+        int[] counts = new int[signatures.size()];
+
+        for (int i = 1; i < pairs.size(); i += 2) {
+            counts[(int) pairs.get(i)]++;
+        }
+
+        long[][] signatureMatches = new long[signatures.size()][];
+        for (int signature = 0; signature < signatureMatches.length; signature++) {
+            signatureMatches[signature] = new long[counts[signature]];
+            counts[signature] = 0;
+        }
+
+        long[] addresses = new long[pairs.size() / 2];
+
+        for (int i = 0; i < addresses.length; i++) {
+            int signature = (int) pairs.get(2 * i + 1);
+            addresses[i] = pairs.get(2 * i);
+            signatureMatches[signature][counts[signature]++] = addresses[i];
+        }
+
+        for (long[] signatureAddresses: signatureMatches) {
+            Arrays.sort(signatureAddresses);
+        }
+        Arrays.sort(addresses);
+
+        matches = signatureMatches;
+
+        List<Long> result = new ArrayList<>(addresses.length);
+        for (long address: addresses) {
+            result.add(address);
+        }
+
+        return result;
+    }
+
+    public MMSignatureSet getSignatures() {
+        return signatures;
+    }
+
+    public MMSearch getSearch() {
+        return search;
+    }
+
+    public MMSignatureScan join() {
+        search.join();
+        return this;
+    }
+
+    public List<Long> getMatches(int signature) {
+        long[] signatureMatches = join().matches[signature];
+        List<Long> result = new ArrayList<>(signatureMatches.length);
+
+        for (long address: signatureMatches) {
+            result.add(address);
+        }
+
+        return result;
+    }
+
+    // Matches of every signature by name, in the order of the set
+    public Map<String, List<Long>> getMatches() {
+        Map<String, List<Long>> result = new LinkedHashMap<>();
+
+        for (int signature = 0; signature < signatures.size(); signature++) {
+            result.put(signatures.getName(signature), getMatches(signature));
+        }
+
+        return result;
+    }
+}
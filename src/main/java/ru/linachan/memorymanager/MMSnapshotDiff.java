@@ -0,0 +1,116 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.backend.MMSnapshotHandle;
+import ru.linachan.memorymanager.utils.MMIntervalList;
+import ru.linachan.memorymanager.utils.MMLongArray;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+public class MMSnapshotDiff {
+
+    private static final long DIFF_UNIT_SIZE = 16 * 1024 * 1024;
+
+    private final MMSnapshotHandle before;
+    private final MMSnapshotHandle after;
+
+    private final LongAdder hashedPages = new LongAdder();
+    private final LongAdder comparedPages = new LongAdder();
+
+    public MMSnapshotDiff(MMSnapshotHandle before, MMSnapshotHandle after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    public MMIntervalList compare() {
+        return compare(ForkJoinPool.commonPool());
+    }
+
+    // Changed, added and removed pages are all reported as changed ranges
+    public MMIntervalList compare(ForkJoinPool pool) {
+        hashedPages.reset();
+        comparedPages.reset();
+
+        MMLongArray changed = pool.invoke(MMScanTask.forRegions(
+            after.queryRegions(), DIFF_UNIT_SIZE, (startAddress, endAddress, regionEnd, results) -> diffPages(startAddress, endAddress, results)
+        ));
+
+        MMLongArray removed = pool.invoke(MMScanTask.forRegions(
+            before.queryRegions(), DIFF_UNIT_SIZE, (startAddress, endAddress, regionEnd, results) -> removedPages(startAddress, endAddress, results)
+        ));
+
+        return MMIntervalList.fromPairs(changed, removed);
+    }
+
+    private void diffPages(long startAddress, long endAddress, MMLongArray results) {
+        byte[] beforePage = new byte[MMRegion.PAGE_SIZE];
+        byte[] afterPage = new byte[MMRegion.PAGE_SIZE];
+
+        int afterRegion = after.indexOf(startAddress);
+
+        for (long page = startAddress; page < endAddress; page += MMRegion.PAGE_SIZE) {
+            int beforeRegion = before.indexOf(page);
+
+            if (beforeRegion < 0) {
+                addInterval(results, page, page + MMRegion.PAGE_SIZE);
+                continue;
+            }
+
+            hashedPages.increment();
+
+            if (before.getPageHash(beforeRegion, page) == after.getPageHash(afterRegion, page)) {
+                continue;
+            }
+
+            comparedPages.increment();
+
+            before.read(page, ByteBuffer.wrap(beforePage));
+            after.read(page, ByteBuffer.wrap(afterPage));
+
+            int offset = 0;
+
+            while (offset < MMRegion.PAGE_SIZE) {
+                if (beforePage[offset] == afterPage[offset]) {
+                    offset++;
+                    continue;
+                }
+
+                int changeStart = offset;
+
+                while (offset < MMRegion.PAGE_SIZE && beforePage[offset] != afterPage[offset]) {
+                    offset++;
+                }
+
+                addInterval(results, page + changeStart, page + offset);
+            }
+        }
+    }
+
+    private void removedPages(long startAddress, long endAddress, MMLongArray results) {
+        for (long page = startAddress; page < endAddress; page += MMRegion.PAGE_SIZE) {
+            if (after.indexOf(page) < 0) {
+                addInterval(results, page, page + MMRegion.PAGE_SIZE);
+            }
+        }
+    }
+
+    private static void addInterval(MMLongArray results, long start, long end) {
+        int size = results.size();
+
+        if (size > 0 && results.get(size - 1) == start) {
+            results.set(size - 1, end);
+        } else {
+            results.add(start);
+            results.add(end);
+        }
+    }
+
+    public long getHashedPages() {
+        return hashedPages.sum();
+    }
+
+    public long getComparedPages() {
+        return comparedPages.sum();
+    }
+}
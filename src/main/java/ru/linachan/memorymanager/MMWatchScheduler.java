@@ -0,0 +1,344 @@
+package ru.linachan.memorymanager;
+
+import ru.linachan.memorymanager.search.MMValueType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Services every frozen and watched address of one process from a single thread, one batched read
+// and at most one batched write per tick
+public class MMWatchScheduler {
+
+    @FunctionalInterface
+    public interface ChangeListener {
+
+        void onChange(long address, MMValueType valueType, long previousBits, long currentBits);
+    }
+
+    public static class Entry {
+
+        private final long address;
+        private final MMValueType valueType;
+
+        private volatile boolean frozen = false;
+        private volatile long frozenBits = 0;
+
+        private volatile boolean watched = false;
+        private volatile ChangeListener listener = null;
+
+        private volatile boolean readable = false;
+        private volatile long valueBits = 0;
+        private volatile long changeCount = 0;
+
+        private Entry(long address, MMValueType valueType) {
+            this.address = address;
+            this.valueType = valueType;
+        }
+
+        public long getAddress() {
+            return address;
+        }
+
+        public MMValueType getValueType() {
+            return valueType;
+        }
+
+        public boolean isFrozen() {
+            return frozen;
+        }
+
+        public long getFrozenBits() {
+            return frozenBits;
+        }
+
+        public boolean isWatched() {
+            return watched;
+        }
+
+        public boolean isReadable() {
+            return readable;
+        }
+
+        public long getValueBits() {
+            return valueBits;
+        }
+
+        public long getChangeCount() {
+            return changeCount;
+        }
+    }
+
+    private final MMProcess process;
+
+    private static class Schedule {
+
+        private final Entry[] entries;
+        private final long[] addresses;
+        private final int[] lengths;
+        private final int valuesSize;
+
+        private Schedule(Entry[] entries) {
+            this.entries = entries;
+            this.addresses = new long[entries.length];
+            this.lengths = new int[entries.length];
+
+            int size = 0;
+            for (int i = 0; i < entries.length; i++) {
+                addresses[i] = entries[i].address;
+                lengths[i] = entries[i].valueType.size();
+                size += lengths[i];
+            }
+
+            this.valuesSize = size;
+        }
+    }
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private volatile Schedule schedule = new Schedule(new Entry[0]);
+
+    private volatile long intervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Not interrupted to stop: an interrupt would close the FileChannel used by the Linux backend
+    private volatile Thread schedulerThread = null;
+
+    private volatile long tickCount = 0;
+    private volatile long overrunCount = 0;
+    private volatile long totalTickNanos = 0;
+    private volatile long maxTickNanos = 0;
+    private volatile long totalLatencyNanos = 0;
+    private volatile long maxLatencyNanos = 0;
+
+    MMWatchScheduler(MMProcess process) {
+        this.process = process;
+    }
+
+    public synchronized void freeze(long address, MMValueType valueType, long valueBits) {
+        Entry entry = getEntry(address, valueType);
+        entry.frozenBits = valueBits;
+        entry.frozen = true;
+        update();
+    }
+
+    public synchronized void unfreeze(long address) {
+        Entry entry = entries.get(address);
+
+        if (entry != null) {
+            entry.frozen = false;
+
+            if (!entry.watched) {
+                entries.remove(address);
+            }
+
+            update();
+        }
+    }
+
+    public synchronized void watch(long address, MMValueType valueType, ChangeListener listener) {
+        Entry entry = getEntry(address, valueType);
+        entry.listener = listener;
+        entry.watched = true;
+        update();
+    }
+
+    public synchronized void unwatch(long address) {
+        if (entries.remove(address) != null) {
+            update();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        update();
+    }
+
+    public List<Entry> getEntries() {
+        return Arrays.asList(schedule.entries.clone());
+    }
+
+    public void setInterval(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid interval: %d", interval));
+        }
+
+        intervalNanos = unit.toNanos(interval);
+    }
+
+    public long getInterval(TimeUnit unit) {
+        return unit.convert(intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Entry getEntry(long address, MMValueType valueType) {
+        Entry entry = entries.get(address);
+
+        if (entry == null || entry.valueType != valueType) {
+            entry = new Entry(address, valueType);
+            entries.put(address, entry);
+        }
+
+        return entry;
+    }
+
+    private void update() {
+        List<Entry> sortedEntries = new ArrayList<>(entries.values());
+        sortedEntries.sort(Comparator.comparingLong(Entry::getAddress));
+        schedule = new Schedule(sortedEntries.toArray(new Entry[0]));
+
+        Thread currentThread = schedulerThread;
+
+        if (!entries.isEmpty() && currentThread == null) {
+            currentThread = new Thread(this::run, String.format("mm-watch-%d", process.getProcessID()));
+            currentThread.setDaemon(true);
+            schedulerThread = currentThread;
+            currentThread.start();
+        } else if (entries.isEmpty() && currentThread != null) {
+            schedulerThread = null;
+            LockSupport.unpark(currentThread);
+        }
+    }
+
+    private void run() {
+        long nextTick = System.nanoTime();
+        ByteBuffer values = ByteBuffer.allocate(0);
+
+        while (schedulerThread == Thread.currentThread()) {
+            long tickStart = System.nanoTime();
+
+            if (tickStart < nextTick) {
+                LockSupport.parkNanos(this, nextTick - tickStart);
+                continue;
+            }
+
+            Schedule tickSchedule = schedule;
+
+            if (values.capacity() < tickSchedule.valuesSize) {
+                values = ByteBuffer.allocate(tickSchedule.valuesSize).order(ByteOrder.nativeOrder());
+            }
+
+            try {
+                tick(tickSchedule, values);
+            } catch (RuntimeException ignored) {
+                // Keep servicing the other addresses, a failed tick is retried on the next one
+            }
+
+            long tickEnd = System.nanoTime();
+            long tickNanos = tickEnd - tickStart;
+            long latencyNanos = tickStart - nextTick;
+
+            tickCount++;
+            totalTickNanos += tickNanos;
+            maxTickNanos = Math.max(maxTickNanos, tickNanos);
+            totalLatencyNanos += latencyNanos;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+
+            nextTick += intervalNanos;
+
+            if (tickEnd > nextTick) {
+                // Missed ticks are dropped instead of being run back to back
+                overrunCount++;
+                nextTick = tickEnd;
+            }
+        }
+    }
+
+    private void tick(Schedule tickSchedule, ByteBuffer values) {
+        Entry[] tickEntries = tickSchedule.entries;
+        int[] lengths = tickSchedule.lengths;
+        int[] bytesRead = process.readMemory(tickSchedule.addresses, lengths, values);
+
+        long[] previousBits = new long[tickEntries.length];
+        long[] currentBits = new long[tickEntries.length];
+        boolean[] changed = new boolean[tickEntries.length];
+
+        long[] writeAddresses = new long[tickEntries.length];
+        int[] writeLengths = new int[tickEntries.length];
+        ByteBuffer writeValues = null;
+        int writeCount = 0;
+        int writeOffset = 0;
+
+        for (int i = 0, offset = 0; i < tickEntries.length; offset += lengths[i++]) {
+            Entry entry = tickEntries[i];
+
+            if (bytesRead[i] < lengths[i]) {
+                entry.readable = false;
+                continue;
+            }
+
+            currentBits[i] = entry.valueType.read(values, offset);
+
+            if (entry.readable && currentBits[i] != entry.valueBits) {
+                previousBits[i] = entry.valueBits;
+                changed[i] = true;
+                entry.changeCount++;
+            }
+
+            entry.valueBits = currentBits[i];
+            entry.readable = true;
+
+            long frozenBits = entry.frozenBits;
+
+            if (entry.frozen && currentBits[i] != frozenBits) {
+                if (writeValues == null) {
+                    writeValues = ByteBuffer.allocate(tickSchedule.valuesSize).order(ByteOrder.nativeOrder());
+                }
+
+                writeAddresses[writeCount] = entry.address;
+                writeLengths[writeCount++] = lengths[i];
+                entry.valueType.write(writeValues, writeOffset, frozenBits);
+                writeOffset += lengths[i];
+                entry.valueBits = frozenBits;
+            }
+        }
+
+        if (writeCount > 0) {
+            process.writeMemory(
+                Arrays.copyOf(writeAddresses, writeCount), Arrays.copyOf(writeLengths, writeCount), writeValues
+            );
+        }
+
+        for (int i = 0; i < tickEntries.length; i++) {
+            ChangeListener listener = tickEntries[i].listener;
+
+            if (changed[i] && tickEntries[i].watched && listener != null) {
+                try {
+                    listener.onChange(tickEntries[i].address, tickEntries[i].valueType, previousBits[i], currentBits[i]);
+                } catch (RuntimeException ignored) {
+                    // A failing listener must not stop the scheduler
+                }
+            }
+        }
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public long getAverageTickNanos() {
+        long ticks = tickCount;
+        return ticks > 0 ? totalTickNanos / ticks : 0;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    public long getAverageLatencyNanos() {
+        long ticks = tickCount;
+        return ticks > 0 ? totalLatencyNanos / ticks : 0;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+}
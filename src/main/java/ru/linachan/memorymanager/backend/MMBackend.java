@@ -0,0 +1,27 @@
+package ru.linachan.memorymanager.backend;
+
+import com.sun.jna.Platform;
+
+import java.util.Map;
+
+public interface MMBackend {
+
+    Map<Integer, String> listProcesses();
+
+    // Name of a single process without enumerating the others, null if it is not running
+    String getProcessName(int processID);
+
+    MMProcessHandle openProcess(int processID, int permissions);
+
+    static MMBackend forCurrentPlatform() {
+        if (Platform.isWindows()) {
+            return new MMWindowsBackend();
+        } else if (Platform.isLinux()) {
+            return new MMLinuxBackend();
+        }
+
+        throw new UnsupportedOperationException(
+            String.format("MemoryManager is not supported on '%s'", System.getProperty("os.name"))
+        );
+    }
+}
@@ -0,0 +1,230 @@
+package ru.linachan.memorymanager.backend;
+
+import ru.linachan.memorymanager.MMRegion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// ELF core file as written by the Linux kernel or gcore. Memory comes from the PT_LOAD program headers,
+// the process from the NT_PRPSINFO note and mapping names from the NT_FILE note where present.
+public class MMCoreDumpHandle extends MMDumpHandle {
+
+    static final int MAGIC = 0x464C457F;
+
+    private static final int ELFCLASS64 = 2;
+    private static final int ELFDATA2MSB = 2;
+    private static final int ET_CORE = 4;
+
+    private static final int PT_LOAD = 1;
+    private static final int PT_NOTE = 4;
+
+    private static final int PF_X = 0x1;
+    private static final int PF_W = 0x2;
+    private static final int PF_R = 0x4;
+
+    private static final int NT_PRPSINFO = 3;
+    private static final int NT_FILE = 0x46494C45;
+
+    // Notes larger than this are not ours to parse
+    private static final int MAX_NOTE_SIZE = 64 * 1024 * 1024;
+
+    private int processID = 0;
+    private String processName;
+
+    private final List<long[]> fileRanges = new ArrayList<>();
+    private final List<String> fileNames = new ArrayList<>();
+
+    public MMCoreDumpHandle(Path dumpPath) {
+        super(dumpPath);
+
+        try {
+            ByteBuffer ident = readFully(0, 16, ByteOrder.LITTLE_ENDIAN);
+            if (ident.getInt(0) != MAGIC) {
+                throw new IOException(String.format("%s is not an ELF file", dumpPath));
+            }
+
+            boolean wide = ident.get(4) == ELFCLASS64;
+            ByteOrder order = ident.get(5) == ELFDATA2MSB ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+            ByteBuffer header = readFully(0, wide ? 64 : 52, order);
+            if (header.getShort(16) != ET_CORE) {
+                throw new IOException(String.format("%s is not a core file", dumpPath));
+            }
+
+            long headerOffset = wide ? header.getLong(32) : header.getInt(28) & 0xFFFFFFFFL;
+            int headerSize = header.getShort(wide ? 54 : 42) & 0xFFFF;
+            int headerCount = header.getShort(wide ? 56 : 44) & 0xFFFF;
+
+            List<Segment> segments = new ArrayList<>();
+            List<long[]> loads = new ArrayList<>();
+
+            for (int i = 0; i < headerCount; i++) {
+                ByteBuffer programHeader = readFully(headerOffset + (long) i * headerSize, wide ? 56 : 32, order);
+                int type = programHeader.getInt(0);
+
+                long fileOffset;
+                long virtualAddress;
+                long fileSize;
+                int flags;
+
+                if (wide) {
+                    flags = programHeader.getInt(4);
+                    fileOffset = programHeader.getLong(8);
+                    virtualAddress = programHeader.getLong(16);
+                    fileSize = programHeader.getLong(32);
+                } else {
+                    fileOffset = programHeader.getInt(4) & 0xFFFFFFFFL;
+                    virtualAddress = programHeader.getInt(8) & 0xFFFFFFFFL;
+                    fileSize = programHeader.getInt(16) & 0xFFFFFFFFL;
+                    flags = programHeader.getInt(24);
+                }
+
+                if (type == PT_NOTE) {
+                    parseNotes(fileOffset, fileSize, wide, order);
+                } else if (type == PT_LOAD && fileSize > 0) {
+                    // Segments the kernel chose not to dump have no file size and nothing to read
+                    loads.add(new long[] {virtualAddress, fileSize, fileOffset, flags});
+                }
+            }
+
+            for (long[] load: loads) {
+                int flags = (int) load[3];
+                int protection = ((flags & PF_R) != 0 ? MMRegion.READ : 0)
+                    | ((flags & PF_W) != 0 ? MMRegion.WRITE : 0)
+                    | ((flags & PF_X) != 0 ? MMRegion.EXECUTE : 0);
+
+                segments.add(new Segment(load[0], load[1], load[2], protection, getMappingName(load[0])));
+            }
+
+            setSegments(segments);
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+
+        if (processName == null) {
+            processName = dumpPath.getFileName().toString();
+        }
+    }
+
+    private void parseNotes(long offset, long size, boolean wide, ByteOrder order) throws IOException {
+        if (size <= 0 || size > MAX_NOTE_SIZE || offset + size > dumpChannel.size()) {
+            return;
+        }
+
+        ByteBuffer notes = readFully(offset, (int) size, order);
+
+        while (notes.remaining() >= 12) {
+            int nameSize = notes.getInt();
+            int descriptorSize = notes.getInt();
+            int type = notes.getInt();
+
+            int nameLength = (nameSize + 3) & -4;
+            int descriptorLength = (descriptorSize + 3) & -4;
+
+            if (nameSize < 0 || descriptorSize < 0 || nameLength + (long) descriptorLength > notes.remaining()) {
+                break;
+            }
+
+            String name = new String(notes.array(), notes.position(), Math.max(0, nameSize - 1), StandardCharsets.US_ASCII);
+            notes.position(notes.position() + nameLength);
+
+            ByteBuffer descriptor = notes.slice().order(order);
+            descriptor.limit(descriptorSize);
+            notes.position(notes.position() + descriptorLength);
+
+            if (name.equals("CORE") && type == NT_PRPSINFO) {
+                parseProcessInfo(descriptor, wide);
+            } else if (name.equals("CORE") && type == NT_FILE) {
+                parseFiles(descriptor, wide);
+            }
+        }
+    }
+
+    // struct elf_prpsinfo: pid and the first 16 bytes of the command name
+    private void parseProcessInfo(ByteBuffer descriptor, boolean wide) {
+        int pidOffset = wide ? 24 : 12;
+        int nameOffset = wide ? 40 : 28;
+
+        if (descriptor.limit() < nameOffset + 16) {
+            return;
+        }
+
+        processID = descriptor.getInt(pidOffset);
+
+        int nameLength = 0;
+        while (nameLength < 16 && descriptor.get(nameOffset + nameLength) != 0) {
+            nameLength++;
+        }
+
+        byte[] name = new byte[nameLength];
+        for (int i = 0; i < nameLength; i++) {
+            name[i] = descriptor.get(nameOffset + i);
+        }
+
+        processName = new String(name, StandardCharsets.UTF_8);
+    }
+
+    // NT_FILE: count, page size, count x (start, end, file offset) and then count NUL-terminated paths
+    private void parseFiles(ByteBuffer descriptor, boolean wide) {
+        int wordSize = wide ? 8 : 4;
+
+        if (descriptor.limit() < 2 * wordSize) {
+            return;
+        }
+
+        long count = wide ? descriptor.getLong(0) : descriptor.getInt(0) & 0xFFFFFFFFL;
+
+        if (count < 0 || count > descriptor.limit() || 2L * wordSize + count * 3 * wordSize > descriptor.limit()) {
+            return;
+        }
+
+        int nameStart = (int) (2 * wordSize + count * 3 * wordSize);
+
+        for (int i = 0; i < count && nameStart < descriptor.limit(); i++) {
+            int entry = 2 * wordSize + i * 3 * wordSize;
+            long start = wide ? descriptor.getLong(entry) : descriptor.getInt(entry) & 0xFFFFFFFFL;
+            long end = wide ? descriptor.getLong(entry + wordSize) : descriptor.getInt(entry + wordSize) & 0xFFFFFFFFL;
+
+            int nameEnd = nameStart;
+            while (nameEnd < descriptor.limit() && descriptor.get(nameEnd) != 0) {
+                nameEnd++;
+            }
+
+            byte[] name = new byte[nameEnd - nameStart];
+            for (int j = 0; j < name.length; j++) {
+                name[j] = descriptor.get(nameStart + j);
+            }
+
+            fileRanges.add(new long[] {start, end});
+            fileNames.add(new String(name, StandardCharsets.UTF_8));
+            nameStart = nameEnd + 1;
+        }
+    }
+
+    private String getMappingName(long address) {
+        for (int i = 0; i < fileRanges.size(); i++) {
+            if (address >= fileRanges.get(i)[0] && address < fileRanges.get(i)[1]) {
+                return fileNames.get(i);
+            }
+        }
+
+        return "";
+    }
+
+    @Override
+    public int getProcessID() {
+        return processID;
+    }
+
+    @Override
+    public String getProcessName() {
+        return processName;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.linachan.memorymanager.backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+
+// Crash dump of a single process, an ELF core file or a Windows minidump told apart by their magic.
+// Dumps are read-only: writes are dropped and the process cannot be terminated.
+public class MMDumpBackend implements MMBackend {
+
+    private final Path dumpPath;
+
+    public MMDumpBackend(Path dumpPath) {
+        this.dumpPath = dumpPath;
+    }
+
+    public static boolean isDump(Path path) {
+        int magic = readMagic(path);
+        return magic == MMCoreDumpHandle.MAGIC || magic == MMMinidumpHandle.MAGIC;
+    }
+
+    private static int readMagic(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return 0;
+                }
+            }
+
+            return magic.getInt(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MMDumpHandle openDump() {
+        int magic = readMagic(dumpPath);
+
+        if (magic == MMCoreDumpHandle.MAGIC) {
+            return new MMCoreDumpHandle(dumpPath);
+        } else if (magic == MMMinidumpHandle.MAGIC) {
+            return new MMMinidumpHandle(dumpPath);
+        }
+
+        throw new IllegalArgumentException(String.format("%s is neither a core file nor a minidump", dumpPath));
+    }
+
+    @Override
+    public Map<Integer, String> listProcesses() {
+        try (MMDumpHandle dump = openDump()) {
+            return Collections.singletonMap(dump.getProcessID(), dump.getProcessName());
+        }
+    }
+
+    @Override
+    public String getProcessName(int processID) {
+        return listProcesses().get(processID);
+    }
+
+    @Override
+    public MMProcessHandle openProcess(int processID, int permissions) {
+        return openDump();
+    }
+
+    public Path getDumpPath() {
+        return dumpPath;
+    }
+}
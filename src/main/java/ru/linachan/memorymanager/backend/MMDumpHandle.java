@@ -0,0 +1,262 @@
+package ru.linachan.memorymanager.backend;
+
+import ru.linachan.memorymanager.MMRegion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Read-only memory of a crashed process, served from the segments of a dump file. Subclasses parse the
+// segment table of their format, segments are then mapped on first access in windows of at most
+// WINDOW_SIZE bytes and read from the mapping, nothing is loaded into the heap.
+public abstract class MMDumpHandle implements MMProcessHandle {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    protected static final class Segment {
+
+        private final long baseAddress;
+        private final long size;
+        private final long fileOffset;
+        private final int protection;
+        private final String mappingName;
+
+        protected Segment(long baseAddress, long size, long fileOffset, int protection, String mappingName) {
+            this.baseAddress = baseAddress;
+            this.size = size;
+            this.fileOffset = fileOffset;
+            this.protection = protection;
+            this.mappingName = mappingName;
+        }
+    }
+
+    protected final Path dumpPath;
+    protected final FileChannel dumpChannel;
+
+    private long[] baseAddresses = new long[0];
+    private long[] regionSizes = new long[0];
+    private long[] fileOffsets = new long[0];
+    private int[] protections = new int[0];
+    private String[] mappingNames = new String[0];
+    private int[] firstWindows = new int[0];
+
+    private AtomicReferenceArray<ByteBuffer> windows = new AtomicReferenceArray<>(0);
+
+    protected MMDumpHandle(Path dumpPath) {
+        this.dumpPath = dumpPath;
+
+        try {
+            dumpChannel = FileChannel.open(dumpPath, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public abstract int getProcessID();
+
+    public abstract String getProcessName();
+
+    // Installs the parsed segment table. Segments are cut to what the file holds, as dumps of crashing
+    // processes are often truncated, and those left empty are dropped.
+    protected void setSegments(List<Segment> segments) throws IOException {
+        long fileSize = dumpChannel.size();
+        List<Segment> present = new ArrayList<>();
+
+        for (Segment segment: segments) {
+            long size = segment.fileOffset >= 0 ? Math.min(segment.size, Math.max(0, fileSize - segment.fileOffset)) : 0;
+
+            if (size > 0 && segment.baseAddress + size > segment.baseAddress) {
+                present.add(new Segment(segment.baseAddress, size, segment.fileOffset, segment.protection, segment.mappingName));
+            }
+        }
+
+        present.sort(Comparator.comparingLong(segment -> segment.baseAddress));
+
+        baseAddresses = new long[present.size()];
+        regionSizes = new long[present.size()];
+        fileOffsets = new long[present.size()];
+        protections = new int[present.size()];
+        mappingNames = new String[present.size()];
+        firstWindows = new int[present.size()];
+
+        int windowCount = 0;
+
+        for (int i = 0; i < present.size(); i++) {
+            Segment segment = present.get(i);
+
+            baseAddresses[i] = segment.baseAddress;
+            regionSizes[i] = segment.size;
+            fileOffsets[i] = segment.fileOffset;
+            protections[i] = segment.protection;
+            mappingNames[i] = segment.mappingName != null ? segment.mappingName : "";
+
+            firstWindows[i] = windowCount;
+            windowCount += (int) ((segment.size + WINDOW_SIZE - 1) / WINDOW_SIZE);
+        }
+
+        windows = new AtomicReferenceArray<>(windowCount);
+    }
+
+    // Bytes taken by count entries of entrySize bytes, checked against what the table has room for before
+    // anything is allocated, as counts come straight from the file
+    protected int getTableSize(long count, int entrySize, long available) throws IOException {
+        if (count < 0 || available < 0 || count > Math.min(available, Integer.MAX_VALUE) / entrySize) {
+            throw new IOException(String.format("Corrupt table of %d entries in dump %s", count, dumpPath));
+        }
+
+        return (int) (count * entrySize);
+    }
+
+    // Lengths come straight from the file, so a corrupt table fails here rather than allocating garbage
+    protected ByteBuffer readFully(long position, int length, ByteOrder order) throws IOException {
+        if (position < 0 || length < 0 || position > dumpChannel.size() - length) {
+            throw new IOException(String.format("Unexpected end of dump %s", dumpPath));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+
+        while (buffer.hasRemaining()) {
+            if (dumpChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException(String.format("Unexpected end of dump %s", dumpPath));
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    // Window of the segment containing regionOffset, mapped when first needed. Threads racing for the
+    // same window may both map it, only one mapping is kept.
+    private ByteBuffer getWindow(int region, long regionOffset) {
+        int window = firstWindows[region] + (int) (regionOffset / WINDOW_SIZE);
+        ByteBuffer mapping = windows.get(window);
+
+        if (mapping == null) {
+            long windowOffset = regionOffset - regionOffset % WINDOW_SIZE;
+
+            try {
+                mapping = dumpChannel.map(
+                    FileChannel.MapMode.READ_ONLY, fileOffsets[region] + windowOffset,
+                    Math.min(WINDOW_SIZE, regionSizes[region] - windowOffset)
+                ).order(ByteOrder.nativeOrder());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (!windows.compareAndSet(window, null, mapping)) {
+                mapping = windows.get(window);
+            }
+        }
+
+        return mapping;
+    }
+
+    @Override
+    public List<MMRegion> queryRegions() {
+        List<MMRegion> regions = new ArrayList<>(baseAddresses.length);
+
+        for (int i = 0; i < baseAddresses.length; i++) {
+            regions.add(new MMRegion(baseAddresses[i], regionSizes[i], protections[i], mappingNames[i]));
+        }
+
+        return regions;
+    }
+
+    @Override
+    public int read(long address, ByteBuffer buffer) {
+        int bytesRead = 0;
+
+        while (buffer.hasRemaining()) {
+            int region = indexOf(address);
+            if (region < 0) {
+                break;
+            }
+
+            long regionOffset = address - baseAddresses[region];
+            int windowOffset = (int) (regionOffset % WINDOW_SIZE);
+
+            ByteBuffer window = getWindow(region, regionOffset).duplicate();
+            int length = Math.min(buffer.remaining(), window.capacity() - windowOffset);
+
+            window.limit(windowOffset + length);
+            window.position(windowOffset);
+            buffer.put(window);
+
+            bytesRead += length;
+            address += length;
+        }
+
+        return bytesRead;
+    }
+
+    @Override
+    public ByteBuffer view(long address, int length) {
+        int region = indexOf(address);
+        if (region < 0) {
+            return null;
+        }
+
+        long regionOffset = address - baseAddresses[region];
+        int windowOffset = (int) (regionOffset % WINDOW_SIZE);
+        ByteBuffer window = getWindow(region, regionOffset);
+
+        if (windowOffset + (long) length > window.capacity()) {
+            // Crosses into the next segment or window, the caller falls back to read()
+            return null;
+        }
+
+        ByteBuffer view = window.duplicate();
+        view.limit(windowOffset + length);
+        view.position(windowOffset);
+
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    public int indexOf(long address) {
+        int low = 0;
+        int high = baseAddresses.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (baseAddresses[middle] <= address) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return high >= 0 && address - baseAddresses[high] < regionSizes[high] ? high : -1;
+    }
+
+    public Path getDumpPath() {
+        return dumpPath;
+    }
+
+    @Override
+    public int write(long address, ByteBuffer buffer) {
+        return 0;
+    }
+
+    @Override
+    public void terminate() {
+        throw new UnsupportedOperationException("Dumps cannot be terminated");
+    }
+
+    @Override
+    public void close() {
+        try {
+            dumpChannel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+}
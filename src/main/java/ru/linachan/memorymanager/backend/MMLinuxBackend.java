@@ -0,0 +1,56 @@
+package ru.linachan.memorymanager.backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MMLinuxBackend implements MMBackend {
+
+    static final Path PROC = Paths.get("/proc");
+
+    @Override
+    public Map<Integer, String> listProcesses() {
+        Map<Integer, String> processes = new HashMap<>();
+
+        try (DirectoryStream<Path> procEntries = Files.newDirectoryStream(PROC, "[0-9]*")) {
+            for (Path procEntry: procEntries) {
+                try {
+                    String processName = new String(Files.readAllBytes(procEntry.resolve("comm")), StandardCharsets.UTF_8);
+                    processes.put(Integer.parseInt(procEntry.getFileName().toString()), processName.trim());
+                } catch (IOException | NumberFormatException ignored) {
+                    // Process exited while listing or is not a PID directory
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return processes;
+    }
+
+    @Override
+    public String getProcessName(int processID) {
+        try {
+            return new String(
+                Files.readAllBytes(PROC.resolve(String.valueOf(processID)).resolve("comm")), StandardCharsets.UTF_8
+            ).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public MMProcessHandle openProcess(int processID, int permissions) {
+        try {
+            return new MMLinuxProcessHandle(processID, permissions);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package ru.linachan.memorymanager.backend;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import ru.linachan.memorymanager.MMProcess;
+import ru.linachan.memorymanager.MMRegion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MMLinuxProcessHandle implements MMProcessHandle {
+
+    private static final int SIGKILL = 9;
+
+    interface CLibrary extends Library {
+        CLibrary INSTANCE = Native.load("c", CLibrary.class);
+
+        int kill(int pid, int signal);
+    }
+
+    private final int processID;
+    private final Path processPath;
+    private final boolean writable;
+
+    private volatile FileChannel processMemory;
+    private volatile boolean closed = false;
+
+    MMLinuxProcessHandle(int processID, int permissions) throws IOException {
+        this.processID = processID;
+        this.processPath = MMLinuxBackend.PROC.resolve(String.valueOf(processID));
+        this.writable = (permissions & MMProcess.PROCESS_VM_WRITE) != 0;
+        this.processMemory = openMemory();
+    }
+
+    private FileChannel openMemory() throws IOException {
+        if (writable) {
+            return FileChannel.open(processPath.resolve("mem"), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        return FileChannel.open(processPath.resolve("mem"), StandardOpenOption.READ);
+    }
+
+    // Interrupting a thread in the middle of a read or write closes the channel for every thread. The
+    // interrupted thread gets the exception, everybody else carries on with a reopened channel.
+    private synchronized FileChannel reopenMemory(FileChannel closedChannel) {
+        if (closed) {
+            throw new IllegalStateException(String.format("Handle of PID%d is closed", processID));
+        }
+
+        if (processMemory == closedChannel) {
+            try {
+                processMemory = openMemory();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return processMemory;
+    }
+
+    @Override
+    public List<MMRegion> queryRegions() {
+        List<MMRegion> memoryRegions = new ArrayList<>();
+
+        try (BufferedReader maps = Files.newBufferedReader(processPath.resolve("maps"), StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = maps.readLine()) != null) {
+                MMRegion region = parseMapping(line);
+
+                if (region != null) {
+                    memoryRegions.add(region);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return memoryRegions;
+    }
+
+    // 00400000-0040b000 r-xp 00000000 08:01 1234   /usr/bin/cat
+    private static MMRegion parseMapping(String line) {
+        int dash = line.indexOf('-');
+        int space = line.indexOf(' ', dash);
+
+        long startAddress = Long.parseUnsignedLong(line.substring(0, dash), 16);
+        long endAddress = Long.parseUnsignedLong(line.substring(dash + 1, space), 16);
+
+        // Kernel-space mappings such as [vsyscall] are not addressable through /proc/<pid>/mem
+        if (startAddress < 0 || endAddress < 0) {
+            return null;
+        }
+
+        int protection = 0;
+        protection |= line.charAt(space + 1) == 'r' ? MMRegion.READ : 0;
+        protection |= line.charAt(space + 2) == 'w' ? MMRegion.WRITE : 0;
+        protection |= line.charAt(space + 3) == 'x' ? MMRegion.EXECUTE : 0;
+        protection |= line.charAt(space + 4) == 's' ? MMRegion.SHARED : 0;
+
+        String mappingName = "";
+        int field = 0;
+
+        for (int i = space; i < line.length(); i++) {
+            if (line.charAt(i) == ' ' && i + 1 < line.length() && line.charAt(i + 1) != ' ' && ++field == 5) {
+                mappingName = line.substring(i + 1);
+                break;
+            }
+        }
+
+        return new MMRegion(startAddress, endAddress - startAddress, protection, mappingName);
+    }
+
+    @Override
+    public int read(long address, ByteBuffer buffer) {
+        FileChannel channel = processMemory;
+        int bytesRead = 0;
+
+        while (buffer.hasRemaining()) {
+            try {
+                int read = channel.read(buffer, address + bytesRead);
+                if (read <= 0) {
+                    break;
+                }
+                bytesRead += read;
+            } catch (ClosedByInterruptException e) {
+                reopenMemory(channel);
+                throw new UncheckedIOException(e);
+            } catch (ClosedChannelException e) {
+                channel = reopenMemory(channel);
+            } catch (IOException | IllegalArgumentException e) {
+                // Unmapped or unreadable page (EIO), report what was read so far
+                break;
+            }
+        }
+
+        return bytesRead;
+    }
+
+    @Override
+    public int write(long address, ByteBuffer buffer) {
+        FileChannel channel = processMemory;
+        int bytesWritten = 0;
+
+        while (buffer.hasRemaining()) {
+            try {
+                int written = channel.write(buffer, address + bytesWritten);
+                if (written <= 0) {
+                    break;
+                }
+                bytesWritten += written;
+            } catch (ClosedByInterruptException e) {
+                reopenMemory(channel);
+                throw new UncheckedIOException(e);
+            } catch (ClosedChannelException e) {
+                channel = reopenMemory(channel);
+            } catch (IOException | IllegalArgumentException | NonWritableChannelException e) {
+                // Unwritable page or handle opened without PROCESS_VM_WRITE
+                break;
+            }
+        }
+
+        return bytesWritten;
+    }
+
+    @Override
+    public void terminate() {
+        CLibrary.INSTANCE.kill(processID, SIGKILL);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+
+        try {
+            processMemory.close();
+        } catch (IOException ignored) {
+
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ru.linachan.memorymanager.backend;
+
+import ru.linachan.memorymanager.MMRegion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Windows minidump. Memory comes from the Memory64List stream of full dumps or the MemoryList stream of
+// small ones, protections from MemoryInfoList, mapping names from ModuleList and the PID from MiscInfo.
+// Without a memory info stream every range is taken to be readable and writable.
+public class MMMinidumpHandle extends MMDumpHandle {
+
+    static final int MAGIC = 0x504D444D;
+
+    private static final int MODULE_LIST_STREAM = 4;
+    private static final int MEMORY_LIST_STREAM = 5;
+    private static final int MEMORY64_LIST_STREAM = 9;
+    private static final int MISC_INFO_STREAM = 15;
+    private static final int MEMORY_INFO_LIST_STREAM = 16;
+
+    private static final int MISC1_PROCESS_ID = 0x1;
+    private static final int MODULE_ENTRY_SIZE = 108;
+    private static final int MEMORY_INFO_ENTRY_SIZE = 48;
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private int processID = 0;
+    private String processName;
+
+    private final List<long[]> moduleRanges = new ArrayList<>();
+    private final List<String> moduleNames = new ArrayList<>();
+
+    // Sorted by address as written by MiniDumpWriteDump: base, size, protection
+    private final List<long[]> memoryInfo = new ArrayList<>();
+
+    public MMMinidumpHandle(Path dumpPath) {
+        super(dumpPath);
+
+        try {
+            ByteBuffer header = readFully(0, 32, ORDER);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(String.format("%s is not a minidump", dumpPath));
+            }
+
+            long streamCount = header.getInt(8) & 0xFFFFFFFFL;
+            long directoryOffset = header.getInt(12) & 0xFFFFFFFFL;
+
+            ByteBuffer directory = readFully(
+                directoryOffset, getTableSize(streamCount, 12, dumpChannel.size() - directoryOffset), ORDER
+            );
+            long[] memoryListStream = null;
+            long[] memory64ListStream = null;
+
+            for (int i = 0; i < streamCount; i++) {
+                int type = directory.getInt(12 * i);
+                long[] location = {directory.getInt(12 * i + 8) & 0xFFFFFFFFL, directory.getInt(12 * i + 4) & 0xFFFFFFFFL};
+
+                switch (type) {
+                    case MODULE_LIST_STREAM:
+                        parseModules(location[0], location[1]);
+                        break;
+                    case MEMORY_LIST_STREAM:
+                        memoryListStream = location;
+                        break;
+                    case MEMORY64_LIST_STREAM:
+                        memory64ListStream = location;
+                        break;
+                    case MISC_INFO_STREAM:
+                        parseMiscInfo(location[0], location[1]);
+                        break;
+                    case MEMORY_INFO_LIST_STREAM:
+                        parseMemoryInfo(location[0], location[1]);
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            List<Segment> segments = new ArrayList<>();
+
+            if (memory64ListStream != null) {
+                parseMemory64List(memory64ListStream[0], memory64ListStream[1], segments);
+            } else if (memoryListStream != null) {
+                parseMemoryList(memoryListStream[0], memoryListStream[1], segments);
+            }
+
+            setSegments(segments);
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+
+        if (processName == null) {
+            processName = !moduleNames.isEmpty() ? getBaseName(moduleNames.get(0)) : dumpPath.getFileName().toString();
+        }
+    }
+
+    // Ranges are stored back to back from a common base offset
+    private void parseMemory64List(long offset, long streamSize, List<Segment> segments) throws IOException {
+        ByteBuffer list = readFully(offset, 16, ORDER);
+        long rangeCount = list.getLong(0);
+        long dataOffset = list.getLong(8);
+
+        ByteBuffer ranges = readFully(offset + 16, getTableSize(rangeCount, 16, streamSize - 16), ORDER);
+
+        for (int i = 0; i < rangeCount; i++) {
+            long baseAddress = ranges.getLong(16 * i);
+            long size = ranges.getLong(16 * i + 8);
+
+            addSegments(baseAddress, size, dataOffset, segments);
+            dataOffset += size;
+        }
+    }
+
+    private void parseMemoryList(long offset, long size, List<Segment> segments) throws IOException {
+        long rangeCount = readFully(offset, 4, ORDER).getInt(0) & 0xFFFFFFFFL;
+        ByteBuffer ranges = readFully(offset + 4, getTableSize(rangeCount, 16, size - 4), ORDER);
+
+        for (int i = 0; i < rangeCount; i++) {
+            addSegments(
+                ranges.getLong(16 * i), ranges.getInt(16 * i + 8) & 0xFFFFFFFFL,
+                ranges.getInt(16 * i + 12) & 0xFFFFFFFFL, segments
+            );
+        }
+    }
+
+    // A dumped range may span several allocations, it is split wherever the memory info changes
+    private void addSegments(long baseAddress, long size, long fileOffset, List<Segment> segments) {
+        long address = baseAddress;
+        long endAddress = baseAddress + size;
+
+        while (address < endAddress) {
+            long[] info = findMemoryInfo(address);
+            long pieceEnd = info != null ? Math.min(endAddress, info[0] + info[1]) : endAddress;
+            int protection = info != null ? (int) info[2] : MMRegion.READ | MMRegion.WRITE;
+
+            segments.add(new Segment(
+                address, pieceEnd - address, fileOffset + (address - baseAddress), protection, getMappingName(address)
+            ));
+
+            address = pieceEnd;
+        }
+    }
+
+    private long[] findMemoryInfo(long address) {
+        int low = 0;
+        int high = memoryInfo.size() - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (memoryInfo.get(middle)[0] <= address) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return high >= 0 && address - memoryInfo.get(high)[0] < memoryInfo.get(high)[1] ? memoryInfo.get(high) : null;
+    }
+
+    private void parseMemoryInfo(long offset, long size) throws IOException {
+        ByteBuffer listHeader = readFully(offset, 16, ORDER);
+        int headerSize = listHeader.getInt(0);
+        int entrySize = listHeader.getInt(4);
+        long entryCount = listHeader.getLong(8);
+
+        if (headerSize < 16 || entrySize < MEMORY_INFO_ENTRY_SIZE) {
+            return;
+        }
+
+        ByteBuffer entries = readFully(offset + headerSize, getTableSize(entryCount, entrySize, size - headerSize), ORDER);
+
+        for (int entry = 0; entry < entries.limit(); entry += entrySize) {
+            long baseAddress = entries.getLong(entry);
+            long regionSize = entries.getLong(entry + 24);
+            int protect = entries.getInt(entry + 36);
+            int type = entries.getInt(entry + 40);
+
+            memoryInfo.add(new long[] {baseAddress, regionSize, MMWindowsProtection.toProtection(protect, type)});
+        }
+
+        memoryInfo.sort((first, second) -> Long.compare(first[0], second[0]));
+    }
+
+    private void parseModules(long offset, long size) throws IOException {
+        long moduleCount = readFully(offset, 4, ORDER).getInt(0) & 0xFFFFFFFFL;
+        ByteBuffer modules = readFully(offset + 4, getTableSize(moduleCount, MODULE_ENTRY_SIZE, size - 4), ORDER);
+
+        for (int entry = 0; entry < modules.limit(); entry += MODULE_ENTRY_SIZE) {
+            long baseAddress = modules.getLong(entry);
+            long imageSize = modules.getInt(entry + 8) & 0xFFFFFFFFL;
+            long nameOffset = modules.getInt(entry + 20) & 0xFFFFFFFFL;
+
+            moduleRanges.add(new long[] {baseAddress, baseAddress + imageSize});
+            moduleNames.add(readString(nameOffset));
+        }
+    }
+
+    // MINIDUMP_STRING: byte length followed by UTF-16LE characters
+    private String readString(long offset) throws IOException {
+        int length = readFully(offset, 4, ORDER).getInt(0);
+        return new String(readFully(offset + 4, length, ORDER).array(), StandardCharsets.UTF_16LE);
+    }
+
+    private void parseMiscInfo(long offset, long size) throws IOException {
+        if (size < 12) {
+            return;
+        }
+
+        ByteBuffer miscInfo = readFully(offset, 12, ORDER);
+
+        if ((miscInfo.getInt(4) & MISC1_PROCESS_ID) != 0) {
+            processID = miscInfo.getInt(8);
+        }
+    }
+
+    private String getMappingName(long address) {
+        for (int i = 0; i < moduleRanges.size(); i++) {
+            if (address >= moduleRanges.get(i)[0] && address < moduleRanges.get(i)[1]) {
+                return moduleNames.get(i);
+            }
+        }
+
+        return "";
+    }
+
+    private static String getBaseName(String path) {
+        return path.substring(Math.max(path.lastIndexOf('\\'), path.lastIndexOf('/')) + 1);
+    }
+
+    @Override
+    public int getProcessID() {
+        return processID;
+    }
+
+    @Override
+    public String getProcessName() {
+        return processName;
+    }
+}
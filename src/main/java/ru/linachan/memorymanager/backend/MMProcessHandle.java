@@ -0,0 +1,28 @@
+package ru.linachan.memorymanager.backend;
+
+import ru.linachan.memorymanager.MMRegion;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public interface MMProcessHandle extends AutoCloseable {
+
+    List<MMRegion> queryRegions();
+
+    // Reads buffer.remaining() bytes starting at address into buffer, advancing its position.
+    // Returns the number of bytes actually read, which is short if the range is not fully readable.
+    int read(long address, ByteBuffer buffer);
+
+    // Native-order view of length readable bytes at address for sources that already hold memory in a
+    // buffer, such as a mapped dump file. Null when the range has to be copied with read().
+    default ByteBuffer view(long address, int length) {
+        return null;
+    }
+
+    int write(long address, ByteBuffer buffer);
+
+    void terminate();
+
+    @Override
+    void close();
+}
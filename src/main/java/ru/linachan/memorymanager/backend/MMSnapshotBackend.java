@@ -0,0 +1,202 @@
+package ru.linachan.memorymanager.backend;
+
+import ru.linachan.memorymanager.MMProcess;
+import ru.linachan.memorymanager.MMRegion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Snapshot file layout, little-endian:
+//   int magic, int version, int processID, int regionCount, short nameLength, byte[] name
+//   regionCount x (long baseAddress, long regionSize, int protection, short nameLength, byte[] mappingName)
+//   long pageHash for every page of every region, in region order
+//   region data, each region starting at a page-aligned file offset
+public class MMSnapshotBackend implements MMBackend {
+
+    static final int MAGIC = 0x50534D4D;
+    static final int VERSION = 2;
+
+    private static final long HASH_PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long HASH_PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long HASH_PRIME_3 = 0x165667B19E3779F9L;
+
+    static final long ZERO_PAGE_HASH = hashPage(ByteBuffer.allocate(MMRegion.PAGE_SIZE), 0, MMRegion.PAGE_SIZE);
+
+    private final Path snapshotPath;
+
+    public MMSnapshotBackend(Path snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
+
+    @Override
+    public Map<Integer, String> listProcesses() {
+        try (MMSnapshotHandle snapshot = new MMSnapshotHandle(snapshotPath)) {
+            return Collections.singletonMap(snapshot.getProcessID(), snapshot.getProcessName());
+        }
+    }
+
+    @Override
+    public String getProcessName(int processID) {
+        return listProcesses().get(processID);
+    }
+
+    @Override
+    public MMProcessHandle openProcess(int processID, int permissions) {
+        return new MMSnapshotHandle(snapshotPath);
+    }
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public static long capture(MMProcess process, Path snapshotPath) throws IOException {
+        List<MMRegion> regions = process.queryPages();
+
+        byte[] processName = process.getProcessName().getBytes(StandardCharsets.UTF_8);
+        byte[][] mappingNames = new byte[regions.size()][];
+
+        int indexSize = 18 + processName.length;
+        int pageCount = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            String mappingName = regions.get(i).getMappingName();
+            mappingNames[i] = (mappingName != null ? mappingName : "").getBytes(StandardCharsets.UTF_8);
+            indexSize += 22 + mappingNames[i].length;
+            pageCount += pageCount(regions.get(i).getRegionSize());
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(indexSize).order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(MAGIC).putInt(VERSION).putInt(process.getProcessID()).putInt(regions.size());
+        index.putShort((short) processName.length).put(processName);
+
+        for (int i = 0; i < regions.size(); i++) {
+            MMRegion region = regions.get(i);
+            index.putLong(region.getBaseAddress()).putLong(region.getRegionSize()).putInt(region.getProtection());
+            index.putShort((short) mappingNames[i].length).put(mappingNames[i]);
+        }
+
+        index.flip();
+
+        long[] pageHashes = new long[pageCount];
+        Arrays.fill(pageHashes, ZERO_PAGE_HASH);
+
+        try (FileChannel output = FileChannel.open(
+            snapshotPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            writeFully(output, index, 0);
+
+            long dataOffset = alignToPage(indexSize + 8L * pageCount);
+            int regionPage = 0;
+
+            for (MMRegion region: regions) {
+                long regionOffset = dataOffset;
+                int firstPage = regionPage;
+
+                try {
+                    process.streamMemory(region.getBaseAddress(), region.getEndAddress(), 0, (chunkAddress, chunk, startLimit) -> {
+                        int page = firstPage + (int) ((chunkAddress - region.getBaseAddress()) / MMRegion.PAGE_SIZE);
+                        hashPages(chunk, pageHashes, page);
+
+                        try {
+                            writeFully(output, chunk, regionOffset + (chunkAddress - region.getBaseAddress()));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+
+                dataOffset = alignToPage(dataOffset + region.getRegionSize());
+                regionPage += pageCount(region.getRegionSize());
+            }
+
+            ByteBuffer hashes = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            long hashOffset = indexSize;
+
+            for (long pageHash: pageHashes) {
+                hashes.putLong(pageHash);
+
+                if (!hashes.hasRemaining()) {
+                    hashes.flip();
+                    hashOffset += writeFully(output, hashes, hashOffset);
+                    hashes.clear();
+                }
+            }
+
+            hashes.flip();
+            writeFully(output, hashes, hashOffset);
+
+            // Unreadable pages are left as holes, make sure the file covers the last region
+            if (output.size() < dataOffset) {
+                output.write(ByteBuffer.allocate(1), dataOffset - 1);
+            }
+
+            return dataOffset;
+        }
+    }
+
+    private static int writeFully(FileChannel output, ByteBuffer data, long position) throws IOException {
+        int bytesWritten = 0;
+
+        while (data.hasRemaining()) {
+            bytesWritten += output.write(data, position + bytesWritten);
+        }
+
+        return bytesWritten;
+    }
+
+    private static void hashPages(ByteBuffer chunk, long[] pageHashes, int firstPage) {
+        ByteBuffer data = chunk.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int page = firstPage;
+
+        for (int offset = data.position(); offset < data.limit(); offset += MMRegion.PAGE_SIZE) {
+            int length = Math.min(MMRegion.PAGE_SIZE, data.limit() - offset);
+
+            if (length == MMRegion.PAGE_SIZE) {
+                pageHashes[page++] = hashPage(data, offset, length);
+            } else {
+                // Partially readable page, the rest of it is stored as zeros
+                ByteBuffer lastPage = ByteBuffer.allocate(MMRegion.PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                data.position(offset);
+                lastPage.put(data);
+                pageHashes[page++] = hashPage(lastPage, 0, MMRegion.PAGE_SIZE);
+            }
+        }
+    }
+
+    static long hashPage(ByteBuffer data, int offset, int length) {
+        long hash = HASH_PRIME_3 ^ length;
+        int index = 0;
+
+        for (; index + 8 <= length; index += 8) {
+            hash = Long.rotateLeft(hash ^ data.getLong(offset + index) * HASH_PRIME_1, 31) * HASH_PRIME_2;
+        }
+
+        for (; index < length; index++) {
+            hash = (hash ^ (data.get(offset + index) & 0xFF)) * HASH_PRIME_1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= HASH_PRIME_2;
+        hash ^= hash >>> 29;
+        return hash;
+    }
+
+    static int pageCount(long regionSize) {
+        return (int) ((regionSize + MMRegion.PAGE_SIZE - 1) / MMRegion.PAGE_SIZE);
+    }
+
+    static long alignToPage(long offset) {
+        return (offset + MMRegion.PAGE_SIZE - 1) & -MMRegion.PAGE_SIZE;
+    }
+}
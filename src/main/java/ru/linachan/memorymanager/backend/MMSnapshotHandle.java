@@ -0,0 +1,224 @@
+package ru.linachan.memorymanager.backend;
+
+import ru.linachan.memorymanager.MMRegion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MMSnapshotHandle implements MMProcessHandle {
+
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final FileChannel snapshotChannel;
+
+    private final int processID;
+    private final String processName;
+
+    private final long[] baseAddresses;
+    private final long[] regionSizes;
+    private final int[] protections;
+    private final String[] mappingNames;
+    private final long[] dataOffsets;
+    private final int[] firstPages;
+
+    private final LongBuffer pageHashes;
+
+    private final long dataStart;
+    private final MappedByteBuffer[] segments;
+
+    public MMSnapshotHandle(Path snapshotPath) {
+        try {
+            snapshotChannel = FileChannel.open(snapshotPath, StandardOpenOption.READ);
+
+            ByteBuffer header = readFully(0, 16);
+            if (header.getInt() != MMSnapshotBackend.MAGIC) {
+                throw new IOException(String.format("%s is not a memory snapshot", snapshotPath));
+            }
+
+            int version = header.getInt();
+            if (version != MMSnapshotBackend.VERSION) {
+                throw new IOException(String.format("Unsupported snapshot version: %d", version));
+            }
+
+            processID = header.getInt();
+            int regionCount = header.getInt();
+
+            long indexOffset = 16;
+            int nameLength = readFully(indexOffset, 2).getShort() & 0xFFFF;
+            processName = new String(readFully(indexOffset + 2, nameLength).array(), StandardCharsets.UTF_8);
+            indexOffset += 2 + nameLength;
+
+            baseAddresses = new long[regionCount];
+            regionSizes = new long[regionCount];
+            protections = new int[regionCount];
+            mappingNames = new String[regionCount];
+            dataOffsets = new long[regionCount];
+            firstPages = new int[regionCount];
+
+            for (int i = 0; i < regionCount; i++) {
+                ByteBuffer entry = readFully(indexOffset, 22);
+                baseAddresses[i] = entry.getLong();
+                regionSizes[i] = entry.getLong();
+                protections[i] = entry.getInt();
+
+                int mappingLength = entry.getShort() & 0xFFFF;
+                mappingNames[i] = new String(readFully(indexOffset + 22, mappingLength).array(), StandardCharsets.UTF_8);
+                indexOffset += 22 + mappingLength;
+            }
+
+            int pageCount = 0;
+            for (int i = 0; i < regionCount; i++) {
+                firstPages[i] = pageCount;
+                pageCount += MMSnapshotBackend.pageCount(regionSizes[i]);
+            }
+
+            pageHashes = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, indexOffset, 8L * pageCount)
+                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+            dataStart = MMSnapshotBackend.alignToPage(indexOffset + 8L * pageCount);
+
+            long dataOffset = dataStart;
+            for (int i = 0; i < regionCount; i++) {
+                dataOffsets[i] = dataOffset;
+                dataOffset = MMSnapshotBackend.alignToPage(dataOffset + regionSizes[i]);
+            }
+
+            if (snapshotChannel.size() < dataOffset) {
+                throw new IOException(String.format("Snapshot %s is truncated", snapshotPath));
+            }
+
+            segments = new MappedByteBuffer[(int) ((dataOffset - dataStart + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long segmentOffset = dataStart + (long) i * SEGMENT_SIZE;
+                segments[i] = snapshotChannel.map(
+                    FileChannel.MapMode.READ_ONLY, segmentOffset, Math.min(SEGMENT_SIZE, dataOffset - segmentOffset)
+                );
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.hasRemaining()) {
+            if (snapshotChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    public int getProcessID() {
+        return processID;
+    }
+
+    public String getProcessName() {
+        return processName;
+    }
+
+    // Hash of the page containing address as computed during capture, region is the index returned by indexOf
+    public long getPageHash(int region, long address) {
+        return pageHashes.get(firstPages[region] + (int) ((address - baseAddresses[region]) / MMRegion.PAGE_SIZE));
+    }
+
+    @Override
+    public List<MMRegion> queryRegions() {
+        List<MMRegion> regions = new ArrayList<>(baseAddresses.length);
+
+        for (int i = 0; i < baseAddresses.length; i++) {
+            regions.add(new MMRegion(baseAddresses[i], regionSizes[i], protections[i], mappingNames[i]));
+        }
+
+        return regions;
+    }
+
+    @Override
+    public int read(long address, ByteBuffer buffer) {
+        int bytesRead = 0;
+
+        while (buffer.hasRemaining()) {
+            int region = indexOf(address);
+            if (region < 0) {
+                break;
+            }
+
+            long regionOffset = address - baseAddresses[region];
+            int length = (int) Math.min(buffer.remaining(), regionSizes[region] - regionOffset);
+
+            copy(dataOffsets[region] + regionOffset - dataStart, buffer, length);
+
+            bytesRead += length;
+            address += length;
+        }
+
+        return bytesRead;
+    }
+
+    private void copy(long dataOffset, ByteBuffer buffer, int length) {
+        while (length > 0) {
+            int segmentOffset = (int) (dataOffset % SEGMENT_SIZE);
+            int segmentLength = Math.min(length, SEGMENT_SIZE - segmentOffset);
+
+            ByteBuffer segment = segments[(int) (dataOffset / SEGMENT_SIZE)].duplicate();
+            segment.limit(segmentOffset + segmentLength);
+            segment.position(segmentOffset);
+            buffer.put(segment);
+
+            dataOffset += segmentLength;
+            length -= segmentLength;
+        }
+    }
+
+    public int indexOf(long address) {
+        int low = 0;
+        int high = baseAddresses.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (baseAddresses[middle] <= address) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return high >= 0 && address - baseAddresses[high] < regionSizes[high] ? high : -1;
+    }
+
+    @Override
+    public int write(long address, ByteBuffer buffer) {
+        return 0;
+    }
+
+    @Override
+    public void terminate() {
+        throw new UnsupportedOperationException("Snapshots cannot be terminated");
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (snapshotChannel != null) {
+                snapshotChannel.close();
+            }
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.linachan.memorymanager.backend;
+
+import com.sun.jna.Native;
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.Psapi;
+import com.sun.jna.platform.win32.Tlhelp32;
+import com.sun.jna.platform.win32.WinDef;
+import com.sun.jna.platform.win32.WinNT;
+import ru.linachan.memorymanager.MMProcess;
+import ru.linachan.memorymanager.MMRegion;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class MMWindowsBackend implements MMBackend {
+
+    static final Kernel32 kernel32 = Kernel32.INSTANCE;
+
+    @Override
+    public Map<Integer, String> listProcesses() {
+        Map<Integer, String> processes = new HashMap<>();
+        WinNT.HANDLE snapshot = null;
+
+        try {
+            snapshot = kernel32.CreateToolhelp32Snapshot(Tlhelp32.TH32CS_SNAPPROCESS, new WinDef.DWORD(0));
+            Tlhelp32.PROCESSENTRY32 entry = new Tlhelp32.PROCESSENTRY32();
+            kernel32.Process32First(snapshot, entry);
+
+            do {
+                processes.put(entry.th32ProcessID.intValue(), Native.toString(entry.szExeFile));
+            } while(kernel32.Process32Next(snapshot, entry));
+        } finally {
+            kernel32.CloseHandle(snapshot);
+        }
+
+        return processes;
+    }
+
+    @Override
+    public String getProcessName(int processID) {
+        WinNT.HANDLE process = kernel32.OpenProcess(MMProcess.PROCESS_QUERY_INFO | MMProcess.PROCESS_VM_READ, false, processID);
+
+        if (process == null) {
+            return null;
+        }
+
+        try {
+            char[] imagePath = new char[1024];
+            int pathLength = Psapi.INSTANCE.GetModuleFileNameExW(process, null, imagePath, imagePath.length);
+
+            return pathLength > 0 ? MMRegion.getModuleName(new String(imagePath, 0, pathLength)) : null;
+        } finally {
+            kernel32.CloseHandle(process);
+        }
+    }
+
+    @Override
+    public MMProcessHandle openProcess(int processID, int permissions) {
+        return new MMWindowsProcessHandle(kernel32.OpenProcess(permissions, true, processID));
+    }
+}
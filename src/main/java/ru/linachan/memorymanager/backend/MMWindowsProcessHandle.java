@@ -0,0 +1,132 @@
+package ru.linachan.memorymanager.backend;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.BaseTSD;
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.Psapi;
+import com.sun.jna.platform.win32.WinBase;
+import com.sun.jna.platform.win32.WinDef;
+import com.sun.jna.platform.win32.WinError;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.ptr.IntByReference;
+import ru.linachan.memorymanager.MMRegion;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.sun.jna.platform.win32.WinNT.*;
+
+public class MMWindowsProcessHandle implements MMProcessHandle {
+
+    private final WinNT.HANDLE processHandle;
+
+    private final long processMinAddress;
+    private final long processMaxAddress;
+
+    static final Kernel32 kernel32 = Kernel32.INSTANCE;
+
+    MMWindowsProcessHandle(WinNT.HANDLE processHandle) {
+        this.processHandle = processHandle;
+
+        WinBase.SYSTEM_INFO info =  new WinBase.SYSTEM_INFO();
+        kernel32.GetSystemInfo(info);
+
+        processMinAddress = Pointer.nativeValue(info.lpMinimumApplicationAddress);
+        processMaxAddress = Pointer.nativeValue(info.lpMaximumApplicationAddress);
+    }
+
+    @Override
+    public List<MMRegion> queryRegions() {
+        List<MMRegion> memoryRegions = new ArrayList<>();
+
+        WinNT.MEMORY_BASIC_INFORMATION memoryInfo = new WinNT.MEMORY_BASIC_INFORMATION();
+        BaseTSD.SIZE_T memoryInfoSize = new BaseTSD.SIZE_T(memoryInfo.size());
+        Map<Long, String> moduleNames = new HashMap<>();
+
+        long address = processMinAddress;
+
+        while (address < processMaxAddress) {
+            BaseTSD.SIZE_T queried = kernel32.VirtualQueryEx(
+                processHandle, new Pointer(address), memoryInfo, memoryInfoSize
+            );
+
+            if (queried.longValue() == 0) {
+                break;
+            }
+
+            long regionSize = memoryInfo.regionSize.longValue();
+
+            if (memoryInfo.state.intValue() == MEM_COMMIT) {
+                String mappingName = memoryInfo.type.intValue() == MMWindowsProtection.MEM_IMAGE
+                    ? moduleNames.computeIfAbsent(Pointer.nativeValue(memoryInfo.allocationBase), this::getModuleName)
+                    : "";
+
+                int protection = MMWindowsProtection.toProtection(memoryInfo.protect.intValue(), memoryInfo.type.intValue());
+                memoryRegions.add(new MMRegion(address, regionSize, protection, mappingName));
+            }
+
+            address += regionSize;
+        }
+
+        return memoryRegions;
+    }
+
+    private String getModuleName(long moduleBase) {
+        WinDef.HMODULE module = new WinDef.HMODULE();
+        module.setPointer(new Pointer(moduleBase));
+
+        char[] moduleName = new char[1024];
+        int nameLength = Psapi.INSTANCE.GetModuleFileNameExW(processHandle, module, moduleName, moduleName.length);
+
+        return new String(moduleName, 0, nameLength);
+    }
+
+    @Override
+    public int read(long address, ByteBuffer buffer) {
+        IntByReference read = new IntByReference(0);
+        int bytesToRead = buffer.remaining();
+
+        boolean success = kernel32.ReadProcessMemory(
+            processHandle, new Pointer(address), Native.getDirectBufferPointer(buffer).share(buffer.position()), bytesToRead, read
+        );
+
+        // Only a partial copy leaves a meaningful count behind, any other failure copied nothing
+        if (!success && Native.getLastError() != WinError.ERROR_PARTIAL_COPY) {
+            return 0;
+        }
+
+        buffer.position(buffer.position() + read.getValue());
+        return read.getValue();
+    }
+
+    @Override
+    public int write(long address, ByteBuffer buffer) {
+        IntByReference write = new IntByReference(0);
+        int bytesToWrite = buffer.remaining();
+
+        boolean success = kernel32.WriteProcessMemory(
+            processHandle, new Pointer(address), Native.getDirectBufferPointer(buffer).share(buffer.position()), bytesToWrite, write
+        );
+
+        if (!success && Native.getLastError() != WinError.ERROR_PARTIAL_COPY) {
+            return 0;
+        }
+
+        buffer.position(buffer.position() + write.getValue());
+        return write.getValue();
+    }
+
+    @Override
+    public void terminate() {
+        kernel32.TerminateProcess(processHandle, 0);
+    }
+
+    @Override
+    public void close() {
+        kernel32.CloseHandle(processHandle);
+    }
+}
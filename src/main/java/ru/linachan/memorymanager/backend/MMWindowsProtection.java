@@ -0,0 +1,57 @@
+package ru.linachan.memorymanager.backend;
+
+import ru.linachan.memorymanager.MMRegion;
+
+import static com.sun.jna.platform.win32.WinNT.*;
+
+// Translation of VirtualQuery protection flags, shared by live processes and minidumps. Kept apart from
+// MMWindowsProcessHandle so that reading a minidump on another platform does not load kernel32.
+final class MMWindowsProtection {
+
+    static final int PAGE_EXECUTE_WRITECOPY = 0x80;
+    static final int MEM_MAPPED = 0x40000;
+    static final int MEM_IMAGE = 0x1000000;
+
+    private MMWindowsProtection() {}
+
+    static int toProtection(int protect, int type) {
+        if ((protect & PAGE_GUARD) != 0) {
+            return 0;
+        }
+
+        int protection;
+
+        switch (protect & 0xFF) {
+            case PAGE_READONLY:
+                protection = MMRegion.READ;
+                break;
+            case PAGE_READWRITE:
+                protection = MMRegion.READ | MMRegion.WRITE;
+                break;
+            case PAGE_WRITECOPY:
+                protection = MMRegion.READ | MMRegion.WRITE | MMRegion.WRITECOPY;
+                break;
+            case PAGE_EXECUTE:
+                protection = MMRegion.EXECUTE;
+                break;
+            case PAGE_EXECUTE_READ:
+                protection = MMRegion.READ | MMRegion.EXECUTE;
+                break;
+            case PAGE_EXECUTE_READWRITE:
+                protection = MMRegion.READ | MMRegion.WRITE | MMRegion.EXECUTE;
+                break;
+            case PAGE_EXECUTE_WRITECOPY:
+                protection = MMRegion.READ | MMRegion.WRITE | MMRegion.EXECUTE | MMRegion.WRITECOPY;
+                break;
+            default:
+                protection = 0;
+                break;
+        }
+
+        if (type == MEM_MAPPED) {
+            protection |= MMRegion.SHARED;
+        }
+
+        return protection;
+    }
+}
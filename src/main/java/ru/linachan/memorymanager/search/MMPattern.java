@@ -0,0 +1,274 @@
+package ru.linachan.memorymanager.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class MMPattern {
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // Below this shift Horspool degenerates into a byte-by-byte scan and SWAR anchor search wins
+    private static final int MIN_HORSPOOL_SHIFT = 8;
+
+    private static final byte EXACT = (byte) 0xFF;
+    private static final byte WILDCARD = 0x00;
+
+    // Byte i of memory matches when (memory & masks[i]) == patternBytes[i], patternBytes are kept pre-masked
+    private final byte[] patternBytes;
+    private final byte[] masks;
+
+    private final int[] fixedOffsets;
+    private final byte[] fixedBytes;
+    private final byte[] fixedMasks;
+
+    private final int anchorOffset;
+    private final long anchorWord;
+    private final long anchorMask;
+
+    private final int[] shiftTable;
+    private final boolean useHorspool;
+
+    private MMPattern(byte[] patternBytes, byte[] masks) {
+        this.patternBytes = patternBytes;
+        this.masks = masks;
+
+        int fixedCount = 0;
+        for (int i = 0; i < patternBytes.length; i++) {
+            patternBytes[i] &= masks[i];
+            fixedCount += masks[i] == WILDCARD ? 0 : 1;
+        }
+
+        if (fixedCount == 0) {
+            throw new IllegalArgumentException("Pattern must contain at least one fixed byte");
+        }
+
+        fixedOffsets = new int[fixedCount];
+        fixedBytes = new byte[fixedCount];
+        fixedMasks = new byte[fixedCount];
+
+        int anchor = -1;
+
+        for (int i = 0, j = 0; i < patternBytes.length; i++) {
+            if (masks[i] != WILDCARD) {
+                fixedOffsets[j] = i;
+                fixedMasks[j] = masks[i];
+                fixedBytes[j++] = patternBytes[i];
+
+                // 0x00 and 0xFF flood process memory, prefer anything else as the scan anchor
+                if (anchor < 0 || (isCommonByte(patternBytes[anchor]) && !isCommonByte(patternBytes[i]))) {
+                    anchor = i;
+                }
+            }
+        }
+
+        anchorOffset = anchor;
+        anchorWord = (patternBytes[anchor] & 0xFFL) * LOW_BITS;
+        anchorMask = (masks[anchor] & 0xFFL) * LOW_BITS;
+
+        int lastIndex = patternBytes.length - 1;
+        int defaultShift = patternBytes.length;
+
+        for (int i = 0; i < lastIndex; i++) {
+            if (masks[i] == WILDCARD) {
+                defaultShift = lastIndex - i;
+            }
+        }
+
+        shiftTable = new int[256];
+        Arrays.fill(shiftTable, defaultShift);
+
+        for (int i = 0; i < lastIndex; i++) {
+            if (masks[i] == EXACT) {
+                shiftTable[patternBytes[i] & 0xFF] = Math.min(shiftTable[patternBytes[i] & 0xFF], lastIndex - i);
+            } else if (masks[i] != WILDCARD) {
+                for (int value = 0; value < 256; value++) {
+                    if ((byte) (value & masks[i]) == patternBytes[i]) {
+                        shiftTable[value] = Math.min(shiftTable[value], lastIndex - i);
+                    }
+                }
+            }
+        }
+
+        useHorspool = masks[lastIndex] != WILDCARD && defaultShift >= MIN_HORSPOOL_SHIFT;
+    }
+
+    public static MMPattern of(byte[] patternBytes) {
+        if (patternBytes.length == 0) {
+            throw new IllegalArgumentException("Pattern is empty");
+        }
+
+        byte[] masks = new byte[patternBytes.length];
+        Arrays.fill(masks, EXACT);
+
+        return new MMPattern(patternBytes.clone(), masks);
+    }
+
+    // Only the bits set in masks[i] of memory byte i are compared, a zero mask makes the byte a wildcard
+    public static MMPattern of(byte[] patternBytes, byte[] masks) {
+        if (patternBytes.length == 0) {
+            throw new IllegalArgumentException("Pattern is empty");
+        }
+
+        if (masks.length != patternBytes.length) {
+            throw new IllegalArgumentException(String.format(
+                "Pattern has %d bytes but %d masks", patternBytes.length, masks.length
+            ));
+        }
+
+        return new MMPattern(patternBytes.clone(), masks.clone());
+    }
+
+    // Parses signatures like "48 8B ?? ?? 89", where '?' or '??' matches any byte, "4?" and "?8" match
+    // one nibble and "41&DF" compares only the bits of the mask after '&'
+    public static MMPattern parse(String signature) {
+        String[] tokens = signature.trim().split("\\s+");
+
+        if (tokens.length == 0 || tokens[0].isEmpty()) {
+            throw new IllegalArgumentException("Pattern is empty");
+        }
+
+        byte[] patternBytes = new byte[tokens.length];
+        byte[] masks = new byte[tokens.length];
+
+        for (int i = 0; i < tokens.length; i++) {
+            String[] parts = tokens[i].split("&", -1);
+
+            if (tokens[i].equals("?") || tokens[i].equals("??")) {
+                masks[i] = WILDCARD;
+            } else if (tokens[i].matches("[0-9A-Fa-f]\\?")) {
+                patternBytes[i] = (byte) (Character.digit(tokens[i].charAt(0), 16) << 4);
+                masks[i] = (byte) 0xF0;
+            } else if (tokens[i].matches("\\?[0-9A-Fa-f]")) {
+                patternBytes[i] = (byte) Character.digit(tokens[i].charAt(1), 16);
+                masks[i] = 0x0F;
+            } else if (parts.length <= 2 && isHexByte(parts[0]) && (parts.length == 1 || isHexByte(parts[1]))) {
+                patternBytes[i] = (byte) Integer.parseInt(parts[0], 16);
+                masks[i] = parts.length == 1 ? EXACT : (byte) Integer.parseInt(parts[1], 16);
+            } else {
+                throw new IllegalArgumentException(String.format("Invalid pattern byte: '%s'", tokens[i]));
+            }
+        }
+
+        return new MMPattern(patternBytes, masks);
+    }
+
+    private static boolean isHexByte(String token) {
+        return token.matches("[0-9A-Fa-f]{1,2}");
+    }
+
+    public int length() {
+        return patternBytes.length;
+    }
+
+    byte getByte(int index) {
+        return patternBytes[index];
+    }
+
+    boolean isExact(int index) {
+        return masks[index] == EXACT;
+    }
+
+    public boolean matches(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < fixedOffsets.length; i++) {
+            if ((buffer.get(offset + fixedOffsets[i]) & fixedMasks[i]) != fixedBytes[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Reports every offset in [0, startLimit) of buffer at which the whole pattern fits before its limit and matches
+    public void search(ByteBuffer buffer, int startLimit, IntConsumer consumer) {
+        int lastStart = Math.min(startLimit, buffer.limit() - patternBytes.length + 1);
+
+        if (lastStart <= 0) {
+            return;
+        }
+
+        if (useHorspool) {
+            searchHorspool(buffer, lastStart, consumer);
+        } else {
+            searchAnchor(buffer, lastStart, consumer);
+        }
+    }
+
+    private void searchHorspool(ByteBuffer buffer, int lastStart, IntConsumer consumer) {
+        int lastIndex = patternBytes.length - 1;
+        byte lastByte = patternBytes[lastIndex];
+        byte lastMask = masks[lastIndex];
+
+        int offset = 0;
+        while (offset < lastStart) {
+            byte tailByte = buffer.get(offset + lastIndex);
+
+            if ((tailByte & lastMask) == lastByte && matches(buffer, offset)) {
+                consumer.accept(offset);
+            }
+
+            offset += shiftTable[tailByte & 0xFF];
+        }
+    }
+
+    private void searchAnchor(ByteBuffer buffer, int lastStart, IntConsumer consumer) {
+        ByteBuffer words = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        int anchorEnd = lastStart + anchorOffset;
+        int wordEnd = anchorEnd - Long.BYTES;
+        int position = anchorOffset;
+
+        while (position <= wordEnd) {
+            long word = (words.getLong(position) & anchorMask) ^ anchorWord;
+            long zeroBytes = (word - LOW_BITS) & ~word & HIGH_BITS;
+
+            // Borrows may flag extra bytes above a real hit, so every candidate is verified
+            while (zeroBytes != 0) {
+                int candidate = position + (Long.numberOfTrailingZeros(zeroBytes) >>> 3) - anchorOffset;
+
+                if (matches(buffer, candidate)) {
+                    consumer.accept(candidate);
+                }
+
+                zeroBytes &= zeroBytes - 1;
+            }
+
+            position += Long.BYTES;
+        }
+
+        byte anchorByte = patternBytes[anchorOffset];
+        byte anchorByteMask = masks[anchorOffset];
+
+        for (; position < anchorEnd; position++) {
+            if ((buffer.get(position) & anchorByteMask) == anchorByte && matches(buffer, position - anchorOffset)) {
+                consumer.accept(position - anchorOffset);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder signature = new StringBuilder();
+
+        for (int i = 0; i < patternBytes.length; i++) {
+            if (i > 0) {
+                signature.append(' ');
+            }
+            if (masks[i] == WILDCARD) {
+                signature.append("??");
+            } else if (masks[i] == EXACT) {
+                signature.append(String.format("%02X", patternBytes[i]));
+            } else {
+                signature.append(String.format("%02X&%02X", patternBytes[i], masks[i]));
+            }
+        }
+
+        return signature.toString();
+    }
+
+    private static boolean isCommonByte(byte value) {
+        return value == 0x00 || value == (byte) 0xFF;
+    }
+}
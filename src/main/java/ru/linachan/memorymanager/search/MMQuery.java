@@ -0,0 +1,301 @@
+package ru.linachan.memorymanager.search;
+
+import ru.linachan.memorymanager.utils.MMUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Conditions on several values at fixed offsets from a common start, e.g.
+// "+0:int 100..200, +8:float > 0, +16:ptr != 0". Every condition is normalized to a closed interval,
+// possibly negated, so that compiled matchers only ever compare against two bounds.
+public class MMQuery {
+
+    private static final Pattern FIELD = Pattern.compile(
+        "\\+?(0[xX][0-9A-Fa-f]+|\\d+)\\s*:\\s*(\\w+)(?:\\s*(==|=|!=|<=|>=|<|>)\\s*|\\s+(in\\s+)?)(\\S+?)(?:\\s*\\.\\.\\s*(\\S+))?"
+    );
+
+    public static class Field {
+
+        private final int offset;
+        private final MMValueType valueType;
+        private final boolean pointer;
+        private final String condition;
+
+        private final long lowerBits;
+        private final long upperBits;
+        private final double lowerValue;
+        private final double upperValue;
+        private final boolean negated;
+
+        private Field(
+            int offset, MMValueType valueType, boolean pointer, String condition,
+            long lowerBits, long upperBits, double lowerValue, double upperValue, boolean negated
+        ) {
+            this.offset = offset;
+            this.valueType = valueType;
+            this.pointer = pointer;
+            this.condition = condition;
+            this.lowerBits = lowerBits;
+            this.upperBits = upperBits;
+            this.lowerValue = lowerValue;
+            this.upperValue = upperValue;
+            this.negated = negated;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public MMValueType getValueType() {
+            return valueType;
+        }
+
+        public boolean isPointer() {
+            return pointer;
+        }
+
+        long getLowerBits() {
+            return lowerBits;
+        }
+
+        long getUpperBits() {
+            return upperBits;
+        }
+
+        double getLowerValue() {
+            return lowerValue;
+        }
+
+        double getUpperValue() {
+            return upperValue;
+        }
+
+        boolean isNegated() {
+            return negated;
+        }
+
+        // Single value, compared exactly: the interval holds one integer
+        boolean isEquality() {
+            return !negated && !valueType.isFloatingPoint() && lowerBits == upperBits;
+        }
+
+        public boolean matches(ByteBuffer buffer, int base) {
+            long valueBits = valueType.read(buffer, base + offset);
+            boolean inRange = valueType.isFloatingPoint()
+                ? valueType.toDouble(valueBits) >= lowerValue && valueType.toDouble(valueBits) <= upperValue
+                : valueBits >= lowerBits && valueBits <= upperBits;
+
+            return inRange != negated;
+        }
+
+        public String format(long valueBits) {
+            return pointer ? String.format("%X", valueBits) : valueType.format(valueBits);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("+%d:%s %s", offset, pointer ? (valueType == MMValueType.INT ? "ptr32" : "ptr") : valueType.name().toLowerCase(), condition);
+        }
+    }
+
+    private final List<Field> fields;
+    private final int size;
+
+    private MMQuery(List<Field> fields) {
+        this.fields = fields;
+
+        int extent = 0;
+        for (Field field: fields) {
+            extent = Math.max(extent, field.offset + field.valueType.size());
+        }
+        this.size = extent;
+    }
+
+    // Fields are separated by ',' or ';'. Each is "+offset:type condition" where the offset is decimal
+    // or 0x-prefixed hex, the type one of byte, short, int, long, float, double, int8..int64, float32,
+    // float64, ptr (8 bytes) or ptr32, and the condition one of "== v", "!= v", "< v", "<= v", "> v",
+    // ">= v" or "[in] a..b". A bare value means equality.
+    public static MMQuery parse(String query) {
+        List<Field> fields = new ArrayList<>();
+
+        for (String token: query.split("[,;]")) {
+            if (token.trim().isEmpty()) {
+                continue;
+            }
+
+            Matcher matcher = FIELD.matcher(token.trim());
+
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException(String.format("Invalid query field: '%s'", token.trim()));
+            }
+
+            try {
+                fields.add(parseField(matcher));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Invalid value in query field: '%s'", token.trim()));
+            }
+        }
+
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("Query must contain at least one field");
+        }
+
+        return new MMQuery(fields);
+    }
+
+    private static Field parseField(Matcher matcher) {
+        int offset = Integer.decode(matcher.group(1));
+        String typeName = matcher.group(2).toLowerCase();
+        String operator = matcher.group(3) != null ? matcher.group(3) : (matcher.group(6) != null ? "in" : "==");
+        String value = matcher.group(5);
+        String upperValue = matcher.group(6);
+
+        boolean pointer = typeName.equals("ptr") || typeName.equals("ptr32");
+        MMValueType valueType = parseType(typeName);
+
+        // Ranges take no comparison operator and "in" takes nothing but a range
+        if ((matcher.group(3) != null && upperValue != null) || (matcher.group(4) != null && upperValue == null)) {
+            throw new IllegalArgumentException(String.format("Invalid condition: '%s'", matcher.group()));
+        }
+
+        String condition = upperValue != null ? String.format("in %s..%s", value, upperValue) : String.format("%s %s", operator, value);
+
+        if (valueType.isFloatingPoint()) {
+            double operand = valueType.toDouble(valueType.parse(value));
+
+            switch (operator) {
+                case "==":
+                case "=":
+                case "!=":
+                    double epsilon = MMUtils.getRoundingEpsilon(value);
+                    return floatField(offset, valueType, condition, operand - epsilon, operand + epsilon, operator.equals("!="));
+                case "<":
+                    return floatField(offset, valueType, condition, Double.NEGATIVE_INFINITY, nextDown(valueType, operand), false);
+                case "<=":
+                    return floatField(offset, valueType, condition, Double.NEGATIVE_INFINITY, operand, false);
+                case ">":
+                    return floatField(offset, valueType, condition, nextUp(valueType, operand), Double.POSITIVE_INFINITY, false);
+                case ">=":
+                    return floatField(offset, valueType, condition, operand, Double.POSITIVE_INFINITY, false);
+                default:
+                    return floatField(offset, valueType, condition, operand, valueType.toDouble(valueType.parse(upperValue)), false);
+            }
+        }
+
+        long operand = parseInteger(valueType, value);
+        long minValue = -(1L << (8 * valueType.size() - 1));
+        long maxValue = ~minValue;
+
+        switch (operator) {
+            case "==":
+            case "=":
+                return integerField(offset, valueType, pointer, condition, operand, operand, false);
+            case "!=":
+                return integerField(offset, valueType, pointer, condition, operand, operand, true);
+            case "<":
+                return operand == minValue
+                    ? integerField(offset, valueType, pointer, condition, minValue, maxValue, true)
+                    : integerField(offset, valueType, pointer, condition, minValue, operand - 1, false);
+            case "<=":
+                return integerField(offset, valueType, pointer, condition, minValue, operand, false);
+            case ">":
+                return operand == maxValue
+                    ? integerField(offset, valueType, pointer, condition, minValue, maxValue, true)
+                    : integerField(offset, valueType, pointer, condition, operand + 1, maxValue, false);
+            case ">=":
+                return integerField(offset, valueType, pointer, condition, operand, maxValue, false);
+            default:
+                return integerField(offset, valueType, pointer, condition, operand, parseInteger(valueType, upperValue), false);
+        }
+    }
+
+    private static MMValueType parseType(String typeName) {
+        switch (typeName) {
+            case "int8":
+                return MMValueType.BYTE;
+            case "int16":
+                return MMValueType.SHORT;
+            case "int32":
+            case "ptr32":
+                return MMValueType.INT;
+            case "int64":
+            case "ptr":
+                return MMValueType.LONG;
+            case "float32":
+                return MMValueType.FLOAT;
+            case "float64":
+                return MMValueType.DOUBLE;
+            default:
+                try {
+                    return MMValueType.fromName(typeName);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(String.format("Unknown type: '%s'", typeName));
+                }
+        }
+    }
+
+    // Integers may also be given in hex, which is how pointers are usually written
+    private static long parseInteger(MMValueType valueType, String value) {
+        if (value.startsWith("0x") || value.startsWith("0X")) {
+            long bits = Long.parseUnsignedLong(value.substring(2), 16);
+            int shift = 64 - 8 * valueType.size();
+
+            if (shift > 0 && bits >>> (64 - shift) != 0) {
+                throw new IllegalArgumentException(String.format("Value out of range: '%s'", value));
+            }
+
+            return bits << shift >> shift;
+        }
+
+        return valueType.parse(value);
+    }
+
+    private static Field integerField(
+        int offset, MMValueType valueType, boolean pointer, String condition, long lowerBits, long upperBits, boolean negated
+    ) {
+        return new Field(offset, valueType, pointer, condition, lowerBits, upperBits, lowerBits, upperBits, negated);
+    }
+
+    private static Field floatField(
+        int offset, MMValueType valueType, String condition, double lowerValue, double upperValue, boolean negated
+    ) {
+        return new Field(offset, valueType, false, condition, 0, 0, lowerValue, upperValue, negated);
+    }
+
+    private static double nextUp(MMValueType valueType, double value) {
+        return valueType == MMValueType.FLOAT ? Math.nextUp((float) value) : Math.nextUp(value);
+    }
+
+    private static double nextDown(MMValueType valueType, double value) {
+        return valueType == MMValueType.FLOAT ? Math.nextDown((float) value) : Math.nextDown(value);
+    }
+
+    public List<Field> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    // Bytes from the start of a match to the end of its furthest field
+    public int size() {
+        return size;
+    }
+
+    // Orders the fields by how often they hold on the samples and builds the matcher for that order
+    public MMQueryScanner compile(int alignment, List<ByteBuffer> samples) {
+        return new MMQueryScanner(this, alignment, samples);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder query = new StringBuilder();
+
+        for (Field field: fields) {
+            query.append(query.length() > 0 ? ", " : "").append(field);
+        }
+
+        return query.toString();
+    }
+}
@@ -0,0 +1,361 @@
+package ru.linachan.memorymanager.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+// Matcher compiled from a query. The field that held least often on the samples is scanned for on its own,
+// with a byte pattern search for exact integers and a typed value scan for ranges. Only where it holds are the
+// other fields checked, again rarest first, through a chain of matchers specialized by value type. No field
+// is interpreted per byte, but each check still costs a virtual call: the matcher classes are shared by every
+// query compiled in the JVM, so their call sites turn megamorphic once a few different queries have run.
+public class MMQueryScanner {
+
+    // Positions examined per sample when estimating how often a field holds
+    private static final int SAMPLE_LIMIT = 1 << 16;
+
+    private final MMQuery query;
+    private final int alignment;
+
+    private final List<MMQuery.Field> order;
+    private final double[] passRates;
+
+    private final MMQuery.Field leadingField;
+    private final MMPattern leadingPattern;
+    private final MMValueScanner leadingScanner;
+    private final Matcher matcher;
+    private final Matcher candidateMatcher;
+
+    MMQueryScanner(MMQuery query, int alignment, List<ByteBuffer> samples) {
+        if (alignment != 1 && alignment != 2 && alignment != 4 && alignment != 8) {
+            throw new IllegalArgumentException(String.format("Invalid alignment: %d", alignment));
+        }
+
+        this.query = query;
+        this.alignment = alignment;
+
+        List<MMQuery.Field> fields = query.getFields();
+        double[] fieldRates = new double[fields.size()];
+
+        for (int i = 0; i < fieldRates.length; i++) {
+            fieldRates[i] = estimatePassRate(fields.get(i), alignment, samples);
+        }
+
+        List<Integer> fieldOrder = new ArrayList<>();
+        for (int i = 0; i < fieldRates.length; i++) {
+            fieldOrder.add(i);
+        }
+
+        // Rarest first, exact integers break ties since they are the cheapest to scan for
+        fieldOrder.sort(Comparator.<Integer>comparingDouble(i -> fieldRates[i])
+            .thenComparing(i -> !fields.get(i).isEquality())
+            .thenComparingInt(i -> fields.get(i).getValueType().size()));
+
+        order = new ArrayList<>();
+        passRates = new double[fieldRates.length];
+
+        for (int i = 0; i < fieldOrder.size(); i++) {
+            order.add(fields.get(fieldOrder.get(i)));
+            passRates[i] = fieldRates[fieldOrder.get(i)];
+        }
+
+        leadingField = order.get(0);
+
+        if (leadingField.isEquality()) {
+            byte[] valueBytes = new byte[leadingField.getValueType().size()];
+            leadingField.getValueType().write(ByteBuffer.wrap(valueBytes).order(ByteOrder.nativeOrder()), 0, leadingField.getLowerBits());
+
+            leadingPattern = MMPattern.of(valueBytes);
+            leadingScanner = null;
+        } else if (!leadingField.isNegated()) {
+            MMScanCondition condition = leadingField.getValueType().isFloatingPoint()
+                ? MMScanCondition.between(toBits(leadingField.getValueType(), leadingField.getLowerValue()), toBits(leadingField.getValueType(), leadingField.getUpperValue()))
+                : MMScanCondition.between(leadingField.getLowerBits(), leadingField.getUpperBits());
+
+            leadingPattern = null;
+            leadingScanner = new MMValueScanner(leadingField.getValueType(), condition, alignment);
+        } else {
+            leadingPattern = null;
+            leadingScanner = null;
+        }
+
+        matcher = compileChain(order, 0);
+
+        // Float bounds may round when handed over as bits, so those candidates are checked in full
+        candidateMatcher = leadingField.getValueType().isFloatingPoint() ? matcher : compileChain(order, 1);
+    }
+
+    private static long toBits(MMValueType valueType, double value) {
+        return valueType == MMValueType.FLOAT ? Float.floatToRawIntBits((float) value) : Double.doubleToRawLongBits(value);
+    }
+
+    private static double estimatePassRate(MMQuery.Field field, int alignment, List<ByteBuffer> samples) {
+        long examined = 0;
+        long passed = 0;
+
+        for (ByteBuffer sample: samples) {
+            int lastPosition = Math.min(sample.limit() - field.getValueType().size(), SAMPLE_LIMIT * alignment);
+
+            for (int position = 0; position <= lastPosition; position += alignment) {
+                examined++;
+                passed += field.matches(sample, position - field.getOffset()) ? 1 : 0;
+            }
+        }
+
+        if (examined == 0) {
+            // Nothing to sample: assume exact values are rare and anything else holds half of the time
+            return field.isEquality() ? (field.getLowerBits() == 0 ? 0.5 : 0.001) : 0.5;
+        }
+
+        // Fields that never held on the samples still compare by how specific they are
+        return (passed + (field.isEquality() ? 0.1 : 0.5)) / (examined + 1.0);
+    }
+
+    public MMQuery getQuery() {
+        return query;
+    }
+
+    public int getAlignment() {
+        return alignment;
+    }
+
+    // Fields in the order they are evaluated
+    public List<MMQuery.Field> getOrder() {
+        return order;
+    }
+
+    // Share of sampled positions each field held at, in evaluation order
+    public double getPassRate(int index) {
+        return passRates[index];
+    }
+
+    // Bytes shared by consecutive chunks: enough for the last match to fit while keeping chunk starts aligned
+    public int getOverlap() {
+        return (query.size() - 1 + alignment - 1) / alignment * alignment;
+    }
+
+    // Reports offsets in [0, startLimit) of matches that fit before the buffer limit and lie on an aligned
+    // address. The buffer must use native byte order.
+    public void search(ByteBuffer buffer, long bufferAddress, int startLimit, IntConsumer consumer) {
+        int lastStart = Math.min(startLimit, buffer.limit() - query.size() + 1);
+        int leadingOffset = leadingField.getOffset();
+
+        if (lastStart <= 0) {
+            return;
+        }
+
+        if (leadingPattern != null || leadingScanner != null) {
+            int fieldLimit = Math.min(lastStart + leadingOffset, buffer.limit());
+            IntConsumer candidateConsumer = fieldOffset -> {
+                int base = fieldOffset - leadingOffset;
+
+                if (base >= 0 && base < lastStart && ((bufferAddress + base) & (alignment - 1)) == 0 && candidateMatcher.matches(buffer, base)) {
+                    consumer.accept(base);
+                }
+            };
+
+            if (leadingPattern != null) {
+                leadingPattern.search(buffer, fieldLimit, candidateConsumer);
+            } else {
+                // Shifted so that the scanner aligns the start of the match rather than the field
+                leadingScanner.search(buffer, bufferAddress - leadingOffset, fieldLimit, candidateConsumer);
+            }
+
+            return;
+        }
+
+        int firstBase = (int) Math.floorMod(-bufferAddress, (long) alignment);
+
+        for (int base = firstBase; base < lastStart; base += alignment) {
+            if (matcher.matches(buffer, base)) {
+                consumer.accept(base);
+            }
+        }
+    }
+
+    private static Matcher compileChain(List<MMQuery.Field> fields, int from) {
+        Matcher next = Accept.INSTANCE;
+
+        for (int i = fields.size() - 1; i >= from; i--) {
+            MMQuery.Field field = fields.get(i);
+
+            switch (field.getValueType()) {
+                case BYTE:
+                    next = new ByteMatcher(field, next);
+                    break;
+                case SHORT:
+                    next = new ShortMatcher(field, next);
+                    break;
+                case INT:
+                    next = new IntMatcher(field, next);
+                    break;
+                case LONG:
+                    next = new LongMatcher(field, next);
+                    break;
+                case FLOAT:
+                    next = new FloatMatcher(field, next);
+                    break;
+                default:
+                    next = new DoubleMatcher(field, next);
+                    break;
+            }
+        }
+
+        return next;
+    }
+
+    private abstract static class Matcher {
+        abstract boolean matches(ByteBuffer buffer, int base);
+    }
+
+    private static final class Accept extends Matcher {
+
+        private static final Accept INSTANCE = new Accept();
+
+        @Override
+        boolean matches(ByteBuffer buffer, int base) {
+            return true;
+        }
+    }
+
+    private static final class ByteMatcher extends Matcher {
+
+        private final int offset;
+        private final long lower;
+        private final long upper;
+        private final boolean negated;
+        private final Matcher next;
+
+        ByteMatcher(MMQuery.Field field, Matcher next) {
+            this.offset = field.getOffset();
+            this.lower = field.getLowerBits();
+            this.upper = field.getUpperBits();
+            this.negated = field.isNegated();
+            this.next = next;
+        }
+
+        @Override
+        boolean matches(ByteBuffer buffer, int base) {
+            long value = buffer.get(base + offset);
+            return (value >= lower && value <= upper) != negated && next.matches(buffer, base);
+        }
+    }
+
+    private static final class ShortMatcher extends Matcher {
+
+        private final int offset;
+        private final long lower;
+        private final long upper;
+        private final boolean negated;
+        private final Matcher next;
+
+        ShortMatcher(MMQuery.Field field, Matcher next) {
+            this.offset = field.getOffset();
+            this.lower = field.getLowerBits();
+            this.upper = field.getUpperBits();
+            this.negated = field.isNegated();
+            this.next = next;
+        }
+
+        @Override
+        boolean matches(ByteBuffer buffer, int base) {
+            long value = buffer.getShort(base + offset);
+            return (value >= lower && value <= upper) != negated && next.matches(buffer, base);
+        }
+    }
+
+    private static final class IntMatcher extends Matcher {
+
+        private final int offset;
+        private final long lower;
+        private final long upper;
+        private final boolean negated;
+        private final Matcher next;
+
+        IntMatcher(MMQuery.Field field, Matcher next) {
+            this.offset = field.getOffset();
+            this.lower = field.getLowerBits();
+            this.upper = field.getUpperBits();
+            this.negated = field.isNegated();
+            this.next = next;
+        }
+
+        @Override
+        boolean matches(ByteBuffer buffer, int base) {
+            long value = buffer.getInt(base + offset);
+            return (value >= lower && value <= upper) != negated && next.matches(buffer, base);
+        }
+    }
+
+    private static final class LongMatcher extends Matcher {
+
+        private final int offset;
+        private final long lower;
+        private final long upper;
+        private final boolean negated;
+        private final Matcher next;
+
+        LongMatcher(MMQuery.Field field, Matcher next) {
+            this.offset = field.getOffset();
+            this.lower = field.getLowerBits();
+            this.upper = field.getUpperBits();
+            this.negated = field.isNegated();
+            this.next = next;
+        }
+
+        @Override
+        boolean matches(ByteBuffer buffer, int base) {
+            long value = buffer.getLong(base + offset);
+            return (value >= lower && value <= upper) != negated && next.matches(buffer, base);
+        }
+    }
+
+    private static final class FloatMatcher extends Matcher {
+
+        private final int offset;
+        private final double lower;
+        private final double upper;
+        private final boolean negated;
+        private final Matcher next;
+
+        FloatMatcher(MMQuery.Field field, Matcher next) {
+            this.offset = field.getOffset();
+            this.lower = field.getLowerValue();
+            this.upper = field.getUpperValue();
+            this.negated = field.isNegated();
+            this.next = next;
+        }
+
+        @Override
+        boolean matches(ByteBuffer buffer, int base) {
+            float value = buffer.getFloat(base + offset);
+            return (value >= lower && value <= upper) != negated && next.matches(buffer, base);
+        }
+    }
+
+    private static final class DoubleMatcher extends Matcher {
+
+        private final int offset;
+        private final double lower;
+        private final double upper;
+        private final boolean negated;
+        private final Matcher next;
+
+        DoubleMatcher(MMQuery.Field field, Matcher next) {
+            this.offset = field.getOffset();
+            this.lower = field.getLowerValue();
+            this.upper = field.getUpperValue();
+            this.negated = field.isNegated();
+            this.next = next;
+        }
+
+        @Override
+        boolean matches(ByteBuffer buffer, int base) {
+            double value = buffer.getDouble(base + offset);
+            return (value >= lower && value <= upper) != negated && next.matches(buffer, base);
+        }
+    }
+}
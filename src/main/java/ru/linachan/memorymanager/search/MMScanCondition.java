@@ -0,0 +1,123 @@
+package ru.linachan.memorymanager.search;
+
+public class MMScanCondition {
+
+    public enum Kind {
+        ANY, EXACT, BETWEEN, CHANGED, UNCHANGED, INCREASED, DECREASED, CHANGED_BY
+    }
+
+    private final Kind kind;
+    private final long operand;
+    private final long upperOperand;
+    private final double epsilon;
+
+    private MMScanCondition(Kind kind, long operand) {
+        this(kind, operand, operand, 0.0);
+    }
+
+    private MMScanCondition(Kind kind, long operand, long upperOperand, double epsilon) {
+        this.kind = kind;
+        this.operand = operand;
+        this.upperOperand = upperOperand;
+        this.epsilon = epsilon;
+    }
+
+    public static MMScanCondition any() {
+        return new MMScanCondition(Kind.ANY, 0);
+    }
+
+    public static MMScanCondition exact(long valueBits) {
+        return new MMScanCondition(Kind.EXACT, valueBits);
+    }
+
+    // Floating point values match when they are within epsilon of the value, integers ignore epsilon
+    public static MMScanCondition exact(long valueBits, double epsilon) {
+        return new MMScanCondition(Kind.EXACT, valueBits, valueBits, epsilon);
+    }
+
+    public static MMScanCondition between(long lowerBits, long upperBits) {
+        return new MMScanCondition(Kind.BETWEEN, lowerBits, upperBits, 0.0);
+    }
+
+    public static MMScanCondition changed() {
+        return new MMScanCondition(Kind.CHANGED, 0);
+    }
+
+    public static MMScanCondition unchanged() {
+        return new MMScanCondition(Kind.UNCHANGED, 0);
+    }
+
+    public static MMScanCondition increased() {
+        return new MMScanCondition(Kind.INCREASED, 0);
+    }
+
+    public static MMScanCondition decreased() {
+        return new MMScanCondition(Kind.DECREASED, 0);
+    }
+
+    public static MMScanCondition changedBy(long deltaBits) {
+        return new MMScanCondition(Kind.CHANGED_BY, deltaBits);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isRelative() {
+        return kind != Kind.ANY && kind != Kind.EXACT && kind != Kind.BETWEEN;
+    }
+
+    long getLowerBits() {
+        return kind == Kind.ANY ? Long.MIN_VALUE : operand;
+    }
+
+    long getUpperBits() {
+        return kind == Kind.ANY ? Long.MAX_VALUE : upperOperand;
+    }
+
+    double getLowerValue(MMValueType valueType) {
+        switch (kind) {
+            case ANY:
+                return Double.NEGATIVE_INFINITY;
+            case EXACT:
+                return valueType.toDouble(operand) - epsilon;
+            default:
+                return valueType.toDouble(operand);
+        }
+    }
+
+    double getUpperValue(MMValueType valueType) {
+        switch (kind) {
+            case ANY:
+                return Double.POSITIVE_INFINITY;
+            case EXACT:
+                return valueType.toDouble(upperOperand) + epsilon;
+            default:
+                return valueType.toDouble(upperOperand);
+        }
+    }
+
+    public boolean matches(MMValueType valueType, long previousBits, long currentBits) {
+        switch (kind) {
+            case ANY:
+                return true;
+            case EXACT:
+                if (valueType.isFloatingPoint()) {
+                    return Math.abs(valueType.toDouble(currentBits) - valueType.toDouble(operand)) <= epsilon;
+                }
+                return currentBits == operand;
+            case BETWEEN:
+                return valueType.compare(currentBits, operand) >= 0 && valueType.compare(currentBits, upperOperand) <= 0;
+            case CHANGED:
+                return currentBits != previousBits;
+            case UNCHANGED:
+                return currentBits == previousBits;
+            case INCREASED:
+                return valueType.compare(currentBits, previousBits) > 0;
+            case DECREASED:
+                return valueType.compare(currentBits, previousBits) < 0;
+            default:
+                return valueType.compare(currentBits, valueType.add(previousBits, operand)) == 0;
+        }
+    }
+}
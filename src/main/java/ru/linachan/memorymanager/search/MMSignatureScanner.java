@@ -0,0 +1,304 @@
+package ru.linachan.memorymanager.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+// Aho-Corasick automaton over one exact-byte anchor per signature. Every anchor hit is verified against the
+// whole masked signature, so a chunk is walked once however many signatures there are. Signatures without
+// a single exact byte can not be anchored and are searched on their own within the same chunk.
+public class MMSignatureScanner {
+
+    @FunctionalInterface
+    public interface MatchConsumer {
+        void accept(int offset, int signature);
+    }
+
+    // Verification covers the rest of the signature, longer anchors would only grow the automaton
+    private static final int MAX_ANCHOR_LENGTH = 8;
+    private static final int PREFIX_HASH_BITS = 18;
+
+    private final MMSignatureSet signatures;
+
+    // transitions[state | byte] is the next state, premultiplied by 256 and negated (~) when it ends an anchor.
+    // States are numbered breadth-first, so the root and its children are the states up to shallowState.
+    private final int[] transitions;
+    private final int shallowState;
+    private final int[] outputStarts;
+    private final int[] outputSignatures;
+
+    // Bit sets of where an anchor can start: hashed first three bytes of the longer anchors, byte pairs
+    // of the shorter ones, where one-byte anchors take any second byte
+    private final long[] anchorPrefixes = new long[1 << (PREFIX_HASH_BITS - 6)];
+    private final long[] shortAnchorPrefixes = new long[1 << 10];
+
+    private final int[] anchorOffsets;
+    private final int[] anchorLengths;
+    private final int[] unanchoredSignatures;
+
+    private final int maxLength;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[0]);
+
+    MMSignatureScanner(MMSignatureSet signatures) {
+        this.signatures = signatures;
+
+        int signatureCount = signatures.size();
+        anchorOffsets = new int[signatureCount];
+        anchorLengths = new int[signatureCount];
+
+        List<int[]> children = new ArrayList<>();
+        List<List<Integer>> outputs = new ArrayList<>();
+        List<Integer> unanchored = new ArrayList<>();
+
+        children.add(newNode());
+        outputs.add(new ArrayList<>());
+
+        int longest = 1;
+
+        for (int signature = 0; signature < signatureCount; signature++) {
+            MMPattern pattern = signatures.getPattern(signature);
+            longest = Math.max(longest, pattern.length());
+
+            selectAnchor(pattern, signature);
+
+            if (anchorLengths[signature] == 0) {
+                unanchored.add(signature);
+                continue;
+            }
+
+            int anchorStart = anchorOffsets[signature];
+            int firstByte = pattern.getByte(anchorStart) & 0xFF;
+
+            if (anchorLengths[signature] >= 3) {
+                int prefix = prefixHash(firstByte | (pattern.getByte(anchorStart + 1) & 0xFF) << 8 | (pattern.getByte(anchorStart + 2) & 0xFF) << 16);
+                anchorPrefixes[prefix >>> 6] |= 1L << prefix;
+            } else {
+                for (int secondByte = 0; secondByte < 256; secondByte++) {
+                    if (anchorLengths[signature] == 1 || secondByte == (pattern.getByte(anchorStart + 1) & 0xFF)) {
+                        int prefix = firstByte | secondByte << 8;
+                        shortAnchorPrefixes[prefix >>> 6] |= 1L << prefix;
+                    }
+                }
+            }
+
+            int node = 0;
+
+            for (int i = anchorStart; i < anchorStart + anchorLengths[signature]; i++) {
+                int value = pattern.getByte(i) & 0xFF;
+
+                if (children.get(node)[value] < 0) {
+                    children.get(node)[value] = children.size();
+                    children.add(newNode());
+                    outputs.add(new ArrayList<>());
+                }
+
+                node = children.get(node)[value];
+            }
+
+            outputs.get(node).add(signature);
+        }
+
+        maxLength = longest;
+        unanchoredSignatures = unanchored.stream().mapToInt(Integer::intValue).toArray();
+
+        // Breadth-first pass turns the trie into a full DFA, merges outputs along failure links and orders states by depth
+        int stateCount = children.size();
+        int[] failures = new int[stateCount];
+        int[] order = new int[stateCount];
+        int[] stateOf = new int[stateCount];
+        int ordered = 0;
+        int rootChildren = 0;
+
+        Queue<Integer> queue = new ArrayDeque<>();
+        order[ordered++] = 0;
+
+        for (int value = 0; value < 256; value++) {
+            if (children.get(0)[value] < 0) {
+                children.get(0)[value] = 0;
+            } else {
+                failures[children.get(0)[value]] = 0;
+                queue.add(children.get(0)[value]);
+                rootChildren++;
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            order[ordered++] = node;
+            outputs.get(node).addAll(outputs.get(failures[node]));
+
+            for (int value = 0; value < 256; value++) {
+                int child = children.get(node)[value];
+
+                if (child < 0) {
+                    children.get(node)[value] = children.get(failures[node])[value];
+                } else {
+                    failures[child] = children.get(failures[node])[value];
+                    queue.add(child);
+                }
+            }
+        }
+
+        for (int state = 0; state < stateCount; state++) {
+            stateOf[order[state]] = state;
+        }
+
+        shallowState = rootChildren << 8;
+        transitions = new int[stateCount << 8];
+        outputStarts = new int[stateCount + 1];
+
+        int outputCount = 0;
+        for (int state = 0; state < stateCount; state++) {
+            outputStarts[state] = outputCount;
+            outputCount += outputs.get(order[state]).size();
+        }
+        outputStarts[stateCount] = outputCount;
+
+        outputSignatures = new int[outputCount];
+
+        for (int state = 0; state < stateCount; state++) {
+            List<Integer> stateOutputs = outputs.get(order[state]);
+
+            for (int i = 0; i < stateOutputs.size(); i++) {
+                outputSignatures[outputStarts[state] + i] = stateOutputs.get(i);
+            }
+
+            for (int value = 0; value < 256; value++) {
+                int next = children.get(order[state])[value];
+                transitions[(state << 8) | value] = outputs.get(next).isEmpty() ? stateOf[next] << 8 : ~(stateOf[next] << 8);
+            }
+        }
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[256];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    // Picks the run of exact bytes with the most bytes other than 0x00 and 0xFF, then the longest one
+    private void selectAnchor(MMPattern pattern, int signature) {
+        int bestScore = -1;
+
+        for (int start = 0; start < pattern.length(); start++) {
+            if (!pattern.isExact(start)) {
+                continue;
+            }
+
+            int score = 0;
+
+            for (int end = start; end < pattern.length() && end - start < MAX_ANCHOR_LENGTH && pattern.isExact(end); end++) {
+                byte value = pattern.getByte(end);
+                score += value == 0 || value == (byte) 0xFF ? 1 : 256;
+
+                if (score > bestScore) {
+                    bestScore = score;
+                    anchorOffsets[signature] = start;
+                    anchorLengths[signature] = end - start + 1;
+                }
+            }
+        }
+    }
+
+    public MMSignatureSet getSignatures() {
+        return signatures;
+    }
+
+    public int getStateCount() {
+        return outputStarts.length - 1;
+    }
+
+    // Bytes shared by consecutive chunks, so that the longest signature still fits
+    public int getOverlap() {
+        return maxLength - 1;
+    }
+
+    // Reports signatures matching at offsets in [0, startLimit) that fit before the buffer limit
+    public void search(ByteBuffer buffer, int startLimit, MatchConsumer consumer) {
+        int limit = buffer.limit();
+        byte[] data = SCRATCH.get();
+
+        if (data.length < limit + 2) {
+            data = new byte[limit + 2];
+            SCRATCH.set(data);
+        }
+
+        ByteBuffer source = buffer.duplicate();
+        source.position(0);
+        source.get(data, 0, limit);
+        data[limit] = 0;
+        data[limit + 1] = 0;
+
+        int state = 0;
+        int position = 0;
+
+        while (position < limit) {
+            // Walking the table is bound by its latency, so while no anchor is under way skip to where one can start.
+            // A child of the root has consumed a single byte, its anchor would start at the byte before.
+            if (state <= shallowState) {
+                int from = state == 0 ? position : position - 1;
+                int candidate = nextCandidate(data, from, limit);
+
+                if (candidate >= limit) {
+                    break;
+                }
+
+                if (candidate != from) {
+                    state = 0;
+                    position = candidate;
+                }
+            }
+
+            state = transitions[state | (data[position] & 0xFF)];
+
+            if (state < 0) {
+                state = ~state;
+                verify(buffer, state >>> 8, position, startLimit, consumer);
+            }
+
+            position++;
+        }
+
+        for (int signature: unanchoredSignatures) {
+            signatures.getPattern(signature).search(buffer, startLimit, offset -> consumer.accept(offset, signature));
+        }
+    }
+
+    private int nextCandidate(byte[] data, int position, int limit) {
+        // Bytes at position, position + 1 and position + 2 from the lowest up
+        int prefix = (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8;
+
+        for (; position < limit; position++) {
+            prefix |= (data[position + 2] & 0xFF) << 16;
+            int hashedPrefix = prefixHash(prefix);
+
+            if (((anchorPrefixes[hashedPrefix >>> 6] & (1L << hashedPrefix)) | (shortAnchorPrefixes[(prefix & 0xFFFF) >>> 6] & (1L << prefix))) != 0) {
+                return position;
+            }
+
+            prefix >>>= 8;
+        }
+
+        return limit;
+    }
+
+    private static int prefixHash(int prefix) {
+        return (prefix * 0x9E3779B1) >>> (32 - PREFIX_HASH_BITS);
+    }
+
+    private void verify(ByteBuffer buffer, int node, int anchorEnd, int startLimit, MatchConsumer consumer) {
+        for (int i = outputStarts[node]; i < outputStarts[node + 1]; i++) {
+            int signature = outputSignatures[i];
+            MMPattern pattern = signatures.getPattern(signature);
+            int start = anchorEnd + 1 - anchorLengths[signature] - anchorOffsets[signature];
+
+            if (start >= 0 && start < startLimit && start + pattern.length() <= buffer.limit() && pattern.matches(buffer, start)) {
+                consumer.accept(start, signature);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.linachan.memorymanager.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MMSignatureSet {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<MMPattern> patterns = new ArrayList<>();
+
+    // One signature per line: a name followed by its pattern in MMPattern.parse syntax,
+    // e.g. "PlayerBase 48 8B 05 ?? ?? ?? ?? 4? 85 C0". Blank lines and lines starting with '#' are skipped.
+    public static MMSignatureSet load(Path signatureFile) throws IOException {
+        MMSignatureSet signatures = new MMSignatureSet();
+
+        try (BufferedReader reader = Files.newBufferedReader(signatureFile, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+", 2);
+
+                if (parts.length < 2) {
+                    throw new IllegalArgumentException(String.format("Signature without pattern at line %d: '%s'", lineNumber, line));
+                }
+
+                try {
+                    signatures.add(parts[0].endsWith(":") ? parts[0].substring(0, parts[0].length() - 1) : parts[0], MMPattern.parse(parts[1]));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(String.format("Invalid signature at line %d: %s", lineNumber, e.getMessage()));
+                }
+            }
+        }
+
+        return signatures;
+    }
+
+    public int add(String name, MMPattern pattern) {
+        if (names.contains(name)) {
+            throw new IllegalArgumentException(String.format("Duplicate signature: '%s'", name));
+        }
+
+        names.add(name);
+        patterns.add(pattern);
+        return names.size() - 1;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    public MMPattern getPattern(int index) {
+        return patterns.get(index);
+    }
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public MMSignatureScanner compile() {
+        return new MMSignatureScanner(this);
+    }
+}
@@ -0,0 +1,144 @@
+package ru.linachan.memorymanager.search;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+public enum MMStringEncoding {
+    ASCII(StandardCharsets.US_ASCII, 1),
+    UTF8(StandardCharsets.UTF_8, 1),
+    UTF16LE(StandardCharsets.UTF_16LE, 2);
+
+    private final Charset charset;
+    private final int unitSize;
+
+    MMStringEncoding(Charset charset, int unitSize) {
+        this.charset = charset;
+        this.unitSize = unitSize;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    // Size of one code unit, strings are aligned to it and end with one zero unit
+    public int getUnitSize() {
+        return unitSize;
+    }
+
+    public byte[] encode(String value) {
+        CharsetEncoder encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        try {
+            ByteBuffer encoded = encoder.encode(CharBuffer.wrap(value));
+            byte[] valueBytes = new byte[encoded.remaining()];
+            encoded.get(valueBytes);
+            return valueBytes;
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException(String.format("'%s' can not be encoded as %s", value, charset.name()));
+        }
+    }
+
+    // Decodes length bytes at offset, invalid sequences become U+FFFD
+    public String decode(byte[] data, int offset, int length) {
+        return new String(data, offset, length, charset);
+    }
+
+    public String decode(ByteBuffer buffer, int offset, int length) {
+        byte[] data = new byte[length];
+
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(data);
+
+        return decode(data, 0, length);
+    }
+
+    // Offset of the first zero unit in [offset, limit), or limit if the string runs to the end
+    public int findTerminator(byte[] data, int offset, int limit) {
+        for (int position = offset; position + unitSize <= limit; position += unitSize) {
+            boolean zero = true;
+
+            for (int i = 0; i < unitSize && zero; i++) {
+                zero = data[position + i] == 0;
+            }
+
+            if (zero) {
+                return position;
+            }
+        }
+
+        return limit;
+    }
+
+    // With ignoreCase every character matches any bytes whose bits agree with all of its case variants. That is exact for ASCII letters and a superset elsewhere, so callers verify non-ASCII hits.
+    public MMPattern toPattern(String value, boolean ignoreCase) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Pattern is empty");
+        }
+
+        byte[] patternBytes = encode(value);
+        byte[] masks = new byte[patternBytes.length];
+
+        int position = 0;
+
+        for (int offset = 0; offset < value.length(); ) {
+            int codePoint = value.codePointAt(offset);
+            String character = new String(Character.toChars(codePoint));
+            byte[] characterBytes = encode(character);
+
+            byte[] upperBytes = encodeVariant(Character.toUpperCase(codePoint));
+            byte[] lowerBytes = encodeVariant(Character.toLowerCase(codePoint));
+
+            boolean folded = ignoreCase && upperBytes != null && lowerBytes != null
+                && upperBytes.length == characterBytes.length && lowerBytes.length == characterBytes.length;
+
+            for (int i = 0; i < characterBytes.length; i++) {
+                masks[position + i] = folded
+                    ? (byte) ~((upperBytes[i] ^ lowerBytes[i]) | (upperBytes[i] ^ characterBytes[i]))
+                    : (byte) 0xFF;
+            }
+
+            position += characterBytes.length;
+            offset += Character.charCount(codePoint);
+        }
+
+        return MMPattern.of(patternBytes, masks);
+    }
+
+    private byte[] encodeVariant(int codePoint) {
+        String variant = new String(Character.toChars(codePoint));
+        return charset.newEncoder().canEncode(variant) ? encode(variant) : null;
+    }
+
+    public static MMStringEncoding fromName(String name) {
+        switch (name.toLowerCase().replace("-", "").replace("_", "")) {
+            case "ascii":
+                return ASCII;
+            case "utf8":
+                return UTF8;
+            case "utf16":
+            case "utf16le":
+                return UTF16LE;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown encoding: '%s'", name));
+        }
+    }
+
+    public static MMStringEncoding fromBytesPerChar(int bytesPerChar) {
+        switch (bytesPerChar) {
+            case 1:
+                return UTF8;
+            case 2:
+                return UTF16LE;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported character size: %d", bytesPerChar));
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package ru.linachan.memorymanager.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.LongConsumer;
+
+// Finds runs of at least minLength printable characters, strings(1)-style: 7-bit printable ASCII and tabs,
+// plus well-formed multibyte sequences for UTF-8. The current run is carried from one chunk to the next,
+// so an instance follows consecutive chunks of one scan unit and reports runs starting inside its window.
+public class MMStringScanner {
+
+    private static final boolean[] PRINTABLE = new boolean[256];
+    private static final int[] PRINTABLE_BITS = new int[256];
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // Bytes in (0x1F, 0x7F) have the high bit set in (0xFE - b) & (b + 0x60), see "Bit Twiddling Hacks"
+    private static final long PRINTABLE_UPPER = LOW_BITS * 0xFE;
+    private static final long PRINTABLE_LOWER = LOW_BITS * 0x60;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[0]);
+
+    static {
+        for (int value = 0x20; value < 0x7F; value++) {
+            PRINTABLE[value] = true;
+        }
+
+        PRINTABLE['\t'] = true;
+
+        for (int value = 0; value < 256; value++) {
+            PRINTABLE_BITS[value] = PRINTABLE[value] ? 1 : 0;
+        }
+    }
+
+    private final MMStringEncoding encoding;
+    private final int minLength;
+
+    private final long windowStart;
+    private final long windowEnd;
+
+    private long runStart = -1;
+    private int runLength = 0;
+    private int pendingBytes = 0;
+    private long nextAddress = -1;
+
+    public MMStringScanner(MMStringEncoding encoding, int minLength, long windowStart, long windowEnd) {
+        if (minLength <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid minimum string length: %d", minLength));
+        }
+
+        this.encoding = encoding;
+        this.minLength = minLength;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+    }
+
+    // Scans bytes [0, limit) of buffer, which holds memory from bufferAddress on
+    public void scan(ByteBuffer buffer, long bufferAddress, int limit, LongConsumer consumer) {
+        if (bufferAddress != nextAddress) {
+            endRun(consumer);
+        }
+
+        // Looping over a heap copy is about twice as fast as reading a direct buffer byte by byte
+        byte[] data = SCRATCH.get();
+        if (data.length < limit) {
+            data = new byte[limit];
+            SCRATCH.set(data);
+        }
+
+        ByteBuffer source = buffer.duplicate();
+        source.position(0);
+        source.get(data, 0, limit);
+
+        switch (encoding) {
+            case ASCII:
+                scanAscii(data, bufferAddress, limit, consumer);
+                break;
+            case UTF8:
+                scanUtf8(data, bufferAddress, limit, consumer);
+                break;
+            case UTF16LE:
+                scanUtf16(data, bufferAddress, limit, consumer);
+                break;
+        }
+
+        nextAddress = bufferAddress + limit;
+    }
+
+    public boolean isInRun() {
+        return runLength > 0 || pendingBytes > 0;
+    }
+
+    public long getRunStart() {
+        return runStart;
+    }
+
+    // Reports the run still open at the end of the scanned memory
+    public void finish(LongConsumer consumer) {
+        endRun(consumer);
+    }
+
+    // Branch-free on the printable test: random bytes would mispredict it a third of the time, only the
+    // rare end of a long enough run takes a branch. Words without a printable byte are skipped whole.
+    private void scanAscii(byte[] data, long bufferAddress, int limit, LongConsumer consumer) {
+        ByteBuffer words = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int run = runLength;
+        int offset = 0;
+
+        while (offset < limit) {
+            if (offset + Long.BYTES <= limit && printableBytes(words.getLong(offset)) == 0) {
+                if (run >= minLength) {
+                    report(bufferAddress + offset - run, consumer);
+                }
+
+                run = 0;
+                offset += Long.BYTES;
+                continue;
+            }
+
+            for (int end = Math.min(offset + Long.BYTES, limit); offset < end; offset++) {
+                int printable = PRINTABLE_BITS[data[offset] & 0xFF];
+
+                if ((((run - minLength) >>> 31) | printable) == 0) {
+                    report(bufferAddress + offset - run, consumer);
+                }
+
+                run = (run + 1) & -printable;
+            }
+        }
+
+        setRun(bufferAddress + limit, run);
+    }
+
+    private void scanUtf8(byte[] data, long bufferAddress, int limit, LongConsumer consumer) {
+        ByteBuffer words = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int offset = 0;
+
+        while (offset < limit) {
+            if (pendingBytes == 0 && offset + Long.BYTES <= limit) {
+                long word = words.getLong(offset);
+
+                if ((printableBytes(word) | (word & HIGH_BITS)) == 0) {
+                    if (runLength > 0) {
+                        endRun(consumer);
+                    }
+
+                    offset += Long.BYTES;
+                    continue;
+                }
+            }
+
+            for (int end = Math.min(offset + Long.BYTES, limit); offset < end; offset++) {
+                int value = data[offset] & 0xFF;
+
+                if (pendingBytes > 0) {
+                    if ((value & 0xC0) == 0x80) {
+                        pendingBytes--;
+                        continue;
+                    }
+
+                    // Truncated sequence: the run ends before its lead byte
+                    pendingBytes = 0;
+                    runLength--;
+                    endRun(consumer);
+                }
+
+                int sequenceLength = PRINTABLE[value] ? 1 : getSequenceLength(value);
+
+                if (sequenceLength == 0) {
+                    if (runLength > 0) {
+                        endRun(consumer);
+                    }
+                    continue;
+                }
+
+                if (runLength++ == 0) {
+                    runStart = bufferAddress + offset;
+                }
+
+                pendingBytes = sequenceLength - 1;
+            }
+        }
+    }
+
+    // A printable unit needs a printable low byte, so words without one hold no part of a string
+    private void scanUtf16(byte[] data, long bufferAddress, int limit, LongConsumer consumer) {
+        ByteBuffer words = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int run = runLength;
+        int offset = (int) (bufferAddress & 1);
+
+        while (offset + 1 < limit) {
+            if (offset + Long.BYTES <= limit && printableBytes(words.getLong(offset)) == 0) {
+                if (run >= minLength) {
+                    report(bufferAddress + offset - 2L * run, consumer);
+                }
+
+                run = 0;
+                offset += Long.BYTES;
+                continue;
+            }
+
+            for (int end = Math.min(offset + Long.BYTES, limit); offset + 1 < end; offset += 2) {
+                int printable = PRINTABLE_BITS[data[offset] & 0xFF] & (((data[offset + 1] & 0xFF) - 1) >>> 31);
+
+                if ((((run - minLength) >>> 31) | printable) == 0) {
+                    report(bufferAddress + offset - 2L * run, consumer);
+                }
+
+                run = (run + 1) & -printable;
+            }
+        }
+
+        setRun(bufferAddress + offset, run);
+    }
+
+    // Non-zero if any byte of word is printable ASCII or a tab
+    private static long printableBytes(long word) {
+        long low = word & ~HIGH_BITS;
+        long between = (PRINTABLE_UPPER - low) & ~word & (low + PRINTABLE_LOWER) & HIGH_BITS;
+
+        long tabs = word ^ (LOW_BITS * '\t');
+        return between | ((tabs - LOW_BITS) & ~tabs & HIGH_BITS);
+    }
+
+    private static int getSequenceLength(int leadByte) {
+        if (leadByte >= 0xC2 && leadByte <= 0xDF) {
+            return 2;
+        } else if (leadByte >= 0xE0 && leadByte <= 0xEF) {
+            return 3;
+        } else if (leadByte >= 0xF0 && leadByte <= 0xF4) {
+            return 4;
+        }
+
+        return 0;
+    }
+
+    private void setRun(long endAddress, int run) {
+        runLength = run;
+        runStart = run > 0 ? endAddress - (long) run * encoding.getUnitSize() : -1;
+    }
+
+    private void report(long address, LongConsumer consumer) {
+        if (address >= windowStart && address < windowEnd) {
+            consumer.accept(address);
+        }
+    }
+
+    private void endRun(LongConsumer consumer) {
+        if (runLength >= minLength) {
+            report(runStart, consumer);
+        }
+
+        runStart = -1;
+        runLength = 0;
+        pendingBytes = 0;
+    }
+
+    // Length in bytes of the printable run at offset, the same rules the scan uses
+    public static int measureRun(MMStringEncoding encoding, byte[] data, int offset, int limit) {
+        int position = offset;
+
+        switch (encoding) {
+            case ASCII:
+                while (position < limit && PRINTABLE[data[position] & 0xFF]) {
+                    position++;
+                }
+                break;
+            case UTF8:
+                while (position < limit) {
+                    int value = data[position] & 0xFF;
+                    int sequenceLength = PRINTABLE[value] ? 1 : getSequenceLength(value);
+
+                    if (sequenceLength == 0 || position + sequenceLength > limit) {
+                        break;
+                    }
+
+                    boolean complete = true;
+                    for (int i = 1; i < sequenceLength && complete; i++) {
+                        complete = (data[position + i] & 0xC0) == 0x80;
+                    }
+
+                    if (!complete) {
+                        break;
+                    }
+
+                    position += sequenceLength;
+                }
+                break;
+            case UTF16LE:
+                while (position + 1 < limit && data[position + 1] == 0 && PRINTABLE[data[position] & 0xFF]) {
+                    position += 2;
+                }
+                break;
+        }
+
+        return position - offset;
+    }
+}
@@ -0,0 +1,147 @@
+package ru.linachan.memorymanager.search;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.function.IntConsumer;
+
+public class MMValueScanner {
+
+    private final MMValueType valueType;
+    private final int alignment;
+
+    // Every absolute condition reduces to a closed interval, compared as raw integers or as doubles
+    private final long lowerBits;
+    private final long upperBits;
+    private final double lowerValue;
+    private final double upperValue;
+    private final boolean matchAll;
+
+    public MMValueScanner(MMValueType valueType, MMScanCondition condition, int alignment) {
+        if (condition.isRelative()) {
+            throw new IllegalArgumentException("Value scan requires an absolute condition");
+        }
+
+        if (alignment != 1 && alignment != 2 && alignment != 4 && alignment != 8) {
+            throw new IllegalArgumentException(String.format("Invalid alignment: %d", alignment));
+        }
+
+        this.valueType = valueType;
+        this.alignment = alignment;
+
+        lowerBits = condition.getLowerBits();
+        upperBits = condition.getUpperBits();
+        lowerValue = condition.getLowerValue(valueType);
+        upperValue = condition.getUpperValue(valueType);
+        matchAll = condition.getKind() == MMScanCondition.Kind.ANY;
+    }
+
+    public MMValueType getValueType() {
+        return valueType;
+    }
+
+    public int getAlignment() {
+        return alignment;
+    }
+
+    // Bytes shared by consecutive chunks: enough for the last value to fit while keeping chunk starts aligned
+    public int getOverlap() {
+        return (valueType.size() - 1 + alignment - 1) / alignment * alignment;
+    }
+
+    public boolean matches(long valueBits) {
+        if (matchAll) {
+            return true;
+        } else if (valueType.isFloatingPoint()) {
+            double value = valueType.toDouble(valueBits);
+            return value >= lowerValue && value <= upperValue;
+        }
+
+        return valueBits >= lowerBits && valueBits <= upperBits;
+    }
+
+    // Reports offsets in [0, startLimit) of values that fit before the buffer limit, lie on an aligned
+    // address and satisfy the condition. The buffer must use native byte order.
+    public void search(ByteBuffer buffer, long bufferAddress, int startLimit, IntConsumer consumer) {
+        int valueSize = valueType.size();
+        int lastStart = Math.min(startLimit, buffer.limit() - valueSize + 1);
+        int firstOffset = (int) Math.floorMod(-bufferAddress, (long) alignment);
+
+        if (lastStart <= firstOffset) {
+            return;
+        }
+
+        if (alignment != valueSize || firstOffset != 0) {
+            for (int offset = firstOffset; offset < lastStart; offset += alignment) {
+                if (matches(valueType.read(buffer, offset))) {
+                    consumer.accept(offset);
+                }
+            }
+            return;
+        }
+
+        ByteBuffer values = buffer.duplicate().order(buffer.order());
+        values.position(0);
+
+        int valueCount = (lastStart + valueSize - 1) / valueSize;
+
+        switch (valueType) {
+            case BYTE:
+                for (int i = 0; i < valueCount; i++) {
+                    long value = values.get(i);
+                    if (value >= lowerBits && value <= upperBits) {
+                        consumer.accept(i);
+                    }
+                }
+                break;
+            case SHORT:
+                ShortBuffer shorts = values.asShortBuffer();
+                for (int i = 0; i < valueCount; i++) {
+                    long value = shorts.get(i);
+                    if (value >= lowerBits && value <= upperBits) {
+                        consumer.accept(i << 1);
+                    }
+                }
+                break;
+            case INT:
+                IntBuffer ints = values.asIntBuffer();
+                for (int i = 0; i < valueCount; i++) {
+                    long value = ints.get(i);
+                    if (value >= lowerBits && value <= upperBits) {
+                        consumer.accept(i << 2);
+                    }
+                }
+                break;
+            case LONG:
+                LongBuffer longs = values.asLongBuffer();
+                for (int i = 0; i < valueCount; i++) {
+                    long value = longs.get(i);
+                    if (value >= lowerBits && value <= upperBits) {
+                        consumer.accept(i << 3);
+                    }
+                }
+                break;
+            case FLOAT:
+                FloatBuffer floats = values.asFloatBuffer();
+                for (int i = 0; i < valueCount; i++) {
+                    float value = floats.get(i);
+                    if (matchAll || (value >= lowerValue && value <= upperValue)) {
+                        consumer.accept(i << 2);
+                    }
+                }
+                break;
+            case DOUBLE:
+                DoubleBuffer doubles = values.asDoubleBuffer();
+                for (int i = 0; i < valueCount; i++) {
+                    double value = doubles.get(i);
+                    if (matchAll || (value >= lowerValue && value <= upperValue)) {
+                        consumer.accept(i << 3);
+                    }
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.linachan.memorymanager.search;
+
+import java.nio.ByteBuffer;
+
+public enum MMValueType {
+    BYTE(1), SHORT(2), INT(4), LONG(8), FLOAT(4), DOUBLE(8);
+
+    private final int size;
+
+    MMValueType(int size) {
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFloatingPoint() {
+        return this == FLOAT || this == DOUBLE;
+    }
+
+    // Values are carried around as raw bits in a long: integers sign-extended, floats as their IEEE 754 bits
+    public long read(ByteBuffer buffer, int offset) {
+        switch (this) {
+            case BYTE:
+                return buffer.get(offset);
+            case SHORT:
+                return buffer.getShort(offset);
+            case INT:
+            case FLOAT:
+                return buffer.getInt(offset);
+            default:
+                return buffer.getLong(offset);
+        }
+    }
+
+    public void write(ByteBuffer buffer, int offset, long bits) {
+        switch (this) {
+            case BYTE:
+                buffer.put(offset, (byte) bits);
+                break;
+            case SHORT:
+                buffer.putShort(offset, (short) bits);
+                break;
+            case INT:
+            case FLOAT:
+                buffer.putInt(offset, (int) bits);
+                break;
+            default:
+                buffer.putLong(offset, bits);
+                break;
+        }
+    }
+
+    public double toDouble(long bits) {
+        switch (this) {
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                return bits;
+        }
+    }
+
+    public int compare(long leftBits, long rightBits) {
+        switch (this) {
+            case FLOAT:
+                return Float.compare(Float.intBitsToFloat((int) leftBits), Float.intBitsToFloat((int) rightBits));
+            case DOUBLE:
+                return Double.compare(Double.longBitsToDouble(leftBits), Double.longBitsToDouble(rightBits));
+            default:
+                return Long.compare(leftBits, rightBits);
+        }
+    }
+
+    public long add(long leftBits, long rightBits) {
+        switch (this) {
+            case BYTE:
+                return (byte) (leftBits + rightBits);
+            case SHORT:
+                return (short) (leftBits + rightBits);
+            case INT:
+                return (int) (leftBits + rightBits);
+            case FLOAT:
+                return Float.floatToRawIntBits(Float.intBitsToFloat((int) leftBits) + Float.intBitsToFloat((int) rightBits));
+            case DOUBLE:
+                return Double.doubleToRawLongBits(Double.longBitsToDouble(leftBits) + Double.longBitsToDouble(rightBits));
+            default:
+                return leftBits + rightBits;
+        }
+    }
+
+    public long parse(String value) {
+        switch (this) {
+            case BYTE:
+                return Byte.parseByte(value);
+            case SHORT:
+                return Short.parseShort(value);
+            case INT:
+                return Integer.parseInt(value);
+            case FLOAT:
+                return Float.floatToRawIntBits(Float.parseFloat(value));
+            case DOUBLE:
+                return Double.doubleToRawLongBits(Double.parseDouble(value));
+            default:
+                return Long.parseLong(value);
+        }
+    }
+
+    public String format(long bits) {
+        switch (this) {
+            case FLOAT:
+                return String.valueOf(Float.intBitsToFloat((int) bits));
+            case DOUBLE:
+                return String.valueOf(Double.longBitsToDouble(bits));
+            default:
+                return String.valueOf(bits);
+        }
+    }
+
+    public static MMValueType fromName(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,38 @@
+package ru.linachan.memorymanager.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class MMBufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> idleBuffers;
+
+    public MMBufferPool(int bufferSize, int maxIdleBuffers) {
+        this.bufferSize = bufferSize;
+        this.idleBuffers = new ArrayBlockingQueue<>(maxIdleBuffers);
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idleBuffers.poll();
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder());
+        }
+
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize) {
+            idleBuffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,146 @@
+package ru.linachan.memorymanager.utils;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+
+public class MMHexDumper implements Flushable {
+
+    public static final int DEFAULT_BYTES_PER_LINE = 0x20;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int CHANNEL_BUFFER_SIZE = 64 * 1024;
+
+    private final Appendable textOutput;
+    private final WritableByteChannel channelOutput;
+    private final ByteBuffer channelBuffer;
+
+    private final int bytesPerLine;
+    private final byte[] lineBytes;
+    private final char[] line;
+
+    private long lineAddress = 0;
+    private int lineLength = 0;
+
+    public MMHexDumper(Appendable output, int bytesPerLine) {
+        this(output, null, bytesPerLine);
+    }
+
+    public MMHexDumper(WritableByteChannel output, int bytesPerLine) {
+        this(null, output, bytesPerLine);
+    }
+
+    private MMHexDumper(Appendable textOutput, WritableByteChannel channelOutput, int bytesPerLine) {
+        if (bytesPerLine <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid line width: %d", bytesPerLine));
+        }
+
+        this.textOutput = textOutput;
+        this.channelOutput = channelOutput;
+        this.channelBuffer = channelOutput != null ? ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE) : null;
+
+        this.bytesPerLine = bytesPerLine;
+        this.lineBytes = new byte[bytesPerLine];
+
+        // 16 address digits, a space, 3 chars per byte, 2 spaces, 1 char per byte and CRLF
+        this.line = new char[16 + 1 + bytesPerLine * 4 + 2 + 2];
+    }
+
+    // Appends the bytes between data's position and limit, located at address. Lines continue across
+    // calls as long as the addresses are contiguous.
+    public void write(long address, ByteBuffer data) throws IOException {
+        if (lineLength > 0 && address != lineAddress + lineLength) {
+            writeLine();
+        }
+
+        for (int i = data.position(); i < data.limit(); i++) {
+            if (lineLength == 0) {
+                lineAddress = address + (i - data.position());
+            }
+
+            lineBytes[lineLength++] = data.get(i);
+
+            if (lineLength == bytesPerLine) {
+                writeLine();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (lineLength > 0) {
+            writeLine();
+        }
+
+        if (channelBuffer != null && channelBuffer.position() > 0) {
+            channelBuffer.flip();
+            while (channelBuffer.hasRemaining()) {
+                channelOutput.write(channelBuffer);
+            }
+            channelBuffer.clear();
+        }
+
+        if (textOutput instanceof Flushable) {
+            ((Flushable) textOutput).flush();
+        }
+    }
+
+    private void writeLine() throws IOException {
+        int length = 0;
+
+        int addressDigits = Math.max(8, (67 - Long.numberOfLeadingZeros(lineAddress)) >>> 2);
+        for (int shift = (addressDigits - 1) * 4; shift >= 0; shift -= 4) {
+            line[length++] = HEX_DIGITS[(int) (lineAddress >>> shift) & 0x0F];
+        }
+        line[length++] = ' ';
+
+        for (int i = 0; i < bytesPerLine; i++) {
+            if (i < lineLength) {
+                line[length++] = HEX_DIGITS[(lineBytes[i] >>> 4) & 0x0F];
+                line[length++] = HEX_DIGITS[lineBytes[i] & 0x0F];
+            } else {
+                line[length++] = ' ';
+                line[length++] = ' ';
+            }
+            line[length++] = ' ';
+        }
+
+        line[length++] = ' ';
+        line[length++] = ' ';
+
+        for (int i = 0; i < lineLength; i++) {
+            line[length++] = lineBytes[i] >= 0x20 && lineBytes[i] < 0x7F ? (char) lineBytes[i] : '.';
+        }
+
+        line[length++] = '\r';
+        line[length++] = '\n';
+
+        lineLength = 0;
+        output(length);
+    }
+
+    private void output(int length) throws IOException {
+        if (channelBuffer != null) {
+            if (channelBuffer.remaining() < length) {
+                channelBuffer.flip();
+                while (channelBuffer.hasRemaining()) {
+                    channelOutput.write(channelBuffer);
+                }
+                channelBuffer.clear();
+            }
+
+            for (int i = 0; i < length; i++) {
+                channelBuffer.put((byte) line[i]);
+            }
+        } else if (textOutput instanceof Writer) {
+            ((Writer) textOutput).write(line, 0, length);
+        } else if (textOutput instanceof StringBuilder) {
+            ((StringBuilder) textOutput).append(line, 0, length);
+        } else {
+            textOutput.append(CharBuffer.wrap(line, 0, length));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.linachan.memorymanager.utils;
+
+import java.util.Arrays;
+
+// Sorted, non-overlapping [start, end) address intervals
+public class MMIntervalList {
+
+    private long[] starts = new long[16];
+    private long[] ends = new long[16];
+    private int size = 0;
+
+    // Intervals must be added in ascending order of start, touching or overlapping ones are merged
+    public void add(long start, long end) {
+        if (size > 0 && start <= ends[size - 1]) {
+            ends[size - 1] = Math.max(ends[size - 1], end);
+            return;
+        }
+
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+
+        starts[size] = start;
+        ends[size++] = end;
+    }
+
+    // Builds a list from arrays of (start, end) pairs in any order
+    public static MMIntervalList fromPairs(MMLongArray... intervalPairs) {
+        int pairCount = 0;
+        for (MMLongArray pairs: intervalPairs) {
+            pairCount += pairs.size() / 2;
+        }
+
+        long[] pairStarts = new long[pairCount];
+        long[] pairEnds = new long[pairCount];
+
+        int pair = 0;
+        for (MMLongArray pairs: intervalPairs) {
+            for (int i = 0; i + 1 < pairs.size(); i += 2, pair++) {
+                pairStarts[pair] = pairs.get(i);
+                pairEnds[pair] = pairs.get(i + 1);
+            }
+        }
+
+        MMIntervalList intervals = new MMIntervalList();
+
+        for (int index: MMUtils.sortIndices(pairStarts)) {
+            intervals.add(pairStarts[index], pairEnds[index]);
+        }
+
+        return intervals;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getStart(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    public long getEnd(int index) {
+        checkIndex(index);
+        return ends[index];
+    }
+
+    public long getTotalLength() {
+        long totalLength = 0;
+
+        for (int i = 0; i < size; i++) {
+            totalLength += ends[i] - starts[i];
+        }
+
+        return totalLength;
+    }
+
+    public boolean contains(long address) {
+        int index = Arrays.binarySearch(starts, 0, size, address);
+
+        if (index >= 0) {
+            return true;
+        }
+
+        index = -index - 2;
+        return index >= 0 && address < ends[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+        }
+    }
+}
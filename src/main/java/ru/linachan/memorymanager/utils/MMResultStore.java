@@ -0,0 +1,359 @@
+package ru.linachan.memorymanager.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Append-only list of longs for search results that may run into the millions. Entries are kept in pages
+// of primitive longs and moved to a temporary file once more than the memory limit are held, so only
+// the most recent pages stay on the heap. Saved stores are a short header followed by the values and
+// are reopened read-only. Not thread-safe.
+public class MMResultStore implements Closeable {
+
+    public static final int DEFAULT_MEMORY_ENTRIES = 1 << 20;
+
+    static final int MAGIC = 0x53524D4D;
+    static final int VERSION = 1;
+
+    private static final int PAGE_ENTRIES = 1 << 16;
+
+    private final int memoryEntries;
+    private String label;
+
+    // Entries [0, fileEntries) are in the file, the rest in pages of which only the last may be partial
+    private final List<long[]> pages = new ArrayList<>();
+    private long size = 0;
+    private long fileEntries = 0;
+
+    private FileChannel file = null;
+    private long dataOffset = 0;
+    private final boolean readOnly;
+    private boolean closed = false;
+
+    private final ByteBuffer ioBuffer = ByteBuffer.allocateDirect(PAGE_ENTRIES * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    // Last page read back from the file, so that sequential reads do not hit the file for every entry
+    private final long[] window = new long[PAGE_ENTRIES];
+    private long windowStart = -1;
+    private int windowSize = 0;
+
+    public MMResultStore() {
+        this(DEFAULT_MEMORY_ENTRIES);
+    }
+
+    public MMResultStore(int memoryEntries) {
+        this.memoryEntries = Math.max(memoryEntries, PAGE_ENTRIES);
+        this.readOnly = false;
+    }
+
+    private MMResultStore(FileChannel file, long dataOffset, long size, String label) {
+        this.memoryEntries = 0;
+        this.readOnly = true;
+        this.file = file;
+        this.dataOffset = dataOffset;
+        this.size = size;
+        this.fileEntries = size;
+        this.label = label;
+    }
+
+    public static MMResultStore open(Path path) {
+        FileChannel file = null;
+
+        try {
+            file = FileChannel.open(path, StandardOpenOption.READ);
+
+            ByteBuffer header = file.size() >= 18 ? readFully(file, 0, 18) : null;
+            if (header == null || header.getInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a result file", path));
+            }
+
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported result file version: %d", version));
+            }
+
+            long size = header.getLong();
+            int labelLength = header.getShort() & 0xFFFF;
+            String label = labelLength > 0 ? new String(readFully(file, 18, labelLength).array(), StandardCharsets.UTF_8) : null;
+            long dataOffset = alignData(18 + labelLength);
+
+            if (size < 0 || file.size() < dataOffset + size * Long.BYTES) {
+                throw new IOException(String.format("Result file %s is truncated", path));
+            }
+
+            return new MMResultStore(file, dataOffset, size, label);
+        } catch (IOException e) {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {}
+            }
+
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long alignData(long offset) {
+        return (offset + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of result file");
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // What the entries are, kept in the saved file so that a reopened store can be shown the same way
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public void add(long value) {
+        checkOpen();
+
+        if (readOnly) {
+            throw new IllegalStateException("Result store is read-only");
+        }
+
+        long[] page = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+        int pageOffset = (int) ((size - fileEntries) % PAGE_ENTRIES);
+
+        if (page == null || pageOffset == 0) {
+            if ((long) pages.size() * PAGE_ENTRIES >= memoryEntries) {
+                spill();
+            }
+
+            page = new long[PAGE_ENTRIES];
+            pages.add(page);
+        }
+
+        page[pageOffset] = value;
+        size++;
+    }
+
+    public void addAll(MMLongArray values) {
+        for (int i = 0; i < values.size(); i++) {
+            add(values.get(i));
+        }
+    }
+
+    // Appends the pages held in memory, all of them full at this point, to the end of the file
+    private void spill() {
+        try {
+            if (file == null) {
+                Path spillPath = Files.createTempFile("mm-results-", ".bin");
+                file = FileChannel.open(
+                    spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE
+                );
+            }
+
+            for (long[] page: pages) {
+                ioBuffer.clear();
+                ioBuffer.asLongBuffer().put(page);
+                ioBuffer.limit(PAGE_ENTRIES * Long.BYTES);
+
+                writeFully(file, ioBuffer, dataOffset + fileEntries * Long.BYTES);
+                fileEntries += PAGE_ENTRIES;
+            }
+
+            pages.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Result store is closed");
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Entries that live in the file rather than on the heap
+    public long getFileEntries() {
+        return fileEntries;
+    }
+
+    public long get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+        }
+
+        checkOpen();
+
+        if (index >= fileEntries) {
+            long pageIndex = index - fileEntries;
+            return pages.get((int) (pageIndex / PAGE_ENTRIES))[(int) (pageIndex % PAGE_ENTRIES)];
+        }
+
+        if (index < windowStart || index >= windowStart + windowSize) {
+            loadWindow(index - index % PAGE_ENTRIES);
+        }
+
+        return window[(int) (index - windowStart)];
+    }
+
+    private void loadWindow(long start) {
+        windowSize = readFile(start, window, 0, (int) Math.min(PAGE_ENTRIES, fileEntries - start));
+        windowStart = start;
+    }
+
+    private int readFile(long offset, long[] target, int targetOffset, int count) {
+        try {
+            ioBuffer.clear();
+            ioBuffer.limit(count * Long.BYTES);
+
+            while (ioBuffer.hasRemaining()) {
+                if (file.read(ioBuffer, dataOffset + offset * Long.BYTES + ioBuffer.position()) < 0) {
+                    throw new IOException("Unexpected end of result file");
+                }
+            }
+
+            ioBuffer.flip();
+            ioBuffer.asLongBuffer().get(target, targetOffset, count);
+
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Copies up to count entries starting at offset, returns how many were copied
+    public int read(long offset, long[] target, int targetOffset, int count) {
+        checkOpen();
+
+        int copied = 0;
+        count = (int) Math.max(0, Math.min(count, size - offset));
+
+        while (copied < count) {
+            long index = offset + copied;
+            int chunk;
+
+            if (index < fileEntries) {
+                chunk = readFile(index, target, targetOffset + copied, (int) Math.min(Math.min(count - copied, PAGE_ENTRIES), fileEntries - index));
+            } else {
+                long pageIndex = index - fileEntries;
+                int pageOffset = (int) (pageIndex % PAGE_ENTRIES);
+                chunk = Math.min(count - copied, PAGE_ENTRIES - pageOffset);
+
+                System.arraycopy(pages.get((int) (pageIndex / PAGE_ENTRIES)), pageOffset, target, targetOffset + copied, chunk);
+            }
+
+            copied += chunk;
+        }
+
+        return copied;
+    }
+
+    public long[] read(long offset, int count) {
+        long[] values = new long[(int) Math.max(0, Math.min(count, size - offset))];
+        read(offset, values, 0, values.length);
+        return values;
+    }
+
+    // Writes the entries with their label, the file reopens with open()
+    public long save(Path path) {
+        byte[] labelBytes = label != null ? label.getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+        if (labelBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Result label is too long");
+        }
+
+        long outputOffset = alignData(18 + labelBytes.length);
+        ByteBuffer header = ByteBuffer.allocate((int) outputOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(size).putShort((short) labelBytes.length).put(labelBytes);
+        header.clear();
+
+        try (FileChannel output = FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            writeFully(output, header, 0);
+
+            long[] chunk = new long[PAGE_ENTRIES];
+            ByteBuffer outputBuffer = ByteBuffer.allocateDirect(PAGE_ENTRIES * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (long offset = 0; offset < size; offset += PAGE_ENTRIES) {
+                int count = read(offset, chunk, 0, PAGE_ENTRIES);
+
+                outputBuffer.clear();
+                outputBuffer.asLongBuffer().put(chunk, 0, count);
+                outputBuffer.limit(count * Long.BYTES);
+
+                writeFully(output, outputBuffer, outputOffset + offset * Long.BYTES);
+            }
+
+            return output.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Read-only view of the entries for code working with address lists, values are boxed on access
+    public List<Long> asList() {
+        return new ListView();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pages.clear();
+
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                file = null;
+            }
+        }
+    }
+
+    private class ListView extends AbstractList<Long> implements RandomAccess {
+
+        @Override
+        public Long get(int index) {
+            return MMResultStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+    }
+}
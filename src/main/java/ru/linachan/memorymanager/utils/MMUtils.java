@@ -2,8 +2,12 @@ package ru.linachan.memorymanager.utils;
 
 import com.sun.jna.Memory;
 import ru.linachan.memorymanager.MMProcess;
+import ru.linachan.memorymanager.search.MMPattern;
+import ru.linachan.memorymanager.search.MMStringEncoding;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -12,30 +16,14 @@ import java.util.Map;
 public class MMUtils {
 
     public static String dumpMemory(Memory memoryPage, long memorySize, long baseAddress) {
-        long memoryOffset = 0x00;
-        int bytesPerLine = 0x20;
-
         StringBuilder memoryDump = new StringBuilder();
+        MMHexDumper dumper = new MMHexDumper(memoryDump, MMHexDumper.DEFAULT_BYTES_PER_LINE);
 
-        while (memoryOffset < memorySize) {
-            byte[] memoryBytes = memoryPage.getByteArray(memoryOffset, bytesPerLine);
-
-            StringBuilder memoryLine = new StringBuilder(String.format(
-                "%08X ", baseAddress + memoryOffset
-            ));
-            StringBuilder memoryRawLine = new StringBuilder("  ");
-
-            for (int i = 0; i < bytesPerLine; i++) {
-                memoryLine.append(String.format("%02X ", memoryBytes[i]));
-                memoryRawLine.append((memoryBytes[i] == 0x00) ? '.' : (char) memoryBytes[i]);
-            }
-
-            memoryLine.append(memoryRawLine);
-
-            memoryDump.append(memoryLine.toString().replaceAll("\\p{Cntrl}", "."));
-            memoryDump.append("\r\n");
-
-            memoryOffset += bytesPerLine;
+        try {
+            dumper.write(baseAddress, memoryPage.getByteBuffer(0, memorySize));
+            dumper.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
         return memoryDump.toString();
@@ -44,39 +32,39 @@ public class MMUtils {
     public static List<Integer> findArray(byte[] sourceArray, byte[] targetArray) {
         List<Integer> searchResult = new ArrayList<>();
 
-        for (int i = 0; i < targetArray.length; i++) {
-            if (targetArray[i] == sourceArray[0]) {
-                boolean subArrayFound = true;
-                for (int j = 0; j < sourceArray.length; j++) {
-                    if (targetArray.length <= i+j || sourceArray[j] != targetArray[i+j]) {
-                        subArrayFound = false;
-                        break;
-                    }
-                }
-
-                if (subArrayFound) {
-                    searchResult.add(i);
-                }
-            }
-        }
+        MMPattern.of(sourceArray).search(ByteBuffer.wrap(targetArray), targetArray.length, searchResult::add);
 
         return searchResult;
     }
 
-    public static byte[] prepareString(String data, int bytesPerChar) throws UnsupportedEncodingException {
-        byte[] dataBytes = data.getBytes("UTF-8");
-        byte[] finalBytes = new byte[data.length() * bytesPerChar];
+    public static String toHexString(byte[] data) {
+        return toHexString(data, 0, data.length);
+    }
+
+    public static String toHexString(byte[] data, int offset, int length) {
+        StringBuilder hexString = new StringBuilder();
 
-        if (data.length() * bytesPerChar > dataBytes.length) {
-            for (int i = 0; i < data.length(); i++) {
-                finalBytes[i * bytesPerChar] = dataBytes[i];
-                for (int j = 1; j < bytesPerChar; j++) {
-                    finalBytes[i * bytesPerChar + j] = 0x00;
-                }
+        for (int i = offset; i < offset + length; i++) {
+            if (hexString.length() > 0) {
+                hexString.append(' ');
             }
+            hexString.append(String.format("%02X", data[i]));
         }
 
-        return finalBytes;
+        return hexString.toString();
+    }
+
+    public static byte[] prepareString(String data, int bytesPerChar) {
+        return MMStringEncoding.fromBytesPerChar(bytesPerChar).encode(data);
+    }
+
+    // Half a unit of the last decimal place typed, so "3.14" matches anything that displays as 3.14
+    public static double getRoundingEpsilon(String value) {
+        String mantissa = value.split("[eE]")[0];
+        int decimalPoint = mantissa.indexOf('.');
+        int decimals = decimalPoint < 0 ? 0 : mantissa.length() - decimalPoint - 1;
+
+        return mantissa.length() < value.length() ? 0.0 : 0.5 * Math.pow(10, -decimals);
     }
 
     public static byte[] getNullArray(int size) {
@@ -87,6 +75,43 @@ public class MMUtils {
         return nullArray;
     }
 
+    // Indices of keys in ascending key order, stable for equal keys
+    public static int[] sortIndices(long[] keys) {
+        int[] indices = new int[keys.length];
+        boolean sorted = true;
+
+        for (int i = 0; i < keys.length; i++) {
+            indices[i] = i;
+            sorted &= i == 0 || keys[i - 1] <= keys[i];
+        }
+
+        if (!sorted) {
+            mergeSortIndices(keys, indices, new int[keys.length], 0, keys.length);
+        }
+
+        return indices;
+    }
+
+    private static void mergeSortIndices(long[] keys, int[] indices, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSortIndices(keys, indices, buffer, from, middle);
+        mergeSortIndices(keys, indices, buffer, middle, to);
+
+        System.arraycopy(indices, from, buffer, from, to - from);
+
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right >= to || (left < middle && keys[buffer[left]] <= keys[buffer[right]])) {
+                indices[i] = buffer[left++];
+            } else {
+                indices[i] = buffer[right++];
+            }
+        }
+    }
+
     public static Map<Integer, String> processListToMap(List<MMProcess> processList) {
         Map<Integer, String> processMap = new HashMap<>();
 
@@ -0,0 +1,242 @@
+package ru.linachan.memorymanager.backend;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.linachan.memorymanager.MMRegion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// Small hand-built core files: a named text segment, two adjacent anonymous and read-only segments,
+// and a segment the kernel did not dump
+public class MMCoreDumpHandleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Address, file size, memory size, p_flags
+    private static final long[][] SEGMENTS = {
+        {0x400000, 0x1000, 0x1000, 0x5},
+        {0x600000, 0x2000, 0x2000, 0x6},
+        {0x602000, 0x1000, 0x1000, 0x4},
+        {0x700000, 0, 0x5000, 0x4}
+    };
+
+    private static final int[] PROTECTIONS = {
+        MMRegion.READ | MMRegion.EXECUTE, MMRegion.READ | MMRegion.WRITE, MMRegion.READ
+    };
+
+    private static final String TEXT_PATH = "/usr/bin/crashy";
+
+    private static byte[] segmentData(int segment) {
+        byte[] data = new byte[(int) SEGMENTS[segment][1]];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (segment * 61 + i * 7);
+        }
+
+        return data;
+    }
+
+    // ELF header, PT_NOTE with NT_PRPSINFO and NT_FILE, PT_LOAD per segment, then the notes and segment data
+    private static byte[] buildCore(boolean wide, ByteOrder order) {
+        int headerSize = wide ? 64 : 52;
+        int programHeaderSize = wide ? 56 : 32;
+        int wordSize = wide ? 8 : 4;
+        int headerCount = 1 + SEGMENTS.length;
+
+        ByteBuffer notes = ByteBuffer.allocate(1024).order(order);
+
+        int processInfoSize = wide ? 136 : 124;
+        notes.putInt(5).putInt(processInfoSize).putInt(3).put("CORE\0\0\0\0".getBytes(StandardCharsets.US_ASCII));
+        int processInfo = notes.position();
+        notes.putInt(processInfo + (wide ? 24 : 12), 4242);
+        notes.position(processInfo + (wide ? 40 : 28));
+        notes.put("crashy".getBytes(StandardCharsets.US_ASCII));
+        notes.position(processInfo + processInfoSize);
+
+        byte[] path = (TEXT_PATH + "\0").getBytes(StandardCharsets.US_ASCII);
+        int filesSize = 5 * wordSize + path.length;
+        notes.putInt(5).putInt(filesSize).putInt(0x46494C45).put("CORE\0\0\0\0".getBytes(StandardCharsets.US_ASCII));
+        putWord(notes, wide, 1);
+        putWord(notes, wide, 0x1000);
+        putWord(notes, wide, SEGMENTS[0][0]);
+        putWord(notes, wide, SEGMENTS[0][0] + SEGMENTS[0][2]);
+        putWord(notes, wide, 0);
+        notes.put(path);
+
+        while (notes.position() % 4 != 0) {
+            notes.put((byte) 0);
+        }
+
+        int notesOffset = headerSize + programHeaderSize * headerCount;
+        int notesSize = notes.position();
+        int dataOffset = notesOffset + notesSize;
+        int fileSize = dataOffset;
+
+        for (long[] segment: SEGMENTS) {
+            fileSize += (int) segment[1];
+        }
+
+        ByteBuffer core = ByteBuffer.allocate(fileSize).order(order);
+        core.put(new byte[] {0x7F, 'E', 'L', 'F', (byte) (wide ? 2 : 1), (byte) (order == ByteOrder.BIG_ENDIAN ? 2 : 1), 1});
+        core.putShort(16, (short) 4).putShort(18, (short) 62);
+
+        if (wide) {
+            core.putLong(32, headerSize).putShort(54, (short) programHeaderSize).putShort(56, (short) headerCount);
+        } else {
+            core.putInt(28, headerSize).putShort(42, (short) programHeaderSize).putShort(44, (short) headerCount);
+        }
+
+        core.position(headerSize);
+        putProgramHeader(core, wide, 4, 0, notesOffset, 0, notesSize, 0);
+
+        int segmentOffset = dataOffset;
+
+        for (int i = 0; i < SEGMENTS.length; i++) {
+            long[] segment = SEGMENTS[i];
+            putProgramHeader(core, wide, 1, (int) segment[3], segmentOffset, segment[0], segment[1], segment[2]);
+
+            byte[] data = segmentData(i);
+            System.arraycopy(data, 0, core.array(), segmentOffset, data.length);
+            segmentOffset += data.length;
+        }
+
+        System.arraycopy(notes.array(), 0, core.array(), notesOffset, notesSize);
+
+        return core.array();
+    }
+
+    private static void putWord(ByteBuffer buffer, boolean wide, long value) {
+        if (wide) {
+            buffer.putLong(value);
+        } else {
+            buffer.putInt((int) value);
+        }
+    }
+
+    private static void putProgramHeader(
+        ByteBuffer buffer, boolean wide, int type, int flags, long offset, long address, long fileSize, long memorySize
+    ) {
+        if (wide) {
+            buffer.putInt(type).putInt(flags).putLong(offset).putLong(address).putLong(0)
+                .putLong(fileSize).putLong(memorySize).putLong(0x1000);
+        } else {
+            buffer.putInt(type).putInt((int) offset).putInt((int) address).putInt(0)
+                .putInt((int) fileSize).putInt((int) memorySize).putInt(flags).putInt(0x1000);
+        }
+    }
+
+    private Path write(byte[] core) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, core);
+        return path;
+    }
+
+    private void checkCore(boolean wide, ByteOrder order) throws IOException {
+        try (MMCoreDumpHandle dump = new MMCoreDumpHandle(write(buildCore(wide, order)))) {
+            assertEquals(4242, dump.getProcessID());
+            assertEquals("crashy", dump.getProcessName());
+
+            List<MMRegion> regions = dump.queryRegions();
+            assertEquals(3, regions.size());
+
+            for (int i = 0; i < regions.size(); i++) {
+                assertEquals(SEGMENTS[i][0], regions.get(i).getBaseAddress());
+                assertEquals(SEGMENTS[i][1], regions.get(i).getRegionSize());
+                assertEquals(PROTECTIONS[i], regions.get(i).getProtection());
+                assertEquals(i == 0 ? TEXT_PATH : "", regions.get(i).getMappingName());
+
+                ByteBuffer buffer = ByteBuffer.allocate((int) SEGMENTS[i][1]);
+                assertEquals(buffer.capacity(), dump.read(SEGMENTS[i][0], buffer));
+                assertArrayEquals(segmentData(i), buffer.array());
+            }
+
+            // Adjacent segments read as one range, a view cannot cross them
+            ByteBuffer across = ByteBuffer.allocate(32);
+            assertEquals(32, dump.read(0x602000 - 16, across));
+            assertArrayEquals(Arrays.copyOfRange(segmentData(1), 0x2000 - 16, 0x2000), Arrays.copyOf(across.array(), 16));
+            assertArrayEquals(Arrays.copyOf(segmentData(2), 16), Arrays.copyOfRange(across.array(), 16, 32));
+            assertNull(dump.view(0x602000 - 16, 32));
+
+            ByteBuffer view = dump.view(0x600010, 16);
+            byte[] viewed = new byte[16];
+            view.get(viewed);
+            assertArrayEquals(Arrays.copyOfRange(segmentData(1), 0x10, 0x20), viewed);
+
+            assertEquals(0, dump.read(0x700000, ByteBuffer.allocate(16)));
+            assertEquals(0, dump.write(0x600000, ByteBuffer.wrap(new byte[] {1, 2})));
+        }
+    }
+
+    @Test
+    public void readsLittleEndian64BitCore() throws IOException {
+        checkCore(true, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void readsLittleEndian32BitCore() throws IOException {
+        checkCore(false, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void readsBigEndian64BitCore() throws IOException {
+        checkCore(true, ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test
+    public void readsBigEndian32BitCore() throws IOException {
+        checkCore(false, ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test
+    public void truncatedSegmentsAreClipped() throws IOException {
+        byte[] core = buildCore(true, ByteOrder.LITTLE_ENDIAN);
+
+        try (MMCoreDumpHandle dump = new MMCoreDumpHandle(write(Arrays.copyOf(core, core.length - 0x800)))) {
+            List<MMRegion> regions = dump.queryRegions();
+
+            assertEquals(3, regions.size());
+            assertEquals(0x800, regions.get(2).getRegionSize());
+            assertEquals(0x400, dump.read(0x602400, ByteBuffer.allocate(0x800)));
+        }
+    }
+
+    @Test
+    public void corruptFileCountKeepsSegments() throws IOException {
+        byte[] core = buildCore(true, ByteOrder.LITTLE_ENDIAN);
+        int notesOffset = 64 + 56 * (1 + SEGMENTS.length);
+        int filesDescriptor = notesOffset + 20 + 136 + 20;
+        ByteBuffer.wrap(core).order(ByteOrder.LITTLE_ENDIAN).putLong(filesDescriptor, Long.MAX_VALUE);
+
+        try (MMCoreDumpHandle dump = new MMCoreDumpHandle(write(core))) {
+            assertEquals(3, dump.queryRegions().size());
+            assertEquals("", dump.queryRegions().get(0).getMappingName());
+        }
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void programHeadersPastTheEndAreRejected() throws IOException {
+        byte[] core = buildCore(true, ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer.wrap(core).order(ByteOrder.LITTLE_ENDIAN).putLong(32, Long.MAX_VALUE - 16);
+
+        new MMCoreDumpHandle(write(core)).close();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void truncatedHeaderIsRejected() throws IOException {
+        new MMCoreDumpHandle(write(Arrays.copyOf(buildCore(true, ByteOrder.LITTLE_ENDIAN), 40))).close();
+    }
+}
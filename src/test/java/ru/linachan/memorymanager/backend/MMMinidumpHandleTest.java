@@ -0,0 +1,242 @@
+package ru.linachan.memorymanager.backend;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.linachan.memorymanager.MMRegion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+// Small hand-built minidumps: an image module and a heap range covering two allocations, written either
+// as a full dump with Memory64List and MemoryInfoList or as a small dump with only a MemoryList
+public class MMMinidumpHandleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int MODULE_LIST_STREAM = 4;
+    private static final int MEMORY_LIST_STREAM = 5;
+    private static final int MEMORY64_LIST_STREAM = 9;
+    private static final int MISC_INFO_STREAM = 15;
+    private static final int MEMORY_INFO_LIST_STREAM = 16;
+
+    private static final String MODULE_PATH = "C:\\apps\\crashy.exe";
+
+    // Dumped ranges: address, size
+    private static final long[][] RANGES = {{0x400000, 0x1000}, {0x10000000, 0x3000}};
+
+    // Allocations: address, size, protect, type
+    private static final long[][] ALLOCATIONS = {
+        {0x400000, 0x1000, 0x20, 0x1000000},
+        {0x10000000, 0x2000, 0x04, 0x20000},
+        {0x10002000, 0x1000, 0x02, 0x20000}
+    };
+
+    private static byte[] rangeData(int range) {
+        byte[] data = new byte[(int) RANGES[range][1]];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (range * 61 + i * 7);
+        }
+
+        return data;
+    }
+
+    private static byte[] buildMinidump(boolean full) {
+        ByteBuffer dump = ByteBuffer.allocate(0x10000).order(ByteOrder.LITTLE_ENDIAN);
+        int streamCount = full ? 4 : 3;
+
+        dump.putInt(0x504D444D).putInt(0xA793).putInt(streamCount).putInt(32);
+        dump.position(32 + 12 * streamCount);
+
+        int stream = 0;
+
+        int modules = dump.position();
+        dump.putInt(1);
+        int module = dump.position();
+        dump.position(module + 108);
+        int moduleName = dump.position();
+        byte[] name = MODULE_PATH.getBytes(StandardCharsets.UTF_16LE);
+        dump.putInt(name.length).put(name).putShort((short) 0);
+        dump.putLong(module, RANGES[0][0]).putInt(module + 8, (int) RANGES[0][1]).putInt(module + 20, moduleName);
+        putStream(dump, stream++, MODULE_LIST_STREAM, modules, 4 + 108);
+
+        int miscInfo = dump.position();
+        dump.putInt(24).putInt(1).putInt(777).putInt(0).putInt(0).putInt(0);
+        putStream(dump, stream++, MISC_INFO_STREAM, miscInfo, 24);
+
+        if (full) {
+            int memoryInfo = dump.position();
+            dump.putInt(16).putInt(48).putLong(ALLOCATIONS.length);
+
+            for (long[] allocation: ALLOCATIONS) {
+                dump.putLong(allocation[0]).putLong(allocation[0]).putInt((int) allocation[2]).putInt(0)
+                    .putLong(allocation[1]).putInt(0x1000).putInt((int) allocation[2]).putInt((int) allocation[3]).putInt(0);
+            }
+
+            putStream(dump, stream++, MEMORY_INFO_LIST_STREAM, memoryInfo, dump.position() - memoryInfo);
+
+            int memory64 = dump.position();
+            int dataOffset = memory64 + 16 + 16 * RANGES.length;
+            dump.putLong(RANGES.length).putLong(dataOffset);
+
+            for (long[] range: RANGES) {
+                dump.putLong(range[0]).putLong(range[1]);
+            }
+
+            putStream(dump, stream, MEMORY64_LIST_STREAM, memory64, dump.position() - memory64);
+        } else {
+            int memory = dump.position();
+            dump.putInt(RANGES.length);
+            dump.position(memory + 4 + 16 * RANGES.length);
+
+            for (int i = 0; i < RANGES.length; i++) {
+                int descriptor = memory + 4 + 16 * i;
+                dump.putLong(descriptor, RANGES[i][0]).putInt(descriptor + 8, (int) RANGES[i][1])
+                    .putInt(descriptor + 12, dump.position() + (int) (i > 0 ? RANGES[0][1] : 0));
+            }
+
+            putStream(dump, stream, MEMORY_LIST_STREAM, memory, 4 + 16 * RANGES.length);
+        }
+
+        for (int i = 0; i < RANGES.length; i++) {
+            dump.put(rangeData(i));
+        }
+
+        return Arrays.copyOf(dump.array(), dump.position());
+    }
+
+    private static void putStream(ByteBuffer dump, int index, int type, int offset, int size) {
+        dump.putInt(32 + 12 * index, type).putInt(32 + 12 * index + 4, size).putInt(32 + 12 * index + 8, offset);
+    }
+
+    private static int streamOffset(byte[] dump, int type) {
+        ByteBuffer buffer = ByteBuffer.wrap(dump).order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < buffer.getInt(8); i++) {
+            if (buffer.getInt(32 + 12 * i) == type) {
+                return buffer.getInt(32 + 12 * i + 8);
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("No stream %d", type));
+    }
+
+    private Path write(byte[] dump) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, dump);
+        return path;
+    }
+
+    private static void checkMemory(MMMinidumpHandle dump) {
+        for (int i = 0; i < RANGES.length; i++) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) RANGES[i][1]);
+            assertEquals(buffer.capacity(), dump.read(RANGES[i][0], buffer));
+            assertArrayEquals(rangeData(i), buffer.array());
+        }
+
+        assertEquals(0, dump.read(0x20000000, ByteBuffer.allocate(16)));
+        assertEquals(0, dump.write(RANGES[1][0], ByteBuffer.wrap(new byte[] {1, 2})));
+    }
+
+    @Test
+    public void readsFullDump() throws IOException {
+        try (MMMinidumpHandle dump = new MMMinidumpHandle(write(buildMinidump(true)))) {
+            assertEquals(777, dump.getProcessID());
+            assertEquals("crashy.exe", dump.getProcessName());
+
+            // The heap range is split where its allocations change
+            List<MMRegion> regions = dump.queryRegions();
+            assertEquals(3, regions.size());
+
+            int[] protections = {MMRegion.READ | MMRegion.EXECUTE, MMRegion.READ | MMRegion.WRITE, MMRegion.READ};
+
+            for (int i = 0; i < regions.size(); i++) {
+                assertEquals(ALLOCATIONS[i][0], regions.get(i).getBaseAddress());
+                assertEquals(ALLOCATIONS[i][1], regions.get(i).getRegionSize());
+                assertEquals(protections[i], regions.get(i).getProtection());
+                assertEquals(i == 0 ? MODULE_PATH : "", regions.get(i).getMappingName());
+            }
+
+            checkMemory(dump);
+        }
+    }
+
+    @Test
+    public void readsSmallDump() throws IOException {
+        try (MMMinidumpHandle dump = new MMMinidumpHandle(write(buildMinidump(false)))) {
+            assertEquals(777, dump.getProcessID());
+
+            List<MMRegion> regions = dump.queryRegions();
+            assertEquals(RANGES.length, regions.size());
+
+            for (int i = 0; i < regions.size(); i++) {
+                assertEquals(RANGES[i][0], regions.get(i).getBaseAddress());
+                assertEquals(RANGES[i][1], regions.get(i).getRegionSize());
+                assertEquals(MMRegion.READ | MMRegion.WRITE, regions.get(i).getProtection());
+            }
+
+            checkMemory(dump);
+        }
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void corruptStreamCountIsRejected() throws IOException {
+        byte[] dump = buildMinidump(true);
+        ByteBuffer.wrap(dump).order(ByteOrder.LITTLE_ENDIAN).putInt(8, 0x7FFFFFFF);
+
+        new MMMinidumpHandle(write(dump)).close();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void corruptMemory64RangeCountIsRejected() throws IOException {
+        byte[] dump = buildMinidump(true);
+        ByteBuffer.wrap(dump).order(ByteOrder.LITTLE_ENDIAN).putLong(streamOffset(dump, MEMORY64_LIST_STREAM), 1L << 60);
+
+        new MMMinidumpHandle(write(dump)).close();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void corruptMemoryRangeCountIsRejected() throws IOException {
+        byte[] dump = buildMinidump(false);
+        ByteBuffer.wrap(dump).order(ByteOrder.LITTLE_ENDIAN).putInt(streamOffset(dump, MEMORY_LIST_STREAM), -1);
+
+        new MMMinidumpHandle(write(dump)).close();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void corruptMemoryInfoCountIsRejected() throws IOException {
+        byte[] dump = buildMinidump(true);
+        ByteBuffer.wrap(dump).order(ByteOrder.LITTLE_ENDIAN).putLong(streamOffset(dump, MEMORY_INFO_LIST_STREAM) + 8, 89478486L);
+
+        new MMMinidumpHandle(write(dump)).close();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void corruptModuleCountIsRejected() throws IOException {
+        byte[] dump = buildMinidump(true);
+        ByteBuffer.wrap(dump).order(ByteOrder.LITTLE_ENDIAN).putInt(streamOffset(dump, MODULE_LIST_STREAM), 0x40000000);
+
+        new MMMinidumpHandle(write(dump)).close();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void corruptModuleNameIsRejected() throws IOException {
+        byte[] dump = buildMinidump(true);
+        ByteBuffer buffer = ByteBuffer.wrap(dump).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(buffer.getInt(streamOffset(dump, MODULE_LIST_STREAM) + 4 + 20), Integer.MAX_VALUE);
+
+        new MMMinidumpHandle(write(dump)).close();
+    }
+}
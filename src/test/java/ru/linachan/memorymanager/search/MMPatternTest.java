@@ -0,0 +1,248 @@
+package ru.linachan.memorymanager.search;
+
+import org.junit.Test;
+import ru.linachan.memorymanager.utils.MMUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// MMPattern against the double loop MMUtils.findArray used before it, on random buffers. Small alphabets
+// make partial matches and overlapping hits common, pattern lengths cover both the anchor and Horspool paths.
+public class MMPatternTest {
+
+    private static final int ROUNDS = 300;
+
+    // The original MMUtils.findArray
+    private static List<Integer> findArray(byte[] sourceArray, byte[] targetArray) {
+        List<Integer> searchResult = new ArrayList<>();
+
+        for (int i = 0; i < targetArray.length; i++) {
+            if (targetArray[i] == sourceArray[0]) {
+                boolean subArrayFound = true;
+                for (int j = 0; j < sourceArray.length; j++) {
+                    if (targetArray.length <= i + j || sourceArray[j] != targetArray[i + j]) {
+                        subArrayFound = false;
+                        break;
+                    }
+                }
+
+                if (subArrayFound) {
+                    searchResult.add(i);
+                }
+            }
+        }
+
+        return searchResult;
+    }
+
+    // Same loop comparing only the bits of each mask
+    private static List<Integer> findMasked(byte[] patternBytes, byte[] masks, byte[] data, int startLimit, int limit) {
+        List<Integer> searchResult = new ArrayList<>();
+
+        for (int i = 0; i < startLimit && i + patternBytes.length <= limit; i++) {
+            boolean found = true;
+            for (int j = 0; j < patternBytes.length; j++) {
+                if ((data[i + j] & masks[j]) != (patternBytes[j] & masks[j])) {
+                    found = false;
+                    break;
+                }
+            }
+
+            if (found) {
+                searchResult.add(i);
+            }
+        }
+
+        return searchResult;
+    }
+
+    private static byte[] randomBytes(Random random, int length, int alphabet) {
+        byte[] data = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (alphabet >= 256 ? random.nextInt(256) : 0x41 + random.nextInt(alphabet));
+        }
+
+        return data;
+    }
+
+    private static byte[] slice(Random random, byte[] data, int length) {
+        byte[] pattern = new byte[length];
+        System.arraycopy(data, random.nextInt(data.length - length + 1), pattern, 0, length);
+        return pattern;
+    }
+
+    private static List<Integer> search(MMPattern pattern, ByteBuffer buffer, int startLimit) {
+        List<Integer> matches = new ArrayList<>();
+        pattern.search(buffer, startLimit, matches::add);
+        return matches;
+    }
+
+    private static ByteBuffer wrap(byte[] data, boolean direct) {
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+        buffer.order(ByteOrder.nativeOrder()).put(data).clear();
+        return buffer;
+    }
+
+    @Test
+    public void exactPatternsMatchFindArray() {
+        Random random = new Random(1);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int alphabet = round % 3 == 0 ? 2 : round % 3 == 1 ? 4 : 256;
+            byte[] data = randomBytes(random, 1 + random.nextInt(4096), alphabet);
+            int length = 1 + random.nextInt(Math.min(data.length, 40));
+            byte[] pattern = random.nextInt(4) == 0 ? randomBytes(random, length, alphabet) : slice(random, data, length);
+
+            List<Integer> expected = findArray(pattern, data);
+
+            assertEquals(expected, MMUtils.findArray(pattern, data));
+            assertEquals(expected, search(MMPattern.of(pattern), wrap(data, round % 2 == 0), data.length));
+        }
+    }
+
+    @Test
+    public void commonBytePatternsMatchFindArray() {
+        Random random = new Random(2);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            byte[] data = new byte[1 + random.nextInt(2048)];
+
+            for (int i = 0; i < data.length; i++) {
+                int kind = random.nextInt(8);
+                data[i] = kind < 4 ? 0 : kind < 6 ? (byte) 0xFF : (byte) random.nextInt(256);
+            }
+
+            byte[] pattern = slice(random, data, 1 + random.nextInt(Math.min(data.length, 24)));
+
+            assertEquals(findArray(pattern, data), search(MMPattern.of(pattern), wrap(data, false), data.length));
+        }
+    }
+
+    @Test
+    public void wildcardSignaturesMatchMaskedSearch() {
+        Random random = new Random(3);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            byte[] data = randomBytes(random, 16 + random.nextInt(4096), round % 2 == 0 ? 4 : 256);
+            int length = 1 + random.nextInt(Math.min(data.length, 32));
+            byte[] patternBytes = slice(random, data, length);
+            byte[] masks = new byte[length];
+            StringBuilder signature = new StringBuilder();
+
+            for (int i = 0; i < length; i++) {
+                boolean wildcard = random.nextInt(3) == 0 && i != length / 2;
+                masks[i] = wildcard ? 0 : (byte) 0xFF;
+                signature.append(i > 0 ? " " : "").append(wildcard ? "??" : String.format("%02X", patternBytes[i]));
+            }
+
+            List<Integer> expected = findMasked(patternBytes, masks, data, data.length, data.length);
+
+            assertEquals(signature.toString(), expected, search(MMPattern.parse(signature.toString()), wrap(data, true), data.length));
+            assertEquals(expected, search(MMPattern.of(patternBytes, masks), wrap(data, false), data.length));
+        }
+    }
+
+    @Test
+    public void nibbleAndMaskedSignaturesMatchMaskedSearch() {
+        Random random = new Random(4);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            byte[] data = randomBytes(random, 16 + random.nextInt(4096), 256);
+            int length = 1 + random.nextInt(Math.min(data.length, 16));
+            byte[] patternBytes = slice(random, data, length);
+            byte[] masks = new byte[length];
+            StringBuilder signature = new StringBuilder();
+
+            for (int i = 0; i < length; i++) {
+                String token;
+
+                switch (random.nextInt(5)) {
+                    case 0:
+                        masks[i] = (byte) 0xF0;
+                        token = String.format("%X?", (patternBytes[i] >> 4) & 0xF);
+                        break;
+                    case 1:
+                        masks[i] = 0x0F;
+                        token = String.format("?%X", patternBytes[i] & 0xF);
+                        break;
+                    case 2:
+                        masks[i] = (byte) (1 + random.nextInt(255));
+                        token = String.format("%02X&%02X", patternBytes[i], masks[i]);
+                        break;
+                    case 3:
+                        masks[i] = 0;
+                        token = "?";
+                        break;
+                    default:
+                        masks[i] = (byte) 0xFF;
+                        token = String.format("%02X", patternBytes[i]);
+                        break;
+                }
+
+                signature.append(i > 0 ? " " : "").append(token);
+            }
+
+            if (masks[length - 1] == 0) {
+                masks[length - 1] = (byte) 0xFF;
+                signature.replace(signature.length() - 1, signature.length(), String.format("%02X", patternBytes[length - 1]));
+            }
+
+            assertEquals(
+                signature.toString(), findMasked(patternBytes, masks, data, data.length, data.length),
+                search(MMPattern.parse(signature.toString()), wrap(data, round % 2 == 0), data.length)
+            );
+        }
+    }
+
+    @Test
+    public void searchStopsAtStartLimitAndBufferLimit() {
+        Random random = new Random(5);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            byte[] data = randomBytes(random, 1 + random.nextInt(512), 2);
+            int length = 1 + random.nextInt(Math.min(data.length, 20));
+            byte[] patternBytes = slice(random, data, length);
+            byte[] masks = new byte[length];
+
+            for (int i = 0; i < length; i++) {
+                masks[i] = i == 0 || random.nextInt(4) != 0 ? (byte) 0xFF : 0;
+            }
+
+            int limit = random.nextInt(data.length + 1);
+            int startLimit = random.nextInt(data.length + 2);
+
+            ByteBuffer buffer = wrap(data, round % 2 == 0);
+            buffer.limit(limit);
+
+            assertEquals(
+                findMasked(patternBytes, masks, data, startLimit, limit),
+                search(MMPattern.of(patternBytes, masks), buffer, startLimit)
+            );
+        }
+    }
+
+    @Test
+    public void matchesAtBothEndsOfTheBuffer() {
+        byte[] data = {0x41, 0x42, 0x43, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x41, 0x42, 0x43};
+
+        assertEquals(findArray(new byte[] {0x41, 0x42, 0x43}, data), search(MMPattern.parse("41 42 43"), wrap(data, false), data.length));
+        assertEquals(1, search(MMPattern.parse("41 42 43"), wrap(data, false), 12).size());
+        assertEquals(0, search(MMPattern.parse("41 42 43"), wrap(data, false), 0).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void signatureOfWildcardsOnlyIsRejected() {
+        MMPattern.parse("?? ??");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedSignatureIsRejected() {
+        MMPattern.parse("48 8G");
+    }
+}